@@ -0,0 +1,114 @@
+package com.example.jamming.model;
+
+import static org.junit.Assert.assertEquals;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.firebase.firestore.util.CustomClassMapper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares {@link EventMapper} with the reflective mapper behind
+ * {@code DocumentSnapshot.toObject(Event.class)} on a device, where the
+ * difference matters. Both map the same document maps and the results
+ * must be equal. Timings are only logged, under {@link #TAG}, as they
+ * vary too much between devices and runs to assert on.
+ */
+@RunWith(AndroidJUnit4.class)
+public class EventMapperBenchmarkTest {
+
+    private static final String TAG = "EventMapperBenchmark";
+    private static final int EVENTS = 5000;
+    private static final int ROUNDS = 5;
+
+    private final List<Map<String, Object>> documents = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        for (int i = 0; i < EVENTS; i++) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("id", "e" + i);
+            data.put("ownerId", "owner" + (i % 50));
+            data.put("name", "Event " + i);
+            data.put("description", "desc");
+            data.put("musicTypes", Collections.singletonList(i % 2 == 0 ? "Rock" : "Jazz"));
+            data.put("address", "address");
+            data.put("dateTime", 1_700_000_000_000L + i * 60_000L);
+            data.put("maxCapacity", 50L);
+            data.put("reserved", (long) (i % 50));
+            data.put("active", true);
+            data.put("latitude", 29.5 + (i % 350) / 100.0);
+            data.put("longitude", 34.2 + (i % 150) / 100.0);
+            data.put("geohash", "sv8wrq");
+            data.put("participants", Collections.singletonList("u" + i));
+            data.put("availableSpots", (long) (50 - i % 50));
+            documents.add(data);
+        }
+    }
+
+    @Test
+    public void eventMapper_matchesReflectiveMapper() {
+        long reflective = Long.MAX_VALUE;
+        long handWritten = Long.MAX_VALUE;
+
+        // Best of several rounds; the first ones warm up both mappers
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            List<Event> viaReflection = new ArrayList<>(EVENTS);
+            for (Map<String, Object> data : documents) {
+                Event event = CustomClassMapper.convertToCustomClass(data, Event.class, null);
+                event.setId((String) data.get("id"));
+                viaReflection.add(event);
+            }
+            reflective = Math.min(reflective, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            List<Event> viaMapper = new ArrayList<>(EVENTS);
+            for (Map<String, Object> data : documents) {
+                viaMapper.add(EventMapper.fromMap((String) data.get("id"), data));
+            }
+            handWritten = Math.min(handWritten, System.nanoTime() - start);
+
+            if (round == 0) assertSameEvents(viaReflection, viaMapper);
+        }
+
+        Log.i(TAG, "Mapped " + EVENTS + " events: toObject " + reflective / 1000 + " us, "
+                + "EventMapper " + handWritten / 1000 + " us ("
+                + String.format(Locale.US, "%.1f", (double) reflective / handWritten) + "x)");
+    }
+
+    private static void assertSameEvents(List<Event> expected, List<Event> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Event e = expected.get(i);
+            Event a = actual.get(i);
+            assertEquals(e.getId(), a.getId());
+            assertEquals(e.getOwnerId(), a.getOwnerId());
+            assertEquals(e.getName(), a.getName());
+            assertEquals(e.getDescription(), a.getDescription());
+            assertEquals(e.getMusicTypes(), a.getMusicTypes());
+            assertEquals(e.genreMask(), a.genreMask());
+            assertEquals(e.getAddress(), a.getAddress());
+            assertEquals(e.getDateTime(), a.getDateTime());
+            assertEquals(e.getMaxCapacity(), a.getMaxCapacity());
+            assertEquals(e.getReserved(), a.getReserved());
+            assertEquals(e.isActive(), a.isActive());
+            assertEquals(e.getLatitude(), a.getLatitude(), 0);
+            assertEquals(e.getLongitude(), a.getLongitude(), 0);
+            assertEquals(e.getGeohash(), a.getGeohash());
+            assertEquals(e.getParticipants(), a.getParticipants());
+        }
+    }
+}
@@ -0,0 +1,458 @@
+package com.example.jamming.model;
+
+import com.example.jamming.utils.DateUtils;
+import com.example.jamming.utils.GeoUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An EventFilter compiled into an ordered chain of primitive predicates.
+ *
+ * Compilation reads the boxed values of the filter once, drops criteria
+ * that are not set, and orders the remaining checks so that cheap and
+ * selective ones run first and reject most events before the expensive
+ * ones (time-of-day, distance) are evaluated.
+ *
+ * The compiled values are kept per facet, so two compiled filters can be
+ * compared to find out which facets were narrowed or widened.
+ */
+public class CompiledEventFilter {
+
+    /**
+     * Criteria families a filter is made of.
+     * STATUS covers the implicit "active and not in the past" rule.
+     */
+    public enum Facet {
+        STATUS,
+        GENRE,
+        DISTANCE,
+        DATE,
+        TIME,
+        SPOTS,
+        CAPACITY
+    }
+
+    /** How a facet changed between two compiled filters */
+    public enum Change {
+        /** Accepts exactly the same events */
+        SAME,
+        /** Accepts a subset of the events accepted before */
+        NARROWER,
+        /** Accepts a superset of the events accepted before */
+        WIDER,
+        /** Neither a subset nor a superset */
+        CHANGED
+    }
+
+    /** A single compiled check against the event at one store position */
+    interface Criterion {
+        boolean test(EventStore store, int position);
+    }
+
+    /** A criterion together with its facet and relative evaluation cost */
+    static final class Stage {
+        final Facet facet;
+        final int cost;
+        final Criterion criterion;
+
+        Stage(Facet facet, int cost, Criterion criterion) {
+            this.facet = facet;
+            this.cost = cost;
+            this.criterion = criterion;
+        }
+    }
+
+    // Relative per-event cost of each check, used for ordering
+    private static final int COST_COMPARE = 1;
+    private static final int COST_TIME = 6;
+    private static final int COST_DISTANCE = 10;
+
+    /** Below this many events a sample is not worth taking */
+    private static final int MIN_EVENTS_FOR_SAMPLING = 512;
+
+    /** Number of events sampled to estimate selectivity */
+    private static final int SAMPLE_SIZE = 128;
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    /* ===== Compiled criterion values (unset ranges are open-ended) ===== */
+    private final long now;
+    private final long dateFrom;
+    private final long dateTo;
+    private final int spotsMin;
+    private final int spotsMax;
+    private final int capacityMin;
+    private final int capacityMax;
+    private final int genreMask;
+    private final boolean hasTime;
+    private final int timeStart;
+    private final int timeEnd;
+    private final boolean hasLocation;
+    private final double centerLat;
+    private final double centerLng;
+    private final double radiusKm;
+
+    /** Active criteria in evaluation order */
+    private Stage[] stages;
+
+    /** Active criteria by facet ordinal; null when the facet is not set */
+    private final Criterion[] byFacet = new Criterion[Facet.values().length];
+
+    private CompiledEventFilter(EventFilter filter, long now) {
+        this.now = now;
+
+        boolean hasDate = filter.getStartDateMillis() != null && filter.getEndDateMillis() != null;
+        dateFrom = hasDate ? filter.getStartDateMillis() : Long.MIN_VALUE;
+        dateTo = hasDate ? filter.getEndDateMillis() : Long.MAX_VALUE;
+
+        spotsMin = filter.getMinAvailableSpots() != null ? filter.getMinAvailableSpots() : Integer.MIN_VALUE;
+        spotsMax = filter.getMaxAvailableSpots() != null ? filter.getMaxAvailableSpots() : Integer.MAX_VALUE;
+        capacityMin = filter.getMinCapacity() != null ? filter.getMinCapacity() : Integer.MIN_VALUE;
+        capacityMax = filter.getMaxCapacity() != null ? filter.getMaxCapacity() : Integer.MAX_VALUE;
+
+        genreMask = filter.genreMask();
+
+        hasTime = filter.getStartMinute() != null && filter.getEndMinute() != null;
+        timeStart = hasTime ? filter.getStartMinute() : 0;
+        timeEnd = hasTime ? filter.getEndMinute() : MINUTES_PER_DAY - 1;
+
+        hasLocation = filter.getRadiusKm() != null
+                && filter.getCenterLat() != null
+                && filter.getCenterLng() != null;
+        centerLat = hasLocation ? filter.getCenterLat() : 0;
+        centerLng = hasLocation ? filter.getCenterLng() : 0;
+        radiusKm = hasLocation ? filter.getRadiusKm() : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Compiles a filter using the static cost order of its criteria.
+     *
+     * @param filter Filter to compile
+     * @param now Current time in milliseconds; earlier events are rejected
+     * @return Compiled filter
+     */
+    public static CompiledEventFilter compile(EventFilter filter, long now) {
+        return compile(filter, now, null);
+    }
+
+    /**
+     * Compiles a filter and orders its criteria by estimated selectivity.
+     * When the store is large enough, a small evenly spaced sample is used to
+     * estimate how many events each criterion rejects, and criteria are
+     * ordered by cost per rejected event.
+     *
+     * @param filter Filter to compile
+     * @param now Current time in milliseconds; earlier events are rejected
+     * @param store Events the filter will run on (may be null)
+     * @return Compiled filter
+     */
+    public static CompiledEventFilter compile(EventFilter filter, long now, EventStore store) {
+        CompiledEventFilter compiled = new CompiledEventFilter(filter, now);
+        List<Stage> stages = new ArrayList<>();
+
+        stages.add(compiled.stage(Facet.STATUS, COST_COMPARE,
+                (s, i) -> s.active[i] && s.dateTimes[i] >= now));
+
+        if (compiled.dateFrom != Long.MIN_VALUE || compiled.dateTo != Long.MAX_VALUE) {
+            long start = compiled.dateFrom;
+            long end = compiled.dateTo;
+            stages.add(compiled.stage(Facet.DATE, COST_COMPARE,
+                    (s, i) -> s.dateTimes[i] >= start && s.dateTimes[i] <= end));
+        }
+
+        if (compiled.spotsMin != Integer.MIN_VALUE || compiled.spotsMax != Integer.MAX_VALUE) {
+            int min = compiled.spotsMin;
+            int max = compiled.spotsMax;
+            stages.add(compiled.stage(Facet.SPOTS, COST_COMPARE, (s, i) -> {
+                int available = s.capacities[i] - s.reserved[i];
+                return available >= min && available <= max;
+            }));
+        }
+
+        if (compiled.capacityMin != Integer.MIN_VALUE || compiled.capacityMax != Integer.MAX_VALUE) {
+            int min = compiled.capacityMin;
+            int max = compiled.capacityMax;
+            stages.add(compiled.stage(Facet.CAPACITY, COST_COMPARE, (s, i) -> {
+                int capacity = s.capacities[i];
+                return capacity >= min && capacity <= max;
+            }));
+        }
+
+        if (compiled.genreMask != 0) {
+            int mask = compiled.genreMask;
+            stages.add(compiled.stage(Facet.GENRE, COST_COMPARE, (s, i) -> (s.genreMasks[i] & mask) != 0));
+        }
+
+        if (compiled.hasTime) {
+            stages.add(compiled.stage(Facet.TIME, COST_TIME,
+                    (s, i) -> compiled.acceptsMinute(DateUtils.minutesFromMidnight(s.dateTimes[i]))));
+        }
+
+        if (compiled.hasLocation) {
+            GeoUtils.RadiusMatcher circle = GeoUtils.radiusMatcher(
+                    compiled.centerLat, compiled.centerLng, compiled.radiusKm);
+            stages.add(compiled.stage(Facet.DISTANCE, COST_DISTANCE,
+                    (s, i) -> circle.matches(s.latitudes[i], s.longitudes[i])));
+        }
+
+        Stage[] ordered = stages.toArray(new Stage[0]);
+        if (store != null && store.size() >= MIN_EVENTS_FOR_SAMPLING) {
+            orderBySelectivity(ordered, store);
+        } else {
+            Arrays.sort(ordered, Comparator.comparingInt(s -> s.cost));
+        }
+        compiled.stages = ordered;
+        return compiled;
+    }
+
+    /**
+     * Checks whether the event at a store position passes every compiled criterion.
+     *
+     * @param store Store holding the event
+     * @param position Event position in the store
+     * @return True if the event matches the filter
+     */
+    public boolean matches(EventStore store, int position) {
+        for (Stage stage : stages) {
+            if (!stage.criterion.test(store, position)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether an event passes every compiled criterion except one facet.
+     *
+     * @param ignored Facet to leave out
+     * @param store Store holding the event
+     * @param position Event position in the store
+     * @return True if the event matches the rest of the filter
+     */
+    public boolean matchesIgnoring(Facet ignored, EventStore store, int position) {
+        for (Stage stage : stages) {
+            if (stage.facet != ignored && !stage.criterion.test(store, position)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the first facet, in evaluation order, that rejects an event.
+     *
+     * @param store Store holding the event
+     * @param position Event position in the store
+     * @return Rejecting facet, or null if the event matches the filter
+     */
+    public Facet firstRejecting(EventStore store, int position) {
+        for (Stage stage : stages) {
+            if (!stage.criterion.test(store, position)) return stage.facet;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the facets that reject an event, as a bitmask of facet ordinals.
+     * Evaluation stops once the answer can no longer make the event match
+     * with a single facet relaxed: when two facets reject it, or when the
+     * status (which is never relaxed) does.
+     *
+     * @param store Store holding the event
+     * @param position Event position in the store
+     * @return 0 if the event matches; a single bit if exactly one facet
+     *         rejects it; otherwise a mask with two or more bits
+     */
+    public int rejectingFacets(EventStore store, int position) {
+        int mask = 0;
+        for (Stage stage : stages) {
+            if (stage.criterion.test(store, position)) continue;
+
+            // Past or inactive events count nowhere
+            if (stage.facet == Facet.STATUS) return -1;
+
+            int bit = 1 << stage.facet.ordinal();
+            if (mask != 0) return mask | bit;
+            mask = bit;
+        }
+        return mask;
+    }
+
+    /**
+     * Checks a single facet of the filter against an event.
+     *
+     * @param facet Facet to check
+     * @param store Store holding the event
+     * @param position Event position in the store
+     * @return True if the facet is not set or accepts the event
+     */
+    public boolean passes(Facet facet, EventStore store, int position) {
+        Criterion criterion = byFacet[facet.ordinal()];
+        return criterion == null || criterion.test(store, position);
+    }
+
+    /**
+     * Returns the facets that are active in this filter, in evaluation order.
+     */
+    public List<Facet> getFacets() {
+        List<Facet> facets = new ArrayList<>(stages.length);
+        for (Stage stage : stages) facets.add(stage.facet);
+        return facets;
+    }
+
+    /**
+     * Returns the earliest accepted start time, combining the date range
+     * with the rule that past events never match.
+     */
+    public long getEarliestStart() { return Math.max(now, dateFrom); }
+
+    /**
+     * Returns the latest accepted start time ({@link Long#MAX_VALUE} when unbounded).
+     */
+    public long getLatestStart() { return dateTo; }
+
+    /**
+     * Checks whether a date range criterion is set.
+     */
+    public boolean hasDateRange() { return dateFrom != Long.MIN_VALUE; }
+
+    /**
+     * Checks whether a time-of-day criterion is set.
+     */
+    public boolean hasTimeRange() { return hasTime; }
+    public int getTimeStart() { return timeStart; }
+    public int getTimeEnd() { return timeEnd; }
+
+    /**
+     * Returns the fraction of the day accepted by the time-of-day criterion.
+     */
+    double timeRangeFraction() {
+        if (!hasTime) return 1;
+        int span = timeStart <= timeEnd
+                ? timeEnd - timeStart + 1
+                : MINUTES_PER_DAY - timeStart + timeEnd + 1;
+        return span / (double) MINUTES_PER_DAY;
+    }
+
+    /**
+     * Checks whether a radius criterion is set.
+     */
+    public boolean hasLocation() { return hasLocation; }
+    public double getCenterLat() { return centerLat; }
+    public double getCenterLng() { return centerLng; }
+    public double getRadiusKm() { return radiusKm; }
+
+    /**
+     * Describes how one facet of this filter relates to the same facet
+     * of a previously compiled filter.
+     *
+     * @param facet Facet to compare
+     * @param previous Previously compiled filter
+     * @return How the set of events accepted by the facet changed
+     */
+    public Change compare(Facet facet, CompiledEventFilter previous) {
+        switch (facet) {
+            case STATUS:
+                return compareRanges(now, Long.MAX_VALUE, previous.now, Long.MAX_VALUE);
+            case DATE:
+                return compareRanges(dateFrom, dateTo, previous.dateFrom, previous.dateTo);
+            case SPOTS:
+                return compareRanges(spotsMin, spotsMax, previous.spotsMin, previous.spotsMax);
+            case CAPACITY:
+                return compareRanges(capacityMin, capacityMax, previous.capacityMin, previous.capacityMax);
+            case GENRE:
+                return compareGenres(genreMask, previous.genreMask);
+            case TIME:
+                return compareTimes(previous);
+            case DISTANCE:
+                return compareCircles(previous);
+            default:
+                return Change.CHANGED;
+        }
+    }
+
+    private Stage stage(Facet facet, int cost, Criterion criterion) {
+        byFacet[facet.ordinal()] = criterion;
+        return new Stage(facet, cost, criterion);
+    }
+
+    private boolean acceptsMinute(int minutes) {
+        return timeStart <= timeEnd
+                // Same-day range (e.g. 10:00–18:00)
+                ? minutes >= timeStart && minutes <= timeEnd
+                // Overnight range (e.g. 23:00–03:00)
+                : minutes >= timeStart || minutes <= timeEnd;
+    }
+
+    private static Change compareRanges(long from, long to, long prevFrom, long prevTo) {
+        if (from == prevFrom && to == prevTo) return Change.SAME;
+        if (from >= prevFrom && to <= prevTo) return Change.NARROWER;
+        if (from <= prevFrom && to >= prevTo) return Change.WIDER;
+        return Change.CHANGED;
+    }
+
+    private static Change compareGenres(int mask, int prevMask) {
+        // An empty selection accepts every event
+        if (mask == prevMask) return Change.SAME;
+        if (prevMask == 0) return Change.NARROWER;
+        if (mask == 0) return Change.WIDER;
+        if ((mask & ~prevMask) == 0) return Change.NARROWER;
+        if ((prevMask & ~mask) == 0) return Change.WIDER;
+        return Change.CHANGED;
+    }
+
+    private Change compareTimes(CompiledEventFilter previous) {
+        // Ranges may wrap around midnight, so compare the accepted minutes directly
+        boolean lost = false;
+        boolean gained = false;
+        for (int m = 0; m < MINUTES_PER_DAY; m++) {
+            boolean accepted = !hasTime || acceptsMinute(m);
+            boolean acceptedBefore = !previous.hasTime || previous.acceptsMinute(m);
+            lost |= acceptedBefore && !accepted;
+            gained |= accepted && !acceptedBefore;
+        }
+        if (!lost && !gained) return Change.SAME;
+        if (!gained) return Change.NARROWER;
+        if (!lost) return Change.WIDER;
+        return Change.CHANGED;
+    }
+
+    private Change compareCircles(CompiledEventFilter previous) {
+        if (!hasLocation && !previous.hasLocation) return Change.SAME;
+        if (!previous.hasLocation) return Change.NARROWER;
+        if (!hasLocation) return Change.WIDER;
+
+        double between = GeoUtils.calculateDistanceKm(
+                centerLat, centerLng, previous.centerLat, previous.centerLng);
+        if (between == 0 && radiusKm == previous.radiusKm) return Change.SAME;
+        if (between + radiusKm <= previous.radiusKm) return Change.NARROWER;
+        if (between + previous.radiusKm <= radiusKm) return Change.WIDER;
+        return Change.CHANGED;
+    }
+
+    /**
+     * Orders stages by expected cost per rejected event (cost / reject rate),
+     * which is the optimal order for independent predicates.
+     */
+    private static void orderBySelectivity(Stage[] stages, EventStore store) {
+        int n = store.size();
+        int step = Math.max(1, n / SAMPLE_SIZE);
+        double[] rank = new double[stages.length];
+
+        for (int s = 0; s < stages.length; s++) {
+            int sampled = 0;
+            int rejected = 0;
+            for (int i = 0; i < n && sampled < SAMPLE_SIZE; i += step, sampled++) {
+                if (!stages[s].criterion.test(store, i)) rejected++;
+            }
+            // Laplace smoothing keeps never-rejecting stages finite but last
+            double rejectRate = (rejected + 1.0) / (sampled + 2.0);
+            rank[s] = stages[s].cost / rejectRate;
+        }
+
+        Integer[] order = new Integer[stages.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparingDouble(i -> rank[i]));
+
+        Stage[] copy = stages.clone();
+        for (int i = 0; i < order.length; i++) stages[i] = copy[order[i]];
+    }
+}
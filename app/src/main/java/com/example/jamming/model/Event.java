@@ -18,6 +18,11 @@ public class Event {
     private double latitude;
     private double longitude;
 
+    // Geohash of the location, used for location range queries (see GeoHashUtils)
+    private String geohash;
+
+    // Bitmask of recognized genres, derived from musicTypes whenever it is set
+    private int genreMask;
 
     public Event() {
         this.musicTypes = new ArrayList<>();
@@ -32,6 +37,7 @@ public class Event {
         this.name = name;
         this.description = description;
         this.musicTypes = musicTypes != null ? musicTypes : new ArrayList<>();
+        this.genreMask = MusicGenre.maskOfDisplayNames(this.musicTypes);
         this.address = address;
         this.dateTime = dateTime;
         this.maxCapacity = maxCapacity;
@@ -50,14 +56,25 @@ public class Event {
         if (musicTypes == null) return result;
 
         for (String s : musicTypes) {
-            try {
-                result.add(MusicGenre.fromDisplayName(s));
-            } catch (Exception ignored) {
-                // ignore unknown / legacy values from DB
-            }
+            MusicGenre genre = MusicGenre.fromDisplayNameOrNull(s);
+            // ignore unknown / legacy values from DB
+            if (genre != null) result.add(genre);
         }
         return result;
     }
+
+    /**
+     * Returns the bitmask of this event's recognized genres
+     * (see {@link MusicGenre#getMask()}).
+     * The mask is computed when the genres are set, so matching against a
+     * filter is a single AND. Not named as a getter so Firestore does not
+     * store it.
+     *
+     * @return Genre bitmask
+     */
+    public int genreMask() {
+        return genreMask;
+    }
     public List<String> getMusicTypes() {
         return musicTypes;
     }
@@ -69,18 +86,25 @@ public class Event {
     public boolean isActive() { return isActive; }
     public double getLatitude() { return latitude; }
     public double getLongitude() { return longitude; }
+    public String getGeohash() { return geohash; }
 
     public void setId(String id) { this.id = id; }
     public void setOwnerId(String ownerId) { this.ownerId = ownerId; }
 
     public void setName(String name) { this.name = name; }
     public void setDescription(String description) { this.description = description; }
-    public void setMusicTypes(List<String> musicTypes) { this.musicTypes = musicTypes; }
+    public void setMusicTypes(List<String> musicTypes) {
+        this.musicTypes = musicTypes;
+        this.genreMask = MusicGenre.maskOfDisplayNames(musicTypes);
+    }
     public void setAddress(String address) { this.address = address; }
     public void setDateTime(long dateTime) { this.dateTime = dateTime; }
     public void setActive(boolean active) { isActive = active; }
     public void setLatitude(double latitude) { this.latitude = latitude; }
     public void setLongitude(double longitude) { this.longitude = longitude; }
+    public void setGeohash(String geohash) { this.geohash = geohash; }
+
+    public void setMaxCapacity(int maxCapacity) { this.maxCapacity = maxCapacity; }
 
     public void setReserved(int reserved) {
         this.reserved = reserved;
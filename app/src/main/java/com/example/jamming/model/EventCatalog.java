@@ -0,0 +1,232 @@
+package com.example.jamming.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The events a screen has loaded, with the state that makes filtering,
+ * searching and ranking them fast: a column-oriented {@link EventStore},
+ * incremental filter state, recent filter results and a text index.
+ *
+ * Replacing the events rebuilds all of it. Changes to single events are
+ * applied in place instead: their rows are rewritten and only they are
+ * re-checked against the filter. Removed events keep their row, emptied
+ * and inactive, so that no position moves, until inactive rows make up
+ * {@link #MAX_INACTIVE_SHARE} of the store and it is rebuilt without them.
+ *
+ * Results are positions in the store; see {@link #materialize(int[])}.
+ */
+public class EventCatalog {
+
+    /** Number of recent filter results remembered */
+    private static final int FILTER_CACHE_SIZE = 8;
+
+    /**
+     * Share of inactive rows at which the store is rebuilt without them,
+     * so that it does not grow for as long as changes are applied.
+     * Rebuilding is linear in the number of events, so it is spread over
+     * at least that many removals divided by this share's inverse.
+     */
+    static final double MAX_INACTIVE_SHARE = 0.25;
+
+    private List<Event> events = new ArrayList<>();
+    private EventStore store = new EventStore(events);
+
+    /** Filter state over the store; re-checks only what a filter change affects */
+    private IncrementalEventFilter incrementalFilter = new IncrementalEventFilter(store);
+
+    /** Recent filter results, so that switching back to a filter does not filter again */
+    private FilterResultCache filterCache = new FilterResultCache(store, FILTER_CACHE_SIZE);
+
+    /**
+     * Text index over the events, filled on the first search after they
+     * change, and extended as more of them are indexed.
+     */
+    private EventSearchIndex searchIndex = new EventSearchIndex();
+
+    /** Position of each event in the store, by event ID */
+    private Map<String, Integer> positionsById = new HashMap<>();
+
+    /** Number of inactive rows in the store, e.g. of removed events */
+    private int inactiveRows;
+
+    /**
+     * Replaces the events and rebuilds the state derived from them.
+     *
+     * @param events New events; the list is kept and updated in place
+     */
+    public void setEvents(List<Event> events) {
+        this.events = events;
+        store = new EventStore(events);
+        incrementalFilter = new IncrementalEventFilter(store);
+        filterCache = new FilterResultCache(store, FILTER_CACHE_SIZE);
+        searchIndex = new EventSearchIndex();
+
+        positionsById = new HashMap<>(events.size() * 2);
+        inactiveRows = 0;
+        for (int i = 0; i < events.size(); i++) {
+            positionsById.put(events.get(i).getId(), i);
+            if (!events.get(i).isActive()) inactiveRows++;
+        }
+    }
+
+    /**
+     * Applies changes to single events in place. Events not held yet are
+     * appended, which rebuilds the store; that is rare compared to changes
+     * of held events.
+     *
+     * @param changed Events added or modified
+     * @param removedIds IDs of events removed
+     */
+    public void applyChanges(List<Event> changed, List<String> removedIds) {
+        boolean textChanged = false;
+        List<Event> added = new ArrayList<>();
+
+        for (String id : removedIds) {
+            Integer position = positionsById.get(id);
+            if (position == null) continue;
+
+            Event removed = new Event();
+            removed.setId(id);
+            removed.setActive(false);
+            updateRow(position, removed);
+        }
+        for (Event event : changed) {
+            Integer position = positionsById.get(event.getId());
+            if (position == null) {
+                added.add(event);
+                continue;
+            }
+            textChanged |= !sameText(store.get(position), event);
+            updateRow(position, event);
+        }
+
+        // Cached results of other filters may include or miss changed events
+        filterCache.clear();
+        if (textChanged) searchIndex = new EventSearchIndex();
+
+        if (!added.isEmpty() || inactiveRows > MAX_INACTIVE_SHARE * events.size()) {
+            List<Event> rebuilt = new ArrayList<>(events.size() - inactiveRows + added.size());
+            for (Event event : events) {
+                if (event.isActive()) rebuilt.add(event);
+            }
+            rebuilt.addAll(added);
+            setEvents(rebuilt);
+        }
+    }
+
+    /**
+     * Rewrites one event's row and re-checks it against the filter.
+     */
+    private void updateRow(int position, Event event) {
+        if (store.get(position).isActive() != event.isActive()) {
+            inactiveRows += event.isActive() ? -1 : 1;
+        }
+        store.update(position, event);
+        incrementalFilter.refresh(position);
+    }
+
+    /**
+     * Checks whether two versions of an event have the same searchable text.
+     */
+    private static boolean sameText(Event a, Event b) {
+        return Objects.equals(a.getName(), b.getName())
+                && Objects.equals(a.getDescription(), b.getDescription())
+                && Objects.equals(a.getAddress(), b.getAddress())
+                && Objects.equals(a.getMusicTypes(), b.getMusicTypes());
+    }
+
+    /**
+     * Returns whether no active event is held.
+     */
+    public boolean isEmpty() {
+        return events.size() == inactiveRows;
+    }
+
+    /**
+     * Returns the positions of the active, upcoming events matching a
+     * filter. Recently used filters are answered from the cache; otherwise
+     * only events affected by the latest filter change are re-checked.
+     *
+     * @param filter Filter to apply
+     * @param now Current time in milliseconds
+     * @return Matching positions
+     */
+    public int[] filter(EventFilter filter, long now) {
+        int[] positions = filterCache.get(filter, now);
+        if (positions == null) {
+            positions = incrementalFilter.apply(filter, now);
+            filterCache.put(filter, positions);
+        }
+        return positions;
+    }
+
+    /**
+     * Returns the positions of the events matching a filter that are
+     * closest to a location, nearest first, ignoring the filter's radius.
+     *
+     * @see EventFilterEngine#nearestPositions
+     */
+    public int[] nearest(EventFilter filter, long now, double lat, double lng, int count) {
+        return EventFilterEngine.nearestPositions(store, filter, now, lat, lng, count);
+    }
+
+    /**
+     * Restricts positions to events matching a search query.
+     *
+     * @param positions Positions to restrict
+     * @param query Search query
+     * @param keepOrder Whether the positions keep their order (e.g. by
+     *                  distance); otherwise they are ordered by search relevance
+     * @return Matching positions
+     */
+    public int[] search(int[] positions, String query, boolean keepOrder) {
+        searchIndex.addAll(events);
+        int[] ranked = searchIndex.search(query);
+
+        boolean[] matched = new boolean[store.size()];
+        int[] primary = keepOrder ? ranked : positions;
+        int[] order = keepOrder ? positions : ranked;
+        for (int position : primary) matched[position] = true;
+
+        int[] result = new int[Math.min(positions.length, ranked.length)];
+        int count = 0;
+        for (int position : order) {
+            if (matched[position]) result[count++] = position;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Orders positions by relevance and keeps the best ones.
+     *
+     * @param positions Positions to rank, holding active events only
+     * @param ranker Scores the events
+     * @param limit Maximum number of positions kept
+     * @return Most relevant positions, best first
+     */
+    public int[] rank(int[] positions, EventRanker ranker, int limit) {
+        return ranker.top(store, positions, limit);
+    }
+
+    /**
+     * Counts how many events each filter option would return, given the
+     * other criteria of a filter.
+     *
+     * @see EventFacetCounts#compute
+     */
+    public EventFacetCounts countFacets(EventFilter filter, long now, Double originLat, Double originLng) {
+        return EventFacetCounts.compute(store, filter, now, originLat, originLng);
+    }
+
+    /**
+     * Returns the events at the given positions, in order.
+     */
+    public List<Event> materialize(int[] positions) {
+        return store.materialize(positions, positions.length);
+    }
+}
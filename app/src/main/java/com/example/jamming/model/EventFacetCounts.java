@@ -0,0 +1,289 @@
+package com.example.jamming.model;
+
+import com.example.jamming.model.CompiledEventFilter.Facet;
+import com.example.jamming.utils.DateUtils;
+import com.example.jamming.utils.GeoUtils;
+
+/**
+ * Number of events each filter option would return, given all the other
+ * active criteria of a filter.
+ *
+ * All counts come from a single scan: for every event the compiled filter
+ * reports which facets reject it. An event rejected by no facet counts in
+ * the options of every facet; an event rejected by exactly one facet counts
+ * only in that facet's options (it would match if that facet were changed
+ * to the option); events rejected by two or more facets count nowhere.
+ *
+ * When the scanned events were fetched with a query restricted to some
+ * genres, dates or distance, options outside that restriction cannot be
+ * counted; {@link #restrictToFetched} marks them, and their counts read -1.
+ */
+public class EventFacetCounts {
+
+    /** Number of days, starting today, with a date count */
+    public static final int DATE_DAYS = 31;
+
+    /** Largest radius, in whole kilometers, with a distance count */
+    public static final int MAX_DISTANCE_KM = 200;
+
+    /**
+     * Lower bounds of the seat buckets used for both available spots and
+     * capacity; the last bucket is open-ended.
+     */
+    public static final int[] SEAT_BUCKETS = {0, 10, 25, 50, 100, 250, 500};
+
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    private static final int GENRE_BIT = 1 << Facet.GENRE.ordinal();
+    private static final int DATE_BIT = 1 << Facet.DATE.ordinal();
+    private static final int TIME_BIT = 1 << Facet.TIME.ordinal();
+    private static final int DISTANCE_BIT = 1 << Facet.DISTANCE.ordinal();
+    private static final int SPOTS_BIT = 1 << Facet.SPOTS.ordinal();
+    private static final int CAPACITY_BIT = 1 << Facet.CAPACITY.ordinal();
+
+    private final int[] genreCounts = new int[MusicGenre.values().length];
+    private final int[] dayCounts = new int[DATE_DAYS];
+    private final int[] hourCounts = new int[24];
+    private final int[] spotsCounts = new int[SEAT_BUCKETS.length];
+    private final int[] capacityCounts = new int[SEAT_BUCKETS.length];
+
+    /** Events by whole kilometers of distance (rounded up); null without an origin */
+    private final int[] distanceCounts;
+
+    private final long todayStart;
+
+    /* Options the scanned events fully cover; everything until restricted */
+    private int uncoveredGenres;
+    private int firstCoveredDay;
+    private int lastCoveredDay = DATE_DAYS - 1;
+    private double coveredKm = Double.POSITIVE_INFINITY;
+
+    private EventFacetCounts(boolean hasOrigin, long todayStart) {
+        this.distanceCounts = hasOrigin ? new int[MAX_DISTANCE_KM + 1] : null;
+        this.todayStart = todayStart;
+    }
+
+    /**
+     * Counts, in one scan, the events each filter option would return.
+     * Distances are measured from the given origin, or from the filter's
+     * own center when no origin is given.
+     *
+     * @param store Events to count
+     * @param filter Currently active filter
+     * @param now Current time in milliseconds; earlier events never count
+     * @param originLat Latitude to measure distances from (may be null)
+     * @param originLng Longitude to measure distances from (may be null)
+     * @return Counts per option
+     */
+    public static EventFacetCounts compute(
+            EventStore store,
+            EventFilter filter,
+            long now,
+            Double originLat,
+            Double originLng
+    ) {
+        CompiledEventFilter compiled = CompiledEventFilter.compile(filter, now, store);
+
+        double lat;
+        double lng;
+        if (originLat != null && originLng != null) {
+            lat = originLat;
+            lng = originLng;
+        } else if (compiled.hasLocation()) {
+            lat = compiled.getCenterLat();
+            lng = compiled.getCenterLng();
+        } else {
+            lat = Double.NaN;
+            lng = Double.NaN;
+        }
+        boolean hasOrigin = !Double.isNaN(lat);
+
+        EventFacetCounts counts = new EventFacetCounts(hasOrigin, localDayStart(now));
+
+        for (int i = 0; i < store.size(); i++) {
+            int rejecting = compiled.rejectingFacets(store, i);
+            if (rejecting != 0 && Integer.bitCount(rejecting) > 1) continue;
+
+            if (rejecting == 0 || rejecting == GENRE_BIT) {
+                counts.addGenres(store.genreMasks[i]);
+            }
+            if (rejecting == 0 || rejecting == DATE_BIT) {
+                counts.addDay(store.dateTimes[i]);
+            }
+            if (rejecting == 0 || rejecting == TIME_BIT) {
+                counts.hourCounts[DateUtils.minutesFromMidnight(store.dateTimes[i]) / 60]++;
+            }
+            if (rejecting == 0 || rejecting == SPOTS_BIT) {
+                counts.spotsCounts[seatBucket(store.capacities[i] - store.reserved[i])]++;
+            }
+            if (rejecting == 0 || rejecting == CAPACITY_BIT) {
+                counts.capacityCounts[seatBucket(store.capacities[i])]++;
+            }
+            if (hasOrigin && (rejecting == 0 || rejecting == DISTANCE_BIT)) {
+                double km = GeoUtils.calculateDistanceKm(lat, lng, store.latitudes[i], store.longitudes[i]);
+                if (km <= MAX_DISTANCE_KM) {
+                    counts.distanceCounts[(int) Math.ceil(km)]++;
+                }
+            }
+        }
+
+        // Turn the distance histogram into "within k km" totals
+        if (hasOrigin) {
+            for (int km = 1; km <= MAX_DISTANCE_KM; km++) {
+                counts.distanceCounts[km] += counts.distanceCounts[km - 1];
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Marks the options the scanned events cannot answer for, because the
+     * query that fetched them was restricted: genres it did not select,
+     * days it only partly or not at all covered, and radii reaching beyond
+     * the fetched circle. Those options report -1.
+     *
+     * @param genreMask Genres the query selected (0 for every genre)
+     * @param fromMillis Earliest start the query fetched
+     * @param toMillis Latest start the query fetched (null for no end)
+     * @param coveredKm Radius around the distance origin within which every
+     *                  event was fetched ({@link Double#POSITIVE_INFINITY}
+     *                  without a distance restriction)
+     * @param now Current time in milliseconds, as passed to {@link #compute}
+     */
+    public void restrictToFetched(int genreMask, long fromMillis, Long toMillis, double coveredKm, long now) {
+        uncoveredGenres = genreMask != 0 ? ~genreMask : 0;
+
+        // A day counts only from now on, so today is covered by a query starting now
+        if (fromMillis > now) {
+            int day = dayIndex(fromMillis);
+            firstCoveredDay = localDayStart(fromMillis) == fromMillis ? day : day + 1;
+        }
+        if (toMillis != null) {
+            int day = dayIndex(toMillis);
+            lastCoveredDay = dayIndex(toMillis + 1) > day ? day : day - 1;
+        }
+        this.coveredKm = coveredKm;
+    }
+
+    /**
+     * Returns how many events would match if only this genre were selected.
+     *
+     * @param genre Music genre
+     * @return Number of events, or -1 if the fetched events do not cover the genre
+     */
+    public int getGenreCount(MusicGenre genre) {
+        if ((uncoveredGenres & genre.getMask()) != 0) return -1;
+        return genreCounts[genre.ordinal()];
+    }
+
+    /**
+     * Returns how many events would match on each day, starting with today.
+     *
+     * @return Counts indexed by days from today ({@link #DATE_DAYS} entries),
+     *         -1 for days the fetched events do not cover
+     */
+    public int[] getDayCounts() {
+        int[] counts = dayCounts.clone();
+        for (int day = 0; day < DATE_DAYS; day++) {
+            if (day < firstCoveredDay || day > lastCoveredDay) counts[day] = -1;
+        }
+        return counts;
+    }
+
+    /**
+     * Returns how many events would match within a date range, summed over
+     * the days the range covers. Days beyond {@link #DATE_DAYS} are not counted.
+     *
+     * @param startMillis Start of the range (inclusive)
+     * @param endMillis End of the range (inclusive)
+     * @return Number of events, or -1 if the fetched events do not cover
+     *         every day of the range
+     */
+    public int getDateRangeCount(long startMillis, long endMillis) {
+        int from = Math.max(0, dayIndex(startMillis));
+        int to = Math.min(DATE_DAYS - 1, dayIndex(endMillis));
+        if (from < firstCoveredDay || to > lastCoveredDay) return -1;
+        int total = 0;
+        for (int day = from; day <= to; day++) {
+            total += dayCounts[day];
+        }
+        return total;
+    }
+
+    /**
+     * Returns how many events would match, per starting hour of the day.
+     *
+     * @return Counts indexed by hour (24 entries)
+     */
+    public int[] getHourCounts() {
+        return hourCounts.clone();
+    }
+
+    /**
+     * Returns how many events would match, per available-spots bucket.
+     *
+     * @return Counts indexed like {@link #SEAT_BUCKETS}
+     */
+    public int[] getAvailableSpotsCounts() {
+        return spotsCounts.clone();
+    }
+
+    /**
+     * Returns how many events would match, per capacity bucket.
+     *
+     * @return Counts indexed like {@link #SEAT_BUCKETS}
+     */
+    public int[] getCapacityCounts() {
+        return capacityCounts.clone();
+    }
+
+    /**
+     * Checks whether distance counts are available (a center or origin was known).
+     */
+    public boolean hasDistanceCounts() {
+        return distanceCounts != null;
+    }
+
+    /**
+     * Returns how many events would match with the given radius.
+     *
+     * @param radiusKm Radius in kilometers, up to {@link #MAX_DISTANCE_KM}
+     * @return Number of events, or -1 if distance counts are not available
+     *         or the radius reaches beyond the fetched events
+     */
+    public int getWithinKmCount(int radiusKm) {
+        if (distanceCounts == null || radiusKm > coveredKm) return -1;
+        return distanceCounts[Math.max(0, Math.min(MAX_DISTANCE_KM, radiusKm))];
+    }
+
+    private void addGenres(int mask) {
+        while (mask != 0) {
+            int ordinal = Integer.numberOfTrailingZeros(mask);
+            genreCounts[ordinal]++;
+            mask &= mask - 1;
+        }
+    }
+
+    private void addDay(long dateTime) {
+        int day = dayIndex(dateTime);
+        if (day >= 0 && day < DATE_DAYS) {
+            dayCounts[day]++;
+        }
+    }
+
+    private int dayIndex(long millis) {
+        // Rounded so that days shortened or lengthened by DST still count as one
+        return (int) Math.round((localDayStart(millis) - todayStart) / (double) DAY_MILLIS);
+    }
+
+    private static long localDayStart(long millis) {
+        return millis - Math.floorMod(millis, 60_000L) - DateUtils.minutesFromMidnight(millis) * 60_000L;
+    }
+
+    private static int seatBucket(int seats) {
+        int bucket = 0;
+        while (bucket + 1 < SEAT_BUCKETS.length && seats >= SEAT_BUCKETS[bucket + 1]) {
+            bucket++;
+        }
+        return bucket;
+    }
+}
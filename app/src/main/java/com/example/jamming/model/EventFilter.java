@@ -2,11 +2,15 @@ package com.example.jamming.model;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Model class representing a set of filtering criteria for events.
  * This object is used to store user-selected filters and is later
  * applied by the EventFilterEngine.
+ *
+ * Two filters are equal when they accept the same events: genres are
+ * compared as a set, all other criteria by value.
  */
 public class EventFilter {
 
@@ -34,6 +38,34 @@ public class EventFilter {
     private Integer minCapacity;
     private Integer maxCapacity;
 
+    /**
+     * Default constructor: no criteria set.
+     * Also required for Firestore deserialization.
+     */
+    public EventFilter() {
+    }
+
+    /**
+     * Copy constructor. The copy does not share its genre list with the original,
+     * so later changes to either filter do not affect the other.
+     *
+     * @param other Filter to copy
+     */
+    public EventFilter(EventFilter other) {
+        this.musicTypes = other.musicTypes != null ? new ArrayList<>(other.musicTypes) : new ArrayList<>();
+        this.centerLat = other.centerLat;
+        this.centerLng = other.centerLng;
+        this.radiusKm = other.radiusKm;
+        this.startMinute = other.startMinute;
+        this.endMinute = other.endMinute;
+        this.startDateMillis = other.startDateMillis;
+        this.endDateMillis = other.endDateMillis;
+        this.minAvailableSpots = other.minAvailableSpots;
+        this.maxAvailableSpots = other.maxAvailableSpots;
+        this.minCapacity = other.minCapacity;
+        this.maxCapacity = other.maxCapacity;
+    }
+
     /* ===== Getters / Setters ===== */
 
     /**
@@ -54,6 +86,17 @@ public class EventFilter {
         this.musicTypes = musicTypes;
     }
 
+    /**
+     * Returns the selected music genres as a bitmask
+     * (see {@link MusicGenre#getMask()}); 0 when no genre is selected.
+     * Not named as a getter so it is not persisted with the filter.
+     *
+     * @return Bitmask of selected genres
+     */
+    public int genreMask() {
+        return MusicGenre.maskOf(musicTypes);
+    }
+
     /**
      * Sets the location-based filtering parameters.
      *
@@ -129,4 +172,32 @@ public class EventFilter {
     public Integer getMinCapacity() { return minCapacity; }
     public Integer getMaxCapacity() { return maxCapacity; }
 
+    /* ===== Equality ===== */
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof EventFilter)) return false;
+
+        EventFilter other = (EventFilter) o;
+        return genreMask() == other.genreMask()
+                && Objects.equals(centerLat, other.centerLat)
+                && Objects.equals(centerLng, other.centerLng)
+                && Objects.equals(radiusKm, other.radiusKm)
+                && Objects.equals(startMinute, other.startMinute)
+                && Objects.equals(endMinute, other.endMinute)
+                && Objects.equals(startDateMillis, other.startDateMillis)
+                && Objects.equals(endDateMillis, other.endDateMillis)
+                && Objects.equals(minAvailableSpots, other.minAvailableSpots)
+                && Objects.equals(maxAvailableSpots, other.maxAvailableSpots)
+                && Objects.equals(minCapacity, other.minCapacity)
+                && Objects.equals(maxCapacity, other.maxCapacity);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(genreMask(), centerLat, centerLng, radiusKm,
+                startMinute, endMinute, startDateMillis, endDateMillis,
+                minAvailableSpots, maxAvailableSpots, minCapacity, maxCapacity);
+    }
 }
@@ -1,17 +1,57 @@
 package com.example.jamming.model;
 
-import com.example.jamming.utils.DateUtils;
 import com.example.jamming.utils.GeoUtils;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Engine responsible for filtering events based on a given EventFilter.
  * Applies multiple criteria such as activity status, genre, location,
  * date range, time range, and capacity constraints.
+ *
+ * Filtering runs over an {@link EventStore} (a column-oriented snapshot of
+ * the events) with the filter compiled once per call into a
+ * {@link CompiledEventFilter}, so per-event work is limited to the criteria
+ * that are actually set.
+ *
+ * Large scans are split across the common ForkJoinPool; below
+ * {@link #getParallelThreshold()} events the scan stays sequential.
  */
 public class EventFilterEngine {
 
+    /** Default number of events from which scans run in parallel */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 16_384;
+
+    /** Smallest slice of events handled by a single parallel task */
+    private static final int MIN_SLICE = 2_048;
+
+    /** Rings searched around the center before falling back to a full scan (~350 km) */
+    private static final int MAX_NEAREST_RINGS = 64;
+
+    /** Outcome marker for an event that matches every criterion */
+    static final byte MATCH = -1;
+
+    private static volatile int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    /**
+     * Sets the number of events from which scans are split across threads.
+     *
+     * @param threshold Minimum scan size for parallel execution
+     *                  ({@link Integer#MAX_VALUE} disables parallel scans)
+     */
+    public static void setParallelThreshold(int threshold) {
+        parallelThreshold = Math.max(1, threshold);
+    }
+
+    /**
+     * Returns the number of events from which scans run in parallel.
+     */
+    public static int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
     /**
      * Filters a list of events according to the provided filter.
      *
@@ -21,120 +61,326 @@ public class EventFilterEngine {
      */
     public static List<Event> filter(List<Event> events, EventFilter filter) {
         if (filter == null) return events;
+        return filter(new EventStore(events), filter);
+    }
 
-        List<Event> result = new ArrayList<>();
-        for (Event event : events) {
-            if (matches(event, filter)) {
-                result.add(event);
-            }
-        }
-        return result;
+    /**
+     * Filters the events of a store according to the provided filter.
+     * The store's spatial or time index narrows the candidates before the
+     * full match (including the exact distance and time checks) runs.
+     *
+     * @param store Events to filter
+     * @param filter EventFilter containing filtering criteria
+     * @return List of events that match the filter, in their original order
+     */
+    public static List<Event> filter(EventStore store, EventFilter filter) {
+        if (filter == null) return store.getEvents();
+
+        int[] positions = filterPositions(store, filter, System.currentTimeMillis());
+        return store.materialize(positions, positions.length);
     }
 
     /**
-     * Checks whether a single event matches all filter conditions.
+     * Returns the store positions of the events that match the filter.
      *
-     * @param event Event to check
-     * @param eventFilter Filtering criteria
-     * @return True if the event matches all conditions, false otherwise
+     * @param store Events to filter
+     * @param filter EventFilter containing filtering criteria
+     * @param now Current time in milliseconds; earlier events never match
+     * @return Matching positions in ascending order
      */
-    private static boolean matches(Event event, EventFilter eventFilter) {
+    public static int[] filterPositions(EventStore store, EventFilter filter, long now) {
+        CompiledEventFilter compiled = CompiledEventFilter.compile(filter, now, store);
+
+        int[] candidates = candidates(store, compiled);
+        int count = candidates != null ? candidates.length : store.size();
+
+        if (count >= parallelThreshold) {
+            byte[] outcomes = classify(store, compiled, candidates, count);
+            int[] result = new int[count];
+            int found = 0;
+            for (int k = 0; k < count; k++) {
+                if (outcomes[k] == MATCH) {
+                    result[found++] = candidates != null ? candidates[k] : k;
+                }
+            }
+            return Arrays.copyOf(result, found);
+        }
 
-        // Ignore inactive events
-        if (!event.isActive()) {
-            return false;
+        if (candidates != null) {
+            return matchPositions(store, compiled, candidates, count);
         }
 
-        // Ignore events that already occurred
-        long now = System.currentTimeMillis();
-        if (event.getDateTime() < now) {
-            return false;
+        int[] result = new int[store.size()];
+        int found = 0;
+        for (int i = 0; i < store.size(); i++) {
+            if (compiled.matches(store, i)) {
+                result[found++] = i;
+            }
         }
+        return Arrays.copyOf(result, found);
+    }
 
-        // Filter by music genres
-        if (!eventFilter.getMusicTypes().isEmpty()) {
-            boolean match = false;
-            for (String genreStr : event.getMusicTypes()) {
-                try {
-                    MusicGenre genreEnum = MusicGenre.fromDisplayName(genreStr);
+    /**
+     * Returns the events closest to a location that match every other
+     * criterion of the filter. Any radius set in the filter is ignored.
+     *
+     * Rings of grid cells are searched outward from the location while a
+     * bounded heap keeps the K closest matches seen so far. The search stops
+     * as soon as the K-th closest match is nearer than anything the next
+     * ring could contain, so the full distance-sorted list is never built.
+     *
+     * @param store Events to search
+     * @param filter EventFilter containing the other criteria
+     * @param now Current time in milliseconds; earlier events never match
+     * @param lat Latitude to measure from
+     * @param lng Longitude to measure from
+     * @param k Maximum number of events to return
+     * @return Positions of up to K matching events, nearest first
+     */
+    public static int[] nearestPositions(
+            EventStore store,
+            EventFilter filter,
+            long now,
+            double lat,
+            double lng,
+            int k
+    ) {
+        if (k <= 0 || store.size() == 0) return new int[0];
 
-                    if (eventFilter.getMusicTypes().contains(genreEnum)) {
-                        match = true;
-                        break;
-                    }
+        CompiledEventFilter compiled = CompiledEventFilter.compile(filter, now, store);
+        NearestHeap heap = new NearestHeap(k);
+        EventSpatialIndex index = store.getSpatialIndex();
 
-                } catch (IllegalArgumentException ignored) {
-                    // Ignore unknown or unsupported genre values
-                }
+        EventSpatialIndex.PositionVisitor offer = position -> {
+            if (compiled.matchesIgnoring(CompiledEventFilter.Facet.DISTANCE, store, position)) {
+                heap.offer(position, GeoUtils.calculateDistanceKm(
+                        lat, lng, store.latitudes[position], store.longitudes[position]));
             }
+        };
+
+        for (int ring = 0; ring <= MAX_NEAREST_RINGS; ring++) {
+            index.visitRing(lat, lng, ring, offer);
+            if (heap.isFull() && heap.maxDistance() <= EventSpatialIndex.ringLowerBoundKm(lat, ring)) {
+                return heap.toSortedPositions();
+            }
+        }
+
+        // Too sparse around the location for the ring search: scan everything
+        heap.clear();
+        for (int i = 0; i < store.size(); i++) {
+            offer.visit(i);
+        }
+        return heap.toSortedPositions();
+    }
 
-            if (!match) return false;
+    /**
+     * Fixed-capacity max-heap on distance, keeping the K smallest offers.
+     */
+    private static final class NearestHeap {
+        private final int[] positions;
+        private final double[] distances;
+        private int size;
+
+        NearestHeap(int capacity) {
+            positions = new int[capacity];
+            distances = new double[capacity];
         }
 
-        // Filter by geographic distance
-        if (eventFilter.getRadiusKm() != null) {
-            double dist = GeoUtils.calculateDistanceKm(
-                    eventFilter.getCenterLat(),
-                    eventFilter.getCenterLng(),
-                    event.getLatitude(),
-                    event.getLongitude()
-            );
-            if (dist > eventFilter.getRadiusKm()) return false;
+        boolean isFull() {
+            return size == positions.length;
         }
 
-        // Filter by date range
-        if (eventFilter.getStartDateMillis() != null && eventFilter.getEndDateMillis() != null) {
-            long t = event.getDateTime();
-            if (t < eventFilter.getStartDateMillis() || t > eventFilter.getEndDateMillis())
-                return false;
+        double maxDistance() {
+            return distances[0];
         }
 
-        // Filter by time range (supports overnight ranges)
-        if (eventFilter.getStartMinute() != null && eventFilter.getEndMinute() != null) {
-            int minutes = DateUtils.minutesFromMidnight(event.getDateTime());
+        void clear() {
+            size = 0;
+        }
 
-            int start = eventFilter.getStartMinute();
-            int end   = eventFilter.getEndMinute();
+        void offer(int position, double distance) {
+            if (size < positions.length) {
+                positions[size] = position;
+                distances[size] = distance;
+                siftUp(size++);
+            } else if (distance < distances[0]) {
+                positions[0] = position;
+                distances[0] = distance;
+                siftDown(0);
+            }
+        }
 
-            boolean matchesTime;
+        /** Empties the heap, returning positions ordered by increasing distance */
+        int[] toSortedPositions() {
+            int[] sorted = new int[size];
+            while (size > 0) {
+                sorted[size - 1] = positions[0];
+                size--;
+                positions[0] = positions[size];
+                distances[0] = distances[size];
+                siftDown(0);
+            }
+            return sorted;
+        }
 
-            if (start <= end) {
-                // Same-day range (e.g. 10:00–18:00)
-                matchesTime = minutes >= start && minutes <= end;
-            } else {
-                // Overnight range (e.g. 23:00–03:00)
-                matchesTime = minutes >= start || minutes <= end;
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (distances[parent] >= distances[i]) return;
+                swap(i, parent);
+                i = parent;
             }
+        }
 
-            if (!matchesTime) return false;
+        private void siftDown(int i) {
+            while (true) {
+                int largest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && distances[left] > distances[largest]) largest = left;
+                if (right < size && distances[right] > distances[largest]) largest = right;
+                if (largest == i) return;
+                swap(i, largest);
+                i = largest;
+            }
         }
 
+        private void swap(int a, int b) {
+            int p = positions[a];
+            positions[a] = positions[b];
+            positions[b] = p;
+            double d = distances[a];
+            distances[a] = distances[b];
+            distances[b] = d;
+        }
+    }
 
-        // Filter by available spots
-        int available = event.getAvailableSpots();
+    /**
+     * Picks the cheapest way to narrow the events before the full match:
+     * the spatial index when a radius is set, the time index for the slice
+     * of upcoming events inside the date and time-of-day range, or a full
+     * scan. The time index's size is estimated from its date slice before
+     * anything is copied. Building the time index costs a sort, so it is
+     * only consulted when a date or time-of-day criterion is set.
+     *
+     * @param store Events to filter
+     * @param compiled Compiled filter
+     * @return Candidate positions in ascending order, or null to scan every event
+     */
+    static int[] candidates(EventStore store, CompiledEventFilter compiled) {
+        int[] spatial = null;
+        double best = store.size();
 
-        if (eventFilter.getMinAvailableSpots() != null
-                && available < eventFilter.getMinAvailableSpots())
-            return false;
+        if (compiled.hasLocation()) {
+            spatial = store.getSpatialIndex().query(
+                    compiled.getCenterLat(), compiled.getCenterLng(), compiled.getRadiusKm());
+            best = spatial.length;
+        }
 
-        if (eventFilter.getMaxAvailableSpots() != null
-                && available > eventFilter.getMaxAvailableSpots())
-            return false;
+        if (!compiled.hasDateRange() && !compiled.hasTimeRange()) return spatial;
 
-        // Filter by event capacity
-        int capacity = event.getMaxCapacity();
+        EventTimeIndex timeIndex = store.getTimeIndex();
+        long from = compiled.getEarliestStart();
+        long to = compiled.getLatestStart();
+        double timeEstimate = timeIndex.count(from, to) * compiled.timeRangeFraction();
 
-        if (eventFilter.getMinCapacity() != null
-                && capacity < eventFilter.getMinCapacity())
-            return false;
+        // Building the time candidates costs a sort, so require a clear win
+        if (timeEstimate < best / 2) {
+            return timeIndex.query(from, to, compiled.hasTimeRange(),
+                    compiled.getTimeStart(), compiled.getTimeEnd());
+        }
+        return spatial;
+    }
 
-        if (eventFilter.getMaxCapacity() != null
-                && capacity > eventFilter.getMaxCapacity())
-            return false;
+    /**
+     * Keeps the candidate positions whose events match the compiled filter.
+     *
+     * @param store Store holding the events
+     * @param compiled Compiled filter
+     * @param candidates Candidate positions in ascending order
+     * @param count Number of leading candidates to check
+     * @return Matching positions in ascending order
+     */
+    static int[] matchPositions(EventStore store, CompiledEventFilter compiled, int[] candidates, int count) {
+        int[] result = new int[count];
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+            if (compiled.matches(store, candidates[i])) {
+                result[found++] = candidates[i];
+            }
+        }
+        return Arrays.copyOf(result, found);
+    }
 
-        return true;
+    /**
+     * Evaluates events against a compiled filter, in parallel when the scan
+     * is at least {@link #getParallelThreshold()} events long.
+     * Each task writes to its own slice of the outcome array, so results keep
+     * the original order without any merging.
+     *
+     * @param store Store holding the events
+     * @param compiled Compiled filter
+     * @param candidates Positions to evaluate, or null for positions 0..count-1
+     * @param count Number of positions to evaluate
+     * @return Per evaluated position: {@link #MATCH}, or the ordinal of the
+     *         first facet that rejected the event
+     */
+    static byte[] classify(EventStore store, CompiledEventFilter compiled, int[] candidates, int count) {
+        byte[] outcomes = new byte[count];
+        ClassifyTask task = new ClassifyTask(store, compiled, candidates, outcomes, 0, count);
 
+        if (count >= parallelThreshold) {
+            ForkJoinPool.commonPool().invoke(task);
+        } else {
+            task.classifySlice();
+        }
+        return outcomes;
     }
 
+    /**
+     * Fork-join task that classifies a slice of positions, splitting
+     * itself in halves until slices are small enough.
+     */
+    private static final class ClassifyTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final EventStore store;
+        private final CompiledEventFilter compiled;
+        private final int[] candidates;
+        private final byte[] outcomes;
+        private final int from;
+        private final int to;
+
+        ClassifyTask(EventStore store, CompiledEventFilter compiled, int[] candidates,
+                     byte[] outcomes, int from, int to) {
+            this.store = store;
+            this.compiled = compiled;
+            this.candidates = candidates;
+            this.outcomes = outcomes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            int sliceSize = Math.max(MIN_SLICE,
+                    outcomes.length / (ForkJoinPool.getCommonPoolParallelism() * 4));
+            if (to - from <= sliceSize) {
+                classifySlice();
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(
+                    new ClassifyTask(store, compiled, candidates, outcomes, from, mid),
+                    new ClassifyTask(store, compiled, candidates, outcomes, mid, to));
+        }
 
-}
\ No newline at end of file
+        void classifySlice() {
+            for (int k = from; k < to; k++) {
+                int position = candidates != null ? candidates[k] : k;
+                CompiledEventFilter.Facet rejecting = compiled.firstRejecting(store, position);
+                outcomes[k] = rejecting == null ? MATCH : (byte) rejecting.ordinal();
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.jamming.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps stored event documents to {@link Event} objects without reflection.
+ *
+ * Firestore's {@code toObject(Event.class)} looks up Event's getters,
+ * setters and fields by reflection and converts every value through
+ * generic code. Events are loaded by the thousand (explore screen, live
+ * feed, batch gets), so they are mapped here field by field from the
+ * document's data map instead.
+ *
+ * The result matches {@code toObject}: only fields present in the map are
+ * set, and stored fields that are not properties of Event (availableSpots,
+ * updatedAt, ...) are ignored. One difference: a value of the wrong type
+ * is skipped instead of failing the whole document.
+ *
+ * A new property of Event must be added here as well.
+ */
+public final class EventMapper {
+
+    private EventMapper() {
+    }
+
+    /**
+     * Maps a document's data to an event.
+     *
+     * @param id Document ID, set as the event's ID
+     * @param data Document data, as returned by {@code DocumentSnapshot.getData()}
+     * @return Mapped event
+     */
+    public static Event fromMap(String id, Map<String, Object> data) {
+        Event event = new Event();
+
+        for (Map.Entry<String, Object> field : data.entrySet()) {
+            Object value = field.getValue();
+
+            switch (field.getKey()) {
+                case "ownerId":
+                    event.setOwnerId(asString(value));
+                    break;
+                case "name":
+                    event.setName(asString(value));
+                    break;
+                case "description":
+                    event.setDescription(asString(value));
+                    break;
+                case "musicTypes":
+                    event.setMusicTypes(asStringList(value));
+                    break;
+                case "address":
+                    event.setAddress(asString(value));
+                    break;
+                case "dateTime":
+                    if (value instanceof Number) event.setDateTime(((Number) value).longValue());
+                    break;
+                case "maxCapacity":
+                    if (value instanceof Number) event.setMaxCapacity(((Number) value).intValue());
+                    break;
+                case "reserved":
+                    if (value instanceof Number) event.setReserved(((Number) value).intValue());
+                    break;
+                case "active":
+                    if (value instanceof Boolean) event.setActive((Boolean) value);
+                    break;
+                case "latitude":
+                    if (value instanceof Number) event.setLatitude(((Number) value).doubleValue());
+                    break;
+                case "longitude":
+                    if (value instanceof Number) event.setLongitude(((Number) value).doubleValue());
+                    break;
+                case "geohash":
+                    event.setGeohash(asString(value));
+                    break;
+                case "participants":
+                    event.setParticipants(asStringList(value));
+                    break;
+                default:
+                    // Not a property of Event (or the stored "id", replaced by the document ID)
+                    break;
+            }
+        }
+
+        event.setId(id);
+        return event;
+    }
+
+    private static String asString(Object value) {
+        return value instanceof String ? (String) value : null;
+    }
+
+    private static List<String> asStringList(Object value) {
+        if (!(value instanceof List)) return null;
+
+        List<?> values = (List<?>) value;
+        List<String> strings = new ArrayList<>(values.size());
+        for (Object item : values) {
+            if (item instanceof String) strings.add((String) item);
+        }
+        return strings;
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.jamming.model;
+
+/**
+ * Scores events by relevance and selects the best ones.
+ *
+ * The score is a weighted sum of four parts, each between 0 and 1:
+ * - distance: closer to the origin is better (only with an origin);
+ *   measured with an equirectangular approximation, which is plenty for
+ *   ordering and avoids trigonometry per event
+ * - time until start: sooner is better
+ * - availability: a larger share of free spots is better, full events get 0
+ * - genre match: share of the preferred genres the event plays
+ *
+ * Only the best N events are ordered: candidates go through a bounded
+ * min-heap of size N, so ranking costs O(n log N) instead of sorting all n.
+ */
+public class EventRanker {
+
+    static final double DISTANCE_WEIGHT = 0.4;
+    static final double TIME_WEIGHT = 0.3;
+    static final double AVAILABILITY_WEIGHT = 0.15;
+    static final double GENRE_WEIGHT = 0.15;
+
+    /** Distance at which the distance part drops to one half */
+    static final double DISTANCE_SCALE_KM = 10;
+
+    /** Time until start at which the time part drops to one half */
+    static final double TIME_SCALE_HOURS = 24;
+
+    private static final double HOUR_MILLIS = 60 * 60 * 1000;
+    private static final double KM_PER_DEG_LAT = 6371.0 * Math.PI / 180;
+
+    private final long now;
+    private final boolean hasOrigin;
+    private final double originLat;
+    private final double originLng;
+    private final double kmPerDegLng;
+    private final int preferredGenres;
+
+    /**
+     * Creates a ranker.
+     *
+     * @param now Current time in milliseconds
+     * @param originLat Latitude to measure distances from (may be null)
+     * @param originLng Longitude to measure distances from (may be null)
+     * @param preferredGenres Bitmask of preferred genres; 0 for no preference
+     */
+    public EventRanker(long now, Double originLat, Double originLng, int preferredGenres) {
+        this.now = now;
+        this.hasOrigin = originLat != null && originLng != null;
+        this.originLat = hasOrigin ? originLat : 0;
+        this.originLng = hasOrigin ? originLng : 0;
+        this.kmPerDegLng = KM_PER_DEG_LAT * Math.cos(Math.toRadians(this.originLat));
+        this.preferredGenres = preferredGenres;
+    }
+
+    /**
+     * Computes the relevance score of one event.
+     *
+     * @param store Events
+     * @param position Position of the event
+     * @return Score; higher is more relevant
+     */
+    public double score(EventStore store, int position) {
+        double score = 0;
+
+        if (hasOrigin) {
+            double deltaLng = Math.abs(store.longitudes[position] - originLng);
+            if (deltaLng > 180) deltaLng = 360 - deltaLng;
+            double y = (store.latitudes[position] - originLat) * KM_PER_DEG_LAT;
+            double x = deltaLng * kmPerDegLng;
+            double km = Math.sqrt(x * x + y * y);
+            score += DISTANCE_WEIGHT / (1 + km / DISTANCE_SCALE_KM);
+        }
+
+        double hours = Math.max(0, store.dateTimes[position] - now) / HOUR_MILLIS;
+        score += TIME_WEIGHT / (1 + hours / TIME_SCALE_HOURS);
+
+        int capacity = store.capacities[position];
+        if (capacity > 0) {
+            int available = capacity - store.reserved[position];
+            score += AVAILABILITY_WEIGHT * Math.max(0, Math.min(1, available / (double) capacity));
+        }
+
+        if (preferredGenres != 0) {
+            int matched = Integer.bitCount(store.genreMasks[position] & preferredGenres);
+            score += GENRE_WEIGHT * matched / Integer.bitCount(preferredGenres);
+        }
+        return score;
+    }
+
+    /**
+     * Selects the most relevant events.
+     *
+     * @param store Events
+     * @param positions Candidate positions, or null for every event in the store
+     * @param limit Maximum number of events to return
+     * @return Up to {@code limit} positions, best first (ties by position)
+     */
+    public int[] top(EventStore store, int[] positions, int limit) {
+        int candidates = positions != null ? positions.length : store.size();
+        int size = Math.min(limit, candidates);
+        if (size <= 0) return new int[0];
+
+        // Min-heap on (score, -position): the root is the worst of the best so far
+        double[] heapScores = new double[size];
+        int[] heapPositions = new int[size];
+        int heapSize = 0;
+
+        for (int k = 0; k < candidates; k++) {
+            int position = positions != null ? positions[k] : k;
+            double score = score(store, position);
+
+            if (heapSize < size) {
+                heapScores[heapSize] = score;
+                heapPositions[heapSize] = position;
+                siftUp(heapScores, heapPositions, heapSize++);
+            } else if (worse(heapScores[0], heapPositions[0], score, position)) {
+                heapScores[0] = score;
+                heapPositions[0] = position;
+                siftDown(heapScores, heapPositions, heapSize);
+            }
+        }
+
+        // Pop the worst repeatedly, filling the result from the back
+        int[] result = new int[heapSize];
+        for (int end = heapSize - 1; end >= 0; end--) {
+            result[end] = heapPositions[0];
+            heapScores[0] = heapScores[end];
+            heapPositions[0] = heapPositions[end];
+            siftDown(heapScores, heapPositions, end);
+        }
+        return result;
+    }
+
+    /** Whether entry a ranks below entry b */
+    private static boolean worse(double scoreA, int positionA, double scoreB, int positionB) {
+        return scoreA < scoreB || (scoreA == scoreB && positionA > positionB);
+    }
+
+    private static void siftUp(double[] scores, int[] positions, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!worse(scores[index], positions[index], scores[parent], positions[parent])) break;
+            swap(scores, positions, index, parent);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(double[] scores, int[] positions, int size) {
+        int index = 0;
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) break;
+            int right = left + 1;
+            int child = right < size && worse(scores[right], positions[right], scores[left], positions[left])
+                    ? right : left;
+            if (!worse(scores[child], positions[child], scores[index], positions[index])) break;
+            swap(scores, positions, index, child);
+            index = child;
+        }
+    }
+
+    private static void swap(double[] scores, int[] positions, int a, int b) {
+        double score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+        int position = positions[a];
+        positions[a] = positions[b];
+        positions[b] = position;
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.jamming.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory full-text index over event names, genres, descriptions and addresses.
+ *
+ * Every word is indexed under each of its prefixes (up to {@link #MAX_PREFIX}
+ * characters), so a query word typed so far is answered with a single map
+ * lookup instead of scanning every event. Words of a query must all match
+ * (AND); results are ranked by where the words matched: the name counts
+ * most, then genres, then the description and address, and a whole-word
+ * match beats a prefix match.
+ *
+ * Events are identified by their position, in the order they were added,
+ * which is the same as their position in an {@link EventStore} built from
+ * the same list. The index only grows; build a new one when the list is replaced.
+ */
+public class EventSearchIndex {
+
+    /** Longest indexed prefix; longer query words are verified against the event */
+    static final int MAX_PREFIX = 8;
+
+    static final int NAME_WEIGHT = 3;
+    static final int GENRE_WEIGHT = 2;
+    static final int TEXT_WEIGHT = 1;
+
+    /** Low bits of a posting hold the match score, the rest the position */
+    private static final int SCORE_BITS = 3;
+    private static final int SCORE_MASK = (1 << SCORE_BITS) - 1;
+
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    /** Distinct words of each event, by position, to verify long query words */
+    private final List<String[]> eventWords = new ArrayList<>();
+
+    /**
+     * Returns the number of indexed events.
+     */
+    public int size() {
+        return eventWords.size();
+    }
+
+    /**
+     * Indexes the events of a list that are not indexed yet, i.e. those from
+     * position {@link #size()} on. Lets the index catch up as more events of
+     * the same list are loaded.
+     *
+     * @param all Events in position order
+     */
+    public void addAll(List<Event> all) {
+        for (int i = eventWords.size(); i < all.size(); i++) {
+            add(all.get(i));
+        }
+    }
+
+    /**
+     * Indexes one event at the next position.
+     *
+     * @param event Event to index
+     * @return Position of the event
+     */
+    public int add(Event event) {
+        int position = eventWords.size();
+        Set<String> words = new LinkedHashSet<>();
+
+        // A word found in several fields keeps the score of the most important one
+        indexText(event.getName(), NAME_WEIGHT, position, words);
+        if (event.getMusicTypes() != null) {
+            for (String genre : event.getMusicTypes()) {
+                indexText(genre, GENRE_WEIGHT, position, words);
+            }
+        }
+        indexText(event.getDescription(), TEXT_WEIGHT, position, words);
+        indexText(event.getAddress(), TEXT_WEIGHT, position, words);
+
+        eventWords.add(words.toArray(new String[0]));
+        return position;
+    }
+
+    /**
+     * Finds the events matching every word of a query.
+     *
+     * @param query Free text typed by the user
+     * @return Matching positions, best match first (ties by position);
+     *         empty when the query has no words
+     */
+    public int[] search(String query) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty()) return new int[0];
+
+        Postings[] lists = new Postings[words.size()];
+        for (int w = 0; w < words.size(); w++) {
+            lists[w] = postings.get(key(words.get(w)));
+            if (lists[w] == null) return new int[0];
+        }
+
+        // Intersect starting from the shortest list, so the candidate set only shrinks
+        Integer[] order = new Integer[lists.length];
+        for (int w = 0; w < order.length; w++) order[w] = w;
+        Arrays.sort(order, (a, b) -> Integer.compare(lists[a].size, lists[b].size));
+
+        Postings first = lists[order[0]];
+        int[] positions = new int[first.size];
+        int[] scores = new int[first.size];
+        int count = first.size;
+        for (int k = 0; k < count; k++) {
+            positions[k] = first.entries[k] >>> SCORE_BITS;
+            scores[k] = first.entries[k] & SCORE_MASK;
+        }
+        for (int w = 1; w < order.length && count > 0; w++) {
+            count = intersect(positions, scores, count, lists[order[w]]);
+        }
+
+        // Words longer than the indexed prefixes still have to match in full
+        List<String> longWords = new ArrayList<>();
+        for (String word : words) {
+            if (word.length() > MAX_PREFIX) longWords.add(word);
+        }
+        if (!longWords.isEmpty()) {
+            int kept = 0;
+            for (int k = 0; k < count; k++) {
+                if (containsAllPrefixes(eventWords.get(positions[k]), longWords)) {
+                    positions[kept] = positions[k];
+                    scores[kept] = scores[k];
+                    kept++;
+                }
+            }
+            count = kept;
+        }
+
+        // Rank by score (descending), then position, with a single primitive sort
+        long[] ranked = new long[count];
+        for (int k = 0; k < count; k++) {
+            ranked[k] = ((long) -scores[k] << 32) | positions[k];
+        }
+        Arrays.sort(ranked);
+
+        int[] result = new int[count];
+        for (int k = 0; k < count; k++) {
+            result[k] = (int) ranked[k];
+        }
+        return result;
+    }
+
+    /**
+     * Keeps the candidates that also appear in a postings list, adding up scores.
+     * Both sides are sorted by position.
+     *
+     * @return Number of candidates kept
+     */
+    private static int intersect(int[] positions, int[] scores, int count, Postings list) {
+        int kept = 0;
+        int j = 0;
+        for (int k = 0; k < count && j < list.size; k++) {
+            int position = positions[k];
+            while (j < list.size && (list.entries[j] >>> SCORE_BITS) < position) j++;
+            if (j < list.size && (list.entries[j] >>> SCORE_BITS) == position) {
+                positions[kept] = position;
+                scores[kept] = scores[k] + (list.entries[j] & SCORE_MASK);
+                kept++;
+            }
+        }
+        return kept;
+    }
+
+    private void indexText(String text, int weight, int position, Set<String> words) {
+        for (String word : tokenize(text)) {
+            words.add(word);
+            int prefixes = Math.min(word.length(), MAX_PREFIX);
+            for (int length = 1; length <= prefixes; length++) {
+                // Whole words score one more than prefixes of longer words
+                int score = weight * 2 + (length == word.length() ? 1 : 0);
+                postings.computeIfAbsent(word.substring(0, length), p -> new Postings())
+                        .add(position, score);
+            }
+        }
+    }
+
+    private static boolean containsAllPrefixes(String[] eventWords, List<String> words) {
+        for (String word : words) {
+            boolean found = false;
+            for (String eventWord : eventWords) {
+                if (eventWord.startsWith(word)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    private static String key(String word) {
+        return word.length() > MAX_PREFIX ? word.substring(0, MAX_PREFIX) : word;
+    }
+
+    /**
+     * Splits text into distinct lower-case words of letters and digits.
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) return words;
+
+        String lower = text.toLowerCase(Locale.ROOT);
+        Set<String> seen = new LinkedHashSet<>();
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                seen.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        words.addAll(seen);
+        return words;
+    }
+
+    /**
+     * Growable list of postings (position and score), sorted by position.
+     * Positions are added in increasing order, so a repeated position is
+     * always the last entry and is merged in place.
+     */
+    private static final class Postings {
+        int[] entries = new int[4];
+        int size;
+
+        void add(int position, int score) {
+            if (size > 0 && (entries[size - 1] >>> SCORE_BITS) == position) {
+                int previous = entries[size - 1] & SCORE_MASK;
+                if (score > previous) entries[size - 1] = (position << SCORE_BITS) | score;
+                return;
+            }
+            if (size == entries.length) entries = Arrays.copyOf(entries, size * 2);
+            entries[size++] = (position << SCORE_BITS) | score;
+        }
+    }
+}
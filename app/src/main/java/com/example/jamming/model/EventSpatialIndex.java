@@ -0,0 +1,252 @@
+package com.example.jamming.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Grid-based spatial index over event coordinates.
+ * Events are bucketed into fixed-size latitude/longitude cells so that a
+ * radius query only has to look at the cells overlapping the search circle
+ * instead of scanning every event.
+ *
+ * The index is immutable and stores event positions (indices into the list
+ * or arrays it was built from), not the events themselves.
+ */
+public class EventSpatialIndex {
+
+    /** Cell edge length in degrees (~5.5 km of latitude) */
+    static final double CELL_SIZE_DEG = 0.05;
+
+    private static final int LAT_CELLS = (int) Math.ceil(180.0 / CELL_SIZE_DEG);
+    private static final int LNG_CELLS = (int) Math.ceil(360.0 / CELL_SIZE_DEG);
+
+    // Earth's radius in kilometers (same value used by GeoUtils)
+    private static final double EARTH_RADIUS_KM = 6371.0;
+
+    /** Sorted, unique keys of all non-empty cells */
+    private final long[] cellKeys;
+
+    /** cellStarts[i]..cellStarts[i + 1] is the slice of positions in cell i */
+    private final int[] cellStarts;
+
+    /** Event positions grouped by cell */
+    private final int[] positions;
+
+    private final int size;
+
+    /**
+     * Builds an index over parallel coordinate arrays.
+     *
+     * @param lats Latitudes, one per event position
+     * @param lngs Longitudes, one per event position
+     * @param count Number of positions to index
+     */
+    public EventSpatialIndex(double[] lats, double[] lngs, int count) {
+        this.size = count;
+
+        long[] keyed = new long[count];
+        for (int i = 0; i < count; i++) {
+            // Pack (cell key, position) so a single sort groups positions by cell
+            keyed[i] = (cellKey(lats[i], lngs[i]) << 32) | i;
+        }
+        Arrays.sort(keyed);
+
+        positions = new int[count];
+        long[] keys = new long[count];
+        int[] starts = new int[count + 1];
+        int cells = 0;
+        long previous = -1;
+
+        for (int i = 0; i < count; i++) {
+            long key = keyed[i] >>> 32;
+            positions[i] = (int) keyed[i];
+            if (key != previous) {
+                keys[cells] = key;
+                starts[cells] = i;
+                cells++;
+                previous = key;
+            }
+        }
+        starts[cells] = count;
+
+        cellKeys = Arrays.copyOf(keys, cells);
+        cellStarts = Arrays.copyOf(starts, cells + 1);
+    }
+
+    /**
+     * Builds an index over the coordinates of the given events.
+     *
+     * @param events Events to index; positions refer to this list
+     * @return Spatial index over the list
+     */
+    public static EventSpatialIndex build(List<Event> events) {
+        int n = events.size();
+        double[] lats = new double[n];
+        double[] lngs = new double[n];
+        for (int i = 0; i < n; i++) {
+            Event e = events.get(i);
+            lats[i] = e.getLatitude();
+            lngs[i] = e.getLongitude();
+        }
+        return new EventSpatialIndex(lats, lngs, n);
+    }
+
+    /**
+     * Returns the number of indexed positions.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns candidate positions that may lie within the given radius.
+     * Every event inside the circle is guaranteed to be returned; events
+     * near the circle's bounding box may also be returned, so callers
+     * still need an exact distance check.
+     *
+     * @param lat Center latitude
+     * @param lng Center longitude
+     * @param radiusKm Search radius in kilometers
+     * @return Candidate positions in ascending order
+     */
+    public int[] query(double lat, double lng, double radiusKm) {
+        double angular = radiusKm / EARTH_RADIUS_KM;
+        double minLat = lat - Math.toDegrees(angular);
+        double maxLat = lat + Math.toDegrees(angular);
+
+        int minLatCell = latCell(Math.max(-90.0, minLat));
+        int maxLatCell = latCell(Math.min(90.0, maxLat));
+
+        // Widest longitude extent of the circle; the whole band if it covers a pole
+        int minLngCell;
+        int lngCellCount;
+        double sinAngular = Math.sin(angular);
+        double cosLat = Math.cos(Math.toRadians(lat));
+        if (minLat <= -90.0 || maxLat >= 90.0 || sinAngular >= cosLat) {
+            minLngCell = 0;
+            lngCellCount = LNG_CELLS;
+        } else {
+            double lngSpan = Math.toDegrees(Math.asin(sinAngular / cosLat));
+            // Unwrapped cell numbers so ranges crossing the antimeridian stay contiguous
+            int fromRaw = (int) Math.floor((lng - lngSpan + 180.0) / CELL_SIZE_DEG);
+            int toRaw = (int) Math.floor((lng + lngSpan + 180.0) / CELL_SIZE_DEG);
+            minLngCell = Math.floorMod(fromRaw, LNG_CELLS);
+            lngCellCount = Math.min(LNG_CELLS, toRaw - fromRaw + 1);
+        }
+
+        int latCellCount = maxLatCell - minLatCell + 1;
+        int[] result = new int[16];
+        int found = 0;
+
+        if ((long) latCellCount * lngCellCount > cellKeys.length) {
+            // Fewer occupied cells than cells in range: walk the occupied ones
+            for (int c = 0; c < cellKeys.length; c++) {
+                int cLat = (int) (cellKeys[c] / LNG_CELLS);
+                int cLng = (int) (cellKeys[c] % LNG_CELLS);
+                int lngOffset = Math.floorMod(cLng - minLngCell, LNG_CELLS);
+                if (cLat < minLatCell || cLat > maxLatCell || lngOffset >= lngCellCount) continue;
+                result = appendCell(result, found, c);
+                found += cellStarts[c + 1] - cellStarts[c];
+            }
+        } else {
+            for (int la = minLatCell; la <= maxLatCell; la++) {
+                for (int k = 0; k < lngCellCount; k++) {
+                    int lo = Math.floorMod(minLngCell + k, LNG_CELLS);
+                    int c = Arrays.binarySearch(cellKeys, (long) la * LNG_CELLS + lo);
+                    if (c < 0) continue;
+                    result = appendCell(result, found, c);
+                    found += cellStarts[c + 1] - cellStarts[c];
+                }
+            }
+        }
+
+        // Restore the original event order
+        Arrays.sort(result, 0, found);
+        return Arrays.copyOf(result, found);
+    }
+
+    /** Receives the positions found by {@link #visitRing} */
+    interface PositionVisitor {
+        void visit(int position);
+    }
+
+    /**
+     * Visits the positions in the ring of cells exactly {@code ring} cells
+     * away (in either direction) from the cell containing the center.
+     * Ring 0 is the center cell itself; rings must stay well below half the
+     * grid's width, so that a ring never wraps onto itself.
+     *
+     * @param lat Center latitude
+     * @param lng Center longitude
+     * @param ring Ring number
+     * @param visitor Receives every position in the ring's cells
+     */
+    void visitRing(double lat, double lng, int ring, PositionVisitor visitor) {
+        int centerLat = latCell(lat);
+        int centerLng = lngCell(lng);
+
+        for (int dLat = -ring; dLat <= ring; dLat++) {
+            int la = centerLat + dLat;
+            if (la < 0 || la >= LAT_CELLS) continue;
+
+            // Full rows at the top and bottom of the ring, only the two sides in between
+            int step = (dLat == -ring || dLat == ring) ? 1 : Math.max(1, 2 * ring);
+            for (int dLng = -ring; dLng <= ring; dLng += step) {
+                int lo = Math.floorMod(centerLng + dLng, LNG_CELLS);
+                int c = Arrays.binarySearch(cellKeys, (long) la * LNG_CELLS + lo);
+                if (c < 0) continue;
+                for (int k = cellStarts[c]; k < cellStarts[c + 1]; k++) {
+                    visitor.visit(positions[k]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a lower bound, in kilometers, on the distance from the center
+     * to any point in a cell more than {@code ring} cells away from the
+     * center's cell, i.e. to anything not yet seen after visiting rings 0..ring.
+     *
+     * @param lat Center latitude
+     * @param ring Last visited ring
+     * @return Distance lower bound in kilometers
+     */
+    static double ringLowerBoundKm(double lat, int ring) {
+        double gap = Math.toRadians(ring * CELL_SIZE_DEG);
+
+        // Separated by latitude: at least the latitude gap along a meridian
+        double byLat = EARTH_RADIUS_KM * gap;
+
+        // Separated by longitude: the point lies in one of the visited rows,
+        // which reach up to one more cell past the ring (the center may sit
+        // anywhere in its cell), so cos(lat) is bounded below over that band
+        double maxLat = Math.min(90.0, Math.abs(lat) + (ring + 1) * CELL_SIZE_DEG);
+        double cosMax = Math.cos(Math.toRadians(maxLat));
+        double byLng = 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, cosMax * Math.sin(gap / 2)));
+
+        return Math.min(byLat, byLng);
+    }
+
+    private int[] appendCell(int[] target, int found, int cell) {
+        int from = cellStarts[cell];
+        int len = cellStarts[cell + 1] - from;
+        if (found + len > target.length) {
+            target = Arrays.copyOf(target, Math.max(target.length * 2, found + len));
+        }
+        System.arraycopy(positions, from, target, found, len);
+        return target;
+    }
+
+    private static long cellKey(double lat, double lng) {
+        return (long) latCell(lat) * LNG_CELLS + lngCell(lng);
+    }
+
+    private static int latCell(double lat) {
+        int cell = (int) Math.floor((lat + 90.0) / CELL_SIZE_DEG);
+        return Math.max(0, Math.min(LAT_CELLS - 1, cell));
+    }
+
+    private static int lngCell(double lng) {
+        return Math.floorMod((int) Math.floor((lng + 180.0) / CELL_SIZE_DEG), LNG_CELLS);
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.jamming.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Column-oriented snapshot of a list of events, used for filter scans.
+ *
+ * The fields that filtering reads are copied into parallel primitive
+ * arrays, so a scan walks a few contiguous arrays instead of chasing
+ * pointers through full Event objects (descriptions, addresses,
+ * participant lists). Event objects are only looked up again for the
+ * positions that end up in a result.
+ *
+ * The store is a snapshot: it does not observe later changes to the
+ * events it was built from. A changed event can be written back into its
+ * row with {@link #update}, which keeps every position stable.
+ */
+public class EventStore {
+
+    private final List<Event> events;
+    private final int size;
+
+    /* ===== Columns (indexed by event position) ===== */
+    final double[] latitudes;
+    final double[] longitudes;
+    final long[] dateTimes;
+    final int[] capacities;
+    final int[] reserved;
+    final int[] genreMasks;
+    final boolean[] active;
+
+    /** Spatial index over the coordinate columns, built on first use */
+    private volatile EventSpatialIndex spatialIndex;
+
+    /** Start-time index over the date column, built on first use */
+    private volatile EventTimeIndex timeIndex;
+
+    /**
+     * Builds a store from a list of events.
+     *
+     * @param events Events to store; positions refer to this list
+     */
+    public EventStore(List<Event> events) {
+        this.events = events != null ? events : Collections.emptyList();
+        this.size = this.events.size();
+
+        latitudes = new double[size];
+        longitudes = new double[size];
+        dateTimes = new long[size];
+        capacities = new int[size];
+        reserved = new int[size];
+        genreMasks = new int[size];
+        active = new boolean[size];
+
+        for (int i = 0; i < size; i++) {
+            Event e = this.events.get(i);
+            latitudes[i] = e.getLatitude();
+            longitudes[i] = e.getLongitude();
+            dateTimes[i] = e.getDateTime();
+            capacities[i] = e.getMaxCapacity();
+            reserved[i] = e.getReserved();
+            genreMasks[i] = e.genreMask();
+            active[i] = e.isActive();
+        }
+    }
+
+    /**
+     * Replaces the event at a position, e.g. after it changed on the server.
+     * Indexes over the columns that changed are rebuilt on next use; filter
+     * state kept over this store must re-check the position (see
+     * {@link IncrementalEventFilter#refresh(int)}).
+     *
+     * @param position Event position
+     * @param event New version of the event; the list the store was built
+     *              from is updated too, so it must be modifiable
+     */
+    public void update(int position, Event event) {
+        if (latitudes[position] != event.getLatitude() || longitudes[position] != event.getLongitude()) {
+            spatialIndex = null;
+        }
+        if (dateTimes[position] != event.getDateTime()) {
+            timeIndex = null;
+        }
+
+        events.set(position, event);
+        latitudes[position] = event.getLatitude();
+        longitudes[position] = event.getLongitude();
+        dateTimes[position] = event.getDateTime();
+        capacities[position] = event.getMaxCapacity();
+        reserved[position] = event.getReserved();
+        genreMasks[position] = event.genreMask();
+        active[position] = event.isActive();
+    }
+
+    /**
+     * Returns the number of stored events.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the full event at a position.
+     *
+     * @param position Event position
+     * @return Event object
+     */
+    public Event get(int position) {
+        return events.get(position);
+    }
+
+    /**
+     * Returns the events the store was built from.
+     */
+    public List<Event> getEvents() {
+        return events;
+    }
+
+    /**
+     * Materializes full Event objects for the given positions.
+     *
+     * @param positions Event positions
+     * @param count Number of leading entries of {@code positions} to use
+     * @return Events at the given positions, in the same order
+     */
+    public List<Event> materialize(int[] positions, int count) {
+        List<Event> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(events.get(positions[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the spatial index over this store, building it on first use.
+     */
+    public EventSpatialIndex getSpatialIndex() {
+        EventSpatialIndex index = spatialIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = spatialIndex;
+                if (index == null) {
+                    index = new EventSpatialIndex(latitudes, longitudes, size);
+                    spatialIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the start-time index over this store, building it on first use.
+     */
+    public EventTimeIndex getTimeIndex() {
+        EventTimeIndex index = timeIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = timeIndex;
+                if (index == null) {
+                    index = new EventTimeIndex(dateTimes, size);
+                    timeIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.jamming.model;
+
+import com.example.jamming.utils.DateUtils;
+import java.util.Arrays;
+
+/**
+ * Index of event positions sorted by start time.
+ *
+ * A date range is answered with two binary searches over the sorted times.
+ * Positions are also split into local-day segments; within a segment the
+ * minute of the day only grows, so a time-of-day range (including one that
+ * wraps past midnight) is again answered with binary searches per day.
+ *
+ * Segments are runs of events that share the same local midnight. On a DST
+ * transition day the computed midnight shifts with the offset, so such a
+ * day simply becomes two segments, each of which is still ordered by minute.
+ *
+ * The index is immutable and stores event positions, not the events themselves.
+ */
+public class EventTimeIndex {
+
+    private static final long MINUTE_MILLIS = 60_000L;
+
+    /** Event positions ordered by start time (ties by position) */
+    private final int[] order;
+
+    /** Start times, aligned with {@link #order} */
+    private final long[] times;
+
+    /** Minute of the day of each start time, aligned with {@link #order} */
+    private final short[] minutes;
+
+    /** Indexes into {@link #order} where each local-day segment starts, plus the end */
+    private final int[] segmentStarts;
+
+    /**
+     * Builds an index over event start times.
+     *
+     * @param dateTimes Start times, one per event position
+     * @param count Number of positions to index
+     */
+    public EventTimeIndex(long[] dateTimes, int count) {
+        order = new int[count];
+        for (int i = 0; i < count; i++) order[i] = i;
+        sortByTime(order, dateTimes);
+
+        times = new long[count];
+        minutes = new short[count];
+        int[] starts = new int[count + 1];
+        int segments = 0;
+        long previousMidnight = Long.MIN_VALUE;
+
+        for (int k = 0; k < count; k++) {
+            long time = dateTimes[order[k]];
+            int minute = DateUtils.minutesFromMidnight(time);
+            long midnight = time - Math.floorMod(time, MINUTE_MILLIS) - minute * MINUTE_MILLIS;
+
+            times[k] = time;
+            minutes[k] = (short) minute;
+            if (k == 0 || midnight != previousMidnight) {
+                starts[segments++] = k;
+                previousMidnight = midnight;
+            }
+        }
+        starts[segments] = count;
+        segmentStarts = Arrays.copyOf(starts, segments + 1);
+    }
+
+    /**
+     * Returns the number of indexed events.
+     */
+    public int size() {
+        return order.length;
+    }
+
+    /**
+     * Counts the events starting within a date range.
+     *
+     * @param from Range start in milliseconds (inclusive)
+     * @param to Range end in milliseconds (inclusive)
+     * @return Number of events in the range
+     */
+    public int count(long from, long to) {
+        if (from > to) return 0;
+        return upperBound(to) - lowerBound(from);
+    }
+
+    /**
+     * Returns the positions of the events starting within a date range and,
+     * optionally, within a time-of-day range.
+     *
+     * @param from Range start in milliseconds (inclusive)
+     * @param to Range end in milliseconds (inclusive)
+     * @param hasTime Whether the time-of-day range applies
+     * @param startMinute First accepted minute of the day
+     * @param endMinute Last accepted minute of the day; smaller than
+     *                  {@code startMinute} for ranges that wrap past midnight
+     * @return Matching positions in ascending order
+     */
+    public int[] query(long from, long to, boolean hasTime, int startMinute, int endMinute) {
+        if (from > to) return new int[0];
+
+        int lo = lowerBound(from);
+        int hi = upperBound(to);
+        if (lo >= hi) return new int[0];
+
+        int[] result;
+        int found = 0;
+        if (!hasTime) {
+            result = Arrays.copyOfRange(order, lo, hi);
+            found = result.length;
+        } else {
+            result = new int[hi - lo];
+            int segment = segmentOf(lo);
+            for (; segment < segmentStarts.length - 1 && segmentStarts[segment] < hi; segment++) {
+                int start = Math.max(segmentStarts[segment], lo);
+                int end = Math.min(segmentStarts[segment + 1], hi);
+
+                if (startMinute <= endMinute) {
+                    found = copyMinutes(start, end, startMinute, endMinute, result, found);
+                } else {
+                    // Overnight range: the early-morning part, then the late-evening part
+                    found = copyMinutes(start, end, 0, endMinute, result, found);
+                    found = copyMinutes(start, end, startMinute, 24 * 60 - 1, result, found);
+                }
+            }
+        }
+
+        Arrays.sort(result, 0, found);
+        return found == result.length ? result : Arrays.copyOf(result, found);
+    }
+
+    /**
+     * Copies the positions of a segment slice whose minute falls in [fromMinute, toMinute].
+     */
+    private int copyMinutes(int start, int end, int fromMinute, int toMinute, int[] out, int found) {
+        int first = minuteBound(start, end, fromMinute);
+        int last = minuteBound(first, end, toMinute + 1);
+        System.arraycopy(order, first, out, found, last - first);
+        return found + last - first;
+    }
+
+    /** First index in [start, end) whose minute is at least {@code minute} */
+    private int minuteBound(int start, int end, int minute) {
+        int lo = start;
+        int hi = end;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (minutes[mid] < minute) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /** First index whose time is at least {@code time} */
+    private int lowerBound(long time) {
+        int lo = 0;
+        int hi = times.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[mid] < time) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /** First index whose time is greater than {@code time} */
+    private int upperBound(long time) {
+        int lo = 0;
+        int hi = times.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[mid] <= time) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /** Segment containing the given index into {@link #order} */
+    private int segmentOf(int index) {
+        int segment = Arrays.binarySearch(segmentStarts, 0, segmentStarts.length - 1, index);
+        return segment >= 0 ? segment : -segment - 2;
+    }
+
+    /**
+     * Stable merge sort of positions by their time, without boxing.
+     */
+    private static void sortByTime(int[] positions, long[] dateTimes) {
+        int[] buffer = new int[positions.length];
+        int[] src = positions;
+        int[] dst = buffer;
+
+        for (int width = 1; width < positions.length; width *= 2) {
+            for (int lo = 0; lo < positions.length; lo += 2 * width) {
+                int mid = Math.min(lo + width, positions.length);
+                int hi = Math.min(lo + 2 * width, positions.length);
+                int a = lo;
+                int b = mid;
+                for (int k = lo; k < hi; k++) {
+                    if (a < mid && (b >= hi || dateTimes[src[a]] <= dateTimes[src[b]])) {
+                        dst[k] = src[a++];
+                    } else {
+                        dst[k] = src[b++];
+                    }
+                }
+            }
+            int[] swap = src;
+            src = dst;
+            dst = swap;
+        }
+
+        if (src != positions) {
+            System.arraycopy(src, 0, positions, 0, positions.length);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.jamming.model;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Small LRU cache of filter results over a single EventStore.
+ *
+ * Keys are copies of the filters, so callers may keep mutating their own
+ * filter objects. Values are matching store positions. Because a store is
+ * a snapshot, a cached result only goes stale as time passes: on every hit,
+ * events that have started since the result was computed are dropped.
+ *
+ * A cache belongs to one store; create a new one when the store is replaced.
+ */
+public class FilterResultCache {
+
+    private final EventStore store;
+    private final Map<EventFilter, int[]> results;
+
+    /**
+     * Creates a cache for the results of filtering one store.
+     *
+     * @param store Store the cached positions refer to
+     * @param capacity Maximum number of filters remembered
+     */
+    public FilterResultCache(EventStore store, int capacity) {
+        this.store = store;
+        // Access order, so the least recently used filter is evicted first
+        this.results = new LinkedHashMap<EventFilter, int[]>(capacity * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<EventFilter, int[]> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the store this cache belongs to.
+     */
+    public EventStore getStore() {
+        return store;
+    }
+
+    /**
+     * Looks up the result of a filter.
+     *
+     * @param filter Filter to look up
+     * @param now Current time in milliseconds; events starting earlier are dropped
+     * @return Matching positions in ascending order, or null if not cached
+     */
+    public int[] get(EventFilter filter, long now) {
+        int[] positions = results.get(filter);
+        if (positions == null) return null;
+
+        int kept = 0;
+        int[] current = new int[positions.length];
+        for (int position : positions) {
+            if (store.dateTimes[position] >= now) {
+                current[kept++] = position;
+            }
+        }
+        if (kept != positions.length) {
+            current = Arrays.copyOf(current, kept);
+            results.put(filter, current);
+        }
+        return current;
+    }
+
+    /**
+     * Remembers the result of a filter.
+     *
+     * @param filter Filter the result was computed for (copied)
+     * @param positions Matching positions in ascending order
+     */
+    public void put(EventFilter filter, int[] positions) {
+        results.put(new EventFilter(filter), positions);
+    }
+
+    /**
+     * Forgets all cached results.
+     */
+    public void clear() {
+        results.clear();
+    }
+}
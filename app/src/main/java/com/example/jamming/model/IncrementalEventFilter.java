@@ -0,0 +1,194 @@
+package com.example.jamming.model;
+
+import com.example.jamming.model.CompiledEventFilter.Change;
+import com.example.jamming.model.CompiledEventFilter.Facet;
+import java.util.BitSet;
+
+/**
+ * Stateful filter over a single EventStore that re-filters incrementally
+ * when the filter changes.
+ *
+ * Besides the current result, it remembers for rejected events a facet
+ * that rejected them. When a facet is narrowed, only the current result
+ * is re-checked against it; when a facet is widened, only the events that
+ * this facet had rejected are re-checked. Work is therefore proportional
+ * to the events affected by the change rather than to the whole store.
+ *
+ * Invariant: every event outside the result has at least one recorded
+ * rejecting facet, and every recorded facet really rejects it.
+ */
+public class IncrementalEventFilter {
+
+    private static final Facet[] FACETS = Facet.values();
+
+    private final EventStore store;
+
+    /** Positions of events matching the current filter */
+    private final BitSet result = new BitSet();
+
+    /** Per facet, positions of events known to be rejected by that facet */
+    private final BitSet[] rejectedBy = new BitSet[FACETS.length];
+
+    /** Filter the current state was computed for; null before the first apply */
+    private CompiledEventFilter current;
+
+    /**
+     * Creates an incremental filter over a store.
+     *
+     * @param store Events to filter
+     */
+    public IncrementalEventFilter(EventStore store) {
+        this.store = store;
+        for (int f = 0; f < FACETS.length; f++) {
+            rejectedBy[f] = new BitSet();
+        }
+    }
+
+    /**
+     * Returns the store this filter runs on.
+     */
+    public EventStore getStore() {
+        return store;
+    }
+
+    /**
+     * Applies a filter, reusing the previous result where possible.
+     *
+     * @param filter Filter to apply
+     * @param now Current time in milliseconds; earlier events never match
+     * @return Matching positions in ascending order
+     */
+    public int[] apply(EventFilter filter, long now) {
+        CompiledEventFilter next = CompiledEventFilter.compile(filter, now, store);
+
+        if (current == null) {
+            recomputeAll(next);
+        } else {
+            for (Facet facet : FACETS) {
+                Change change = next.compare(facet, current);
+                if (change == Change.SAME) continue;
+
+                if (change != Change.WIDER) {
+                    dropRejected(facet, next);
+                }
+                if (change != Change.NARROWER) {
+                    recheckRejected(facet, next);
+                }
+            }
+        }
+
+        current = next;
+        return positions();
+    }
+
+    /**
+     * Re-evaluates one event against the current filter after it was
+     * replaced in the store, leaving the state of all other events as is.
+     *
+     * @param position Position of the changed event
+     */
+    public void refresh(int position) {
+        if (current != null) {
+            recheck(current, position);
+        }
+    }
+
+    /**
+     * Computes the state from scratch, recording the first rejecting facet
+     * of every rejected event.
+     */
+    private void recomputeAll(CompiledEventFilter filter) {
+        result.clear();
+        for (BitSet rejected : rejectedBy) rejected.clear();
+
+        int[] candidates = null;
+        int count = store.size();
+        if (filter.hasLocation()) {
+            // Events outside the spatial candidates are rejected by distance
+            rejectedBy[Facet.DISTANCE.ordinal()].set(0, store.size());
+            candidates = candidates(filter);
+            count = candidates.length;
+            for (int i : candidates) {
+                rejectedBy[Facet.DISTANCE.ordinal()].clear(i);
+            }
+        }
+
+        // The evaluation itself may run in parallel; bookkeeping stays sequential
+        byte[] outcomes = EventFilterEngine.classify(store, filter, candidates, count);
+        for (int k = 0; k < count; k++) {
+            int position = candidates != null ? candidates[k] : k;
+            if (outcomes[k] == EventFilterEngine.MATCH) {
+                result.set(position);
+            } else {
+                rejectedBy[outcomes[k]].set(position);
+            }
+        }
+    }
+
+    /**
+     * Narrowing step: removes current results that the facet now rejects.
+     */
+    private void dropRejected(Facet facet, CompiledEventFilter filter) {
+        BitSet rejected = rejectedBy[facet.ordinal()];
+        for (int i = result.nextSetBit(0); i >= 0; i = result.nextSetBit(i + 1)) {
+            if (!filter.passes(facet, store, i)) {
+                result.clear(i);
+                rejected.set(i);
+            }
+        }
+    }
+
+    /**
+     * Widening step: re-checks events the facet had rejected.
+     * Those that now pass the facet are fully re-evaluated, which also
+     * refreshes whatever they recorded for other facets.
+     */
+    private void recheckRejected(Facet facet, CompiledEventFilter filter) {
+        BitSet rejected = rejectedBy[facet.ordinal()];
+
+        if (facet == Facet.DISTANCE && filter.hasLocation()) {
+            // Only events near the new circle can stop being rejected by distance
+            for (int i : candidates(filter)) {
+                if (rejected.get(i) && filter.passes(facet, store, i)) {
+                    recheck(filter, i);
+                }
+            }
+            return;
+        }
+
+        for (int i = rejected.nextSetBit(0); i >= 0; i = rejected.nextSetBit(i + 1)) {
+            if (filter.passes(facet, store, i)) {
+                recheck(filter, i);
+            }
+        }
+    }
+
+    /**
+     * Fully evaluates one event and records its outcome.
+     */
+    private void recheck(CompiledEventFilter filter, int position) {
+        for (BitSet rejected : rejectedBy) rejected.clear(position);
+
+        Facet rejecting = filter.firstRejecting(store, position);
+        if (rejecting == null) {
+            result.set(position);
+        } else {
+            result.clear(position);
+            rejectedBy[rejecting.ordinal()].set(position);
+        }
+    }
+
+    private int[] candidates(CompiledEventFilter filter) {
+        return store.getSpatialIndex().query(
+                filter.getCenterLat(), filter.getCenterLng(), filter.getRadiusKm());
+    }
+
+    private int[] positions() {
+        int[] positions = new int[result.cardinality()];
+        int k = 0;
+        for (int i = result.nextSetBit(0); i >= 0; i = result.nextSetBit(i + 1)) {
+            positions[k++] = i;
+        }
+        return positions;
+    }
+}
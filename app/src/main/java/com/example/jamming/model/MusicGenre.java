@@ -1,5 +1,14 @@
 package com.example.jamming.model;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Enumeration representing all supported music genres in the application.
  * Each genre is associated with a user-friendly display name used in the UI
@@ -18,6 +27,17 @@ public enum MusicGenre {
     // Human-readable name used for display and persistence
     private final String displayName;
 
+    // Lookup tables built once: exact display names, and lower-cased ones as a fallback
+    private static final Map<String, MusicGenre> BY_DISPLAY_NAME = new HashMap<>();
+    private static final Map<String, MusicGenre> BY_LOWER_CASE_NAME = new HashMap<>();
+
+    static {
+        for (MusicGenre g : values()) {
+            BY_DISPLAY_NAME.put(g.displayName, g);
+            BY_LOWER_CASE_NAME.put(g.displayName.toLowerCase(Locale.ROOT), g);
+        }
+    }
+
     /**
      * Constructs a music genre with its display name.
      *
@@ -36,6 +56,15 @@ public enum MusicGenre {
         return displayName;
     }
 
+    /**
+     * Returns the bit representing this genre in a genre bitmask.
+     *
+     * @return Single-bit mask for this genre
+     */
+    public int getMask() {
+        return 1 << ordinal();
+    }
+
     /**
      * Converts a display name back to its corresponding enum value.
      * This method is typically used when reading data from Firestore.
@@ -45,11 +74,79 @@ public enum MusicGenre {
      * @throws IllegalArgumentException If the display name is not recognized
      */
     public static MusicGenre fromDisplayName(String value) {
-        for (MusicGenre g : values()) {
-            if (g.displayName.equalsIgnoreCase(value)) {
-                return g;
-            }
+        MusicGenre genre = fromDisplayNameOrNull(value);
+        if (genre == null) {
+            throw new IllegalArgumentException("Unknown genre: " + value);
+        }
+        return genre;
+    }
+
+    /**
+     * Converts a display name to its enum value without throwing.
+     * Exact display names are resolved with a single hash lookup;
+     * other casings fall back to a case-insensitive lookup.
+     *
+     * @param value Display name to convert
+     * @return Matching MusicGenre, or null if the name is not recognized
+     */
+    public static MusicGenre fromDisplayNameOrNull(String value) {
+        if (value == null) return null;
+
+        MusicGenre genre = BY_DISPLAY_NAME.get(value);
+        return genre != null ? genre : BY_LOWER_CASE_NAME.get(value.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Builds a bitmask from a collection of genres.
+     *
+     * @param genres Genres to include (may be null)
+     * @return Bitmask with one bit set per genre
+     */
+    public static int maskOf(Collection<MusicGenre> genres) {
+        int mask = 0;
+        if (genres == null) return mask;
+
+        for (MusicGenre g : genres) {
+            if (g != null) mask |= g.getMask();
+        }
+        return mask;
+    }
+
+    /**
+     * Converts stored genre names to the canonical display names, as
+     * written by the app: recognized names in any casing become the
+     * genre's display name, unknown or legacy values are kept as they are,
+     * and duplicates are dropped.
+     *
+     * @param names Stored genre names (may be null)
+     * @return Canonical names in their original order, or null for null
+     */
+    public static List<String> canonicalNames(List<String> names) {
+        if (names == null) return null;
+
+        Set<String> canonical = new LinkedHashSet<>();
+        for (String name : names) {
+            MusicGenre g = fromDisplayNameOrNull(name);
+            canonical.add(g != null ? g.displayName : name);
+        }
+        return new ArrayList<>(canonical);
+    }
+
+    /**
+     * Builds a bitmask from genre display names.
+     * Unknown or legacy values are ignored.
+     *
+     * @param displayNames Genre display names (may be null)
+     * @return Bitmask with one bit set per recognized genre
+     */
+    public static int maskOfDisplayNames(List<String> displayNames) {
+        int mask = 0;
+        if (displayNames == null) return mask;
+
+        for (String name : displayNames) {
+            MusicGenre g = fromDisplayNameOrNull(name);
+            if (g != null) mask |= g.getMask();
         }
-        throw new IllegalArgumentException("Unknown genre: " + value);
+        return mask;
     }
 }
@@ -80,17 +80,22 @@ public class AuthRepository {
      * @return Task representing the save operation
      */
     public Task<Void> saveUserProfile(String uid, Map<String, Object> data) {
-        return db.collection("users").document(uid).set(data);
+        return DocumentReadCoalescer.of(db).invalidating(
+                DocumentReadCoalescer.key("users", uid),
+                db.collection("users").document(uid).set(data));
     }
 
     /**
      * Retrieves a user's profile document from Firestore by UID.
+     * Shares in-flight and recent reads with {@link UserRepository#getUserById}.
      *
      * @param uid User ID
      * @return Task containing the user document snapshot
      */
     public Task<DocumentSnapshot> getUserUId(String uid) {
-        return db.collection("users").document(uid).get();
+        return DocumentReadCoalescer.of(db).get(
+                DocumentReadCoalescer.key("users", uid),
+                db.collection("users").document(uid));
     }
 
     /**
@@ -164,12 +169,14 @@ public class AuthRepository {
     }
 
     public Task<Void> createUserDocIfMissing(String uid, Map<String, Object> defaults) {
-        return db.collection("users").document(uid).get()
+        return getUserUId(uid)
                 .continueWithTask(t -> {
                     if (!t.isSuccessful()) return Tasks.forException(t.getException());
                     DocumentSnapshot doc = t.getResult();
                     if (doc != null && doc.exists()) return Tasks.forResult(null);
-                    return db.collection("users").document(uid).set(defaults);
+                    return DocumentReadCoalescer.of(db).invalidating(
+                            DocumentReadCoalescer.key("users", uid),
+                            db.collection("users").document(uid).set(defaults));
                 });
     }
 
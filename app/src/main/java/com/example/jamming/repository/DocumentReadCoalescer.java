@@ -0,0 +1,171 @@
+package com.example.jamming.repository;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Shares document reads between callers and keeps their results briefly.
+ *
+ * While a document is being read, further reads of it get the same Task
+ * instead of a second round trip (single flight). A successful read is
+ * then served from memory for {@link #TTL_MILLIS}.
+ *
+ * Writes through the repositories invalidate the document when they start
+ * and again when they complete. A read that was in flight when its
+ * document was invalidated is still delivered to its callers but not
+ * cached, so a write is never followed by a cached copy from before it.
+ *
+ * One coalescer exists per Firestore instance, so every repository created
+ * over the same instance shares it. Documents are keyed by
+ * {@link #key(String, String)}.
+ */
+final class DocumentReadCoalescer {
+
+    /** Time a document read is served from memory */
+    static final long TTL_MILLIS = 30_000;
+
+    private static final Map<FirebaseFirestore, DocumentReadCoalescer> INSTANCES = new WeakHashMap<>();
+
+    private final Map<String, Task<DocumentSnapshot>> inFlight = new HashMap<>();
+    private final Map<String, Entry> cached = new HashMap<>();
+
+    /** Per key, number of invalidations so far */
+    private final Map<String, Integer> versions = new HashMap<>();
+
+    private DocumentReadCoalescer() {
+    }
+
+    /**
+     * Returns the coalescer of a Firestore instance, creating it on first use.
+     */
+    static synchronized DocumentReadCoalescer of(FirebaseFirestore db) {
+        DocumentReadCoalescer reads = INSTANCES.get(db);
+        if (reads == null) {
+            reads = new DocumentReadCoalescer();
+            INSTANCES.put(db, reads);
+        }
+        return reads;
+    }
+
+    /**
+     * Builds the key of a document.
+     *
+     * @param collection Collection name
+     * @param id Document ID
+     */
+    static String key(String collection, String id) {
+        return collection + "/" + id;
+    }
+
+    /**
+     * Reads a document, sharing an identical read in flight and serving
+     * a recent result from memory.
+     *
+     * @param key Key of the document (see {@link #key(String, String)})
+     * @param ref Reference to read from when neither applies
+     * @return Task containing the document snapshot
+     */
+    synchronized Task<DocumentSnapshot> get(String key, DocumentReference ref) {
+        DocumentSnapshot fresh = peek(key, System.currentTimeMillis());
+        if (fresh != null) return Tasks.forResult(fresh);
+
+        Task<DocumentSnapshot> pending = inFlight.get(key);
+        if (pending != null) return pending;
+
+        int version = version(key);
+        Task<DocumentSnapshot> read = ref.get();
+        inFlight.put(key, read);
+        // Direct executor: completion bookkeeping must not wait for the main thread
+        read.addOnCompleteListener(Runnable::run, task -> complete(key, task, version));
+        return read;
+    }
+
+    private synchronized void complete(String key, Task<DocumentSnapshot> read, int version) {
+        if (inFlight.get(key) == read) {
+            inFlight.remove(key);
+        }
+        if (read.isSuccessful() && read.getResult() != null) {
+            put(key, read.getResult(), version);
+        }
+    }
+
+    /**
+     * Looks up a cached document.
+     *
+     * @param key Key of the document
+     * @param now Current time in milliseconds
+     * @return Cached snapshot, or null if absent or expired
+     */
+    synchronized DocumentSnapshot peek(String key, long now) {
+        Entry entry = cached.get(key);
+        if (entry == null) return null;
+        if (now - entry.storedAt > TTL_MILLIS) {
+            cached.remove(key);
+            return null;
+        }
+        return entry.snapshot;
+    }
+
+    /**
+     * Returns the current version of a key, to pass to
+     * {@link #put(String, DocumentSnapshot, int)} once a read completes.
+     */
+    synchronized int version(String key) {
+        Integer version = versions.get(key);
+        return version != null ? version : 0;
+    }
+
+    /**
+     * Caches a document read elsewhere (e.g. by a query), unless it was
+     * invalidated since the read started.
+     *
+     * @param key Key of the document
+     * @param snapshot Snapshot read
+     * @param version Version of the key taken before the read started
+     */
+    synchronized void put(String key, DocumentSnapshot snapshot, int version) {
+        if (version(key) == version) {
+            cached.put(key, new Entry(snapshot, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Drops a document, e.g. because it is being written. Reads already in
+     * flight complete normally but are not cached.
+     */
+    synchronized void invalidate(String key) {
+        versions.put(key, version(key) + 1);
+        cached.remove(key);
+        inFlight.remove(key);
+    }
+
+    /**
+     * Invalidates a document for the duration of a write: now, and again
+     * once the write completes, so reads started meanwhile are not cached.
+     *
+     * @param key Key of the written document
+     * @param write Write operation
+     * @return The same write operation
+     */
+    <T> Task<T> invalidating(String key, Task<T> write) {
+        invalidate(key);
+        write.addOnCompleteListener(Runnable::run, task -> invalidate(key));
+        return write;
+    }
+
+    private static final class Entry {
+        final DocumentSnapshot snapshot;
+        final long storedAt;
+
+        Entry(DocumentSnapshot snapshot, long storedAt) {
+            this.snapshot = snapshot;
+            this.storedAt = storedAt;
+        }
+    }
+}
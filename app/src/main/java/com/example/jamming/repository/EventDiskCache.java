@@ -0,0 +1,275 @@
+package com.example.jamming.repository;
+
+import com.example.jamming.model.Event;
+import com.example.jamming.model.EventFilter;
+import com.example.jamming.model.MusicGenre;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * On-device copy of the last loaded events, so that the explore screen can
+ * show events immediately and then fetch only what changed since.
+ *
+ * The file stores the events together with the filter and time the events
+ * were fetched for (to rebuild their {@link EventQueryPlanner.Plan}) and the
+ * sync watermark. It uses a compact binary format written with
+ * {@link DataOutputStream}; a file of another format version is ignored.
+ *
+ * Reading and writing do file I/O and must not run on the main thread.
+ */
+public class EventDiskCache {
+
+    private static final int MAGIC = 0x4A455643; // "JEVC"
+    private static final int VERSION = 1;
+
+    private final File file;
+
+    /**
+     * Creates a cache stored in the given file.
+     *
+     * @param file Cache file (created on first write)
+     */
+    public EventDiskCache(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads the cached snapshot.
+     *
+     * @return Cached snapshot, or null if there is none or it cannot be read
+     */
+    public Snapshot read() {
+        if (!file.exists()) return null;
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+
+            long plannedAt = in.readLong();
+            long watermark = in.readLong();
+            EventFilter filter = readFilter(in);
+
+            int count = in.readInt();
+            List<Event> events = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                events.add(readEvent(in));
+            }
+            return new Snapshot(filter, plannedAt, watermark, events);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the cached snapshot. The file is written under a temporary
+     * name first, so a failed write never leaves a partial cache behind.
+     *
+     * @param snapshot Snapshot to store
+     * @return True if the snapshot was written
+     */
+    public boolean write(Snapshot snapshot) {
+        File temp = new File(file.getPath() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(snapshot.plannedAt);
+            out.writeLong(snapshot.watermark);
+            writeFilter(out, snapshot.filter);
+
+            out.writeInt(snapshot.events.size());
+            for (Event event : snapshot.events) {
+                writeEvent(out, event);
+            }
+        } catch (IOException e) {
+            temp.delete();
+            return false;
+        }
+        return temp.renameTo(file);
+    }
+
+    /**
+     * Deletes the cached snapshot.
+     */
+    public void clear() {
+        file.delete();
+    }
+
+    /* ===== Events ===== */
+
+    private static void writeEvent(DataOutputStream out, Event event) throws IOException {
+        writeString(out, event.getId());
+        writeString(out, event.getOwnerId());
+        writeString(out, event.getName());
+        writeString(out, event.getDescription());
+        writeString(out, event.getAddress());
+        writeStrings(out, event.getMusicTypes());
+        out.writeLong(event.getDateTime());
+        out.writeInt(event.getMaxCapacity());
+        out.writeInt(event.getReserved());
+        out.writeBoolean(event.isActive());
+        out.writeDouble(event.getLatitude());
+        out.writeDouble(event.getLongitude());
+        writeString(out, event.getGeohash());
+        writeStrings(out, event.getParticipants());
+    }
+
+    private static Event readEvent(DataInputStream in) throws IOException {
+        String id = readString(in);
+        String ownerId = readString(in);
+        String name = readString(in);
+        String description = readString(in);
+        String address = readString(in);
+        List<String> musicTypes = readStrings(in);
+        long dateTime = in.readLong();
+        int maxCapacity = in.readInt();
+        int reserved = in.readInt();
+        boolean active = in.readBoolean();
+        double latitude = in.readDouble();
+        double longitude = in.readDouble();
+
+        Event event = new Event(ownerId, name, description, musicTypes, address,
+                dateTime, maxCapacity, latitude, longitude);
+        event.setId(id);
+        event.setReserved(reserved);
+        event.setActive(active);
+        event.setGeohash(readString(in));
+        event.setParticipants(readStrings(in));
+        return event;
+    }
+
+    /* ===== Filter ===== */
+
+    private static void writeFilter(DataOutputStream out, EventFilter filter) throws IOException {
+        out.writeInt(filter.genreMask());
+        writeDouble(out, filter.getCenterLat());
+        writeDouble(out, filter.getCenterLng());
+        writeInteger(out, filter.getRadiusKm());
+        writeInteger(out, filter.getStartMinute());
+        writeInteger(out, filter.getEndMinute());
+        writeLong(out, filter.getStartDateMillis());
+        writeLong(out, filter.getEndDateMillis());
+        writeInteger(out, filter.getMinAvailableSpots());
+        writeInteger(out, filter.getMaxAvailableSpots());
+        writeInteger(out, filter.getMinCapacity());
+        writeInteger(out, filter.getMaxCapacity());
+    }
+
+    private static EventFilter readFilter(DataInputStream in) throws IOException {
+        EventFilter filter = new EventFilter();
+
+        int genreMask = in.readInt();
+        List<MusicGenre> genres = new ArrayList<>();
+        for (MusicGenre genre : MusicGenre.values()) {
+            if ((genreMask & genre.getMask()) != 0) genres.add(genre);
+        }
+        filter.setMusicTypes(genres);
+
+        Double lat = readDouble(in);
+        Double lng = readDouble(in);
+        filter.setLocation(lat, lng, readInteger(in));
+        filter.setTimeRange(readInteger(in), readInteger(in));
+        filter.setDateRange(readLong(in), readLong(in));
+        filter.setAvailableSpotsRange(readInteger(in), readInteger(in));
+        filter.setCapacityRange(readInteger(in), readInteger(in));
+        return filter;
+    }
+
+    /* ===== Nullable values ===== */
+
+    // Strings are written as a length and UTF-8 bytes; writeUTF would limit them to 64KB
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        if (values == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(values.size());
+        for (String value : values) writeString(out, value);
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) return null;
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) values.add(readString(in));
+        return values;
+    }
+
+    private static void writeInteger(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeInt(value);
+    }
+
+    private static Integer readInteger(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    private static void writeLong(DataOutputStream out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeLong(value);
+    }
+
+    private static Long readLong(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    private static void writeDouble(DataOutputStream out, Double value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeDouble(value);
+    }
+
+    private static Double readDouble(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readDouble() : null;
+    }
+
+    /**
+     * Cached events, with the filter and time they were fetched for and the
+     * server time up to which they are known to be complete.
+     */
+    public static class Snapshot {
+        private final EventFilter filter;
+        private final long plannedAt;
+        private final long watermark;
+        private final List<Event> events;
+
+        public Snapshot(EventFilter filter, long plannedAt, long watermark, List<Event> events) {
+            this.filter = filter;
+            this.plannedAt = plannedAt;
+            this.watermark = watermark;
+            this.events = events;
+        }
+
+        public EventFilter getFilter() { return filter; }
+        public long getPlannedAt() { return plannedAt; }
+        public long getWatermark() { return watermark; }
+        public List<Event> getEvents() { return events; }
+    }
+}
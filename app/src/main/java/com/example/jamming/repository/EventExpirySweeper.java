@@ -0,0 +1,355 @@
+package com.example.jamming.repository;
+
+import com.example.jamming.model.MusicGenre;
+import com.example.jamming.utils.GeoHashUtils;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Marks events whose date has passed as inactive, in batches, and deletes
+ * tombstones older than {@link EventRepository#MAX_SYNC_AGE_MILLIS}: no
+ * client syncs from that far back, so they would only be downloaded with
+ * every sync.
+ *
+ * Sweeps are deduplicated across clients with a lease document: a client
+ * only sweeps after acquiring the lease in a transaction, and the lease
+ * stays taken for {@link #SWEEP_INTERVAL_MILLIS}. Every expired event is
+ * therefore written once per interval by one client, instead of once per
+ * load by every client that happens to download it.
+ *
+ * Lease times use the client clock; a skewed clock can at worst make a
+ * sweep run early or late, never twice at once (the lease is transactional).
+ *
+ * The lease holder also runs one-time migrations, recording their progress
+ * on the lease document: events stored before geohashes existed get one,
+ * so that distance queries (ordered by geohash) can return them, and
+ * genres stored in another casing are renamed to their canonical display
+ * names, the only ones genre queries ask for.
+ */
+public class EventExpirySweeper {
+
+    /** Lease document shared by all clients */
+    static final String LEASE_COLLECTION = "maintenance";
+    static final String LEASE_DOCUMENT = "eventExpirySweep";
+
+    /** Time until the lease expires, as epoch milliseconds */
+    static final String LEASE_UNTIL = "leaseUntil";
+
+    /** Client that holds the lease */
+    static final String LEASE_HOLDER = "holder";
+
+    /** Minimum time between two sweeps */
+    static final long SWEEP_INTERVAL_MILLIS = 15 * 60 * 1000;
+
+    /** Firestore's limit on writes per batch */
+    static final int MAX_BATCH_WRITES = 500;
+
+    /** Set on the lease document once every active event has a geohash */
+    static final String GEOHASH_BACKFILLED = "geohashBackfilled";
+
+    /** ID of the last event checked by the geohash backfill, while it runs */
+    static final String GEOHASH_CURSOR = "geohashCursor";
+
+    /** Set on the lease document once every active event's genres are canonical */
+    static final String GENRES_NORMALIZED = "genresNormalized";
+
+    /** ID of the last event checked by the genre backfill, while it runs */
+    static final String GENRES_CURSOR = "genresCursor";
+
+    /**
+     * Adds the writes one backfill needs for a page of events to a batch.
+     */
+    interface PageFixer {
+        /** @return Number of events updated */
+        int fix(WriteBatch batch, List<DocumentSnapshot> events);
+    }
+
+    private final FirebaseFirestore db;
+
+    /**
+     * Creates a sweeper over the given Firestore instance.
+     *
+     * @param db Firestore instance
+     */
+    public EventExpirySweeper(FirebaseFirestore db) {
+        this.db = db;
+    }
+
+    /**
+     * Sweeps expired events if no client has done so within the interval.
+     *
+     * @param clientId Identifies this client in the lease (e.g. the user ID)
+     * @param now Current time in milliseconds
+     * @return Task containing the number of events deactivated;
+     *         0 when another client holds the lease
+     */
+    public Task<Integer> sweepIfDue(String clientId, long now) {
+        return acquireLease(clientId, now)
+                .onSuccessTask(acquired -> acquired
+                        ? sweep(now, 0).onSuccessTask(swept -> pruneTombstones(now)
+                                .onSuccessTask(pruned -> backfillGeohashes())
+                                .onSuccessTask(filled -> backfillGenres())
+                                .continueWith(backfilled -> swept))
+                        : Tasks.forResult(0));
+    }
+
+    /**
+     * Takes the lease if it is free or expired.
+     *
+     * @return Task containing whether this client now holds the lease
+     */
+    Task<Boolean> acquireLease(String clientId, long now) {
+        DocumentReference leaseRef = db.collection(LEASE_COLLECTION).document(LEASE_DOCUMENT);
+
+        return db.runTransaction(transaction -> {
+            DocumentSnapshot lease = transaction.get(leaseRef);
+
+            Long leaseUntil = lease.getLong(LEASE_UNTIL);
+            if (leaseUntil != null && leaseUntil > now) {
+                return false;
+            }
+
+            Map<String, Object> taken = new HashMap<>();
+            taken.put(LEASE_UNTIL, now + SWEEP_INTERVAL_MILLIS);
+            taken.put(LEASE_HOLDER, clientId);
+            transaction.set(leaseRef, taken, SetOptions.merge());
+            return true;
+        });
+    }
+
+    /**
+     * Deactivates up to one batch of expired events, then continues with
+     * the next batch until none are left. Deactivated events no longer
+     * match the query, so every round reads from the start.
+     *
+     * @param now Events starting before this time are expired
+     * @param swept Number of events deactivated in earlier rounds
+     * @return Task containing the total number of events deactivated
+     */
+    private Task<Integer> sweep(long now, int swept) {
+        return db.collection("events")
+                .whereEqualTo("active", true)
+                .whereLessThan("dateTime", now)
+                .limit(MAX_BATCH_WRITES)
+                .get()
+                .onSuccessTask(snapshot -> {
+                    List<DocumentSnapshot> expired = snapshot.getDocuments();
+                    if (expired.isEmpty()) {
+                        return Tasks.forResult(swept);
+                    }
+
+                    return deactivate(expired)
+                            .onSuccessTask(v -> expired.size() < MAX_BATCH_WRITES
+                                    ? Tasks.forResult(swept + expired.size())
+                                    : sweep(now, swept + expired.size()));
+                });
+    }
+
+    /**
+     * Deletes tombstones older than the longest time a client may go
+     * without syncing, one batch at a time until none are left.
+     *
+     * @param now Current time in milliseconds
+     * @return Task representing the operation
+     */
+    Task<Void> pruneTombstones(long now) {
+        Timestamp cutoff = new Timestamp(new Date(now - EventRepository.MAX_SYNC_AGE_MILLIS));
+
+        return db.collection(EventRepository.TOMBSTONES)
+                .whereLessThan(EventRepository.DELETED_AT, cutoff)
+                .limit(MAX_BATCH_WRITES)
+                .get()
+                .onSuccessTask(snapshot -> {
+                    List<DocumentSnapshot> old = snapshot.getDocuments();
+                    if (old.isEmpty()) {
+                        return Tasks.forResult(null);
+                    }
+
+                    WriteBatch batch = db.batch();
+                    for (DocumentSnapshot tombstone : old) {
+                        batch.delete(tombstone.getReference());
+                    }
+                    return batch.commit()
+                            .onSuccessTask(v -> old.size() < MAX_BATCH_WRITES
+                                    ? Tasks.forResult(null)
+                                    : pruneTombstones(now));
+                });
+    }
+
+    /**
+     * Gives every active event stored before geohashes existed its
+     * geohash, unless this was already done. Runs only while holding the
+     * lease, so each event is written once, by one client.
+     *
+     * The geohash is only used by queries, so {@code updatedAt} is left
+     * alone and clients holding the events do not download them again.
+     *
+     * @return Task containing the number of events given a geohash
+     */
+    Task<Integer> backfillGeohashes() {
+        return backfill(GEOHASH_BACKFILLED, GEOHASH_CURSOR, EventExpirySweeper::addGeohashes);
+    }
+
+    /**
+     * Renames the genres of every active event stored before genres were
+     * normalized to their canonical display names, unless this was already
+     * done. Runs only while holding the lease, so each event is written
+     * once, by one client.
+     *
+     * Clients whose genre queries missed these events find them through
+     * the new {@code updatedAt} on their next sync.
+     *
+     * @return Task containing the number of events renamed
+     */
+    Task<Integer> backfillGenres() {
+        return backfill(GENRES_NORMALIZED, GENRES_CURSOR, EventExpirySweeper::addCanonicalGenres);
+    }
+
+    /**
+     * Runs a one-time backfill over every active event, unless the lease
+     * document records it as done.
+     *
+     * @param doneField Lease field set once the backfill is complete
+     * @param cursorField Lease field holding the backfill's progress
+     * @param fixer Writes the backfill needs for one page of events
+     * @return Task containing the number of events updated
+     */
+    private Task<Integer> backfill(String doneField, String cursorField, PageFixer fixer) {
+        DocumentReference leaseRef = db.collection(LEASE_COLLECTION).document(LEASE_DOCUMENT);
+
+        return leaseRef.get().onSuccessTask(lease ->
+                Boolean.TRUE.equals(lease.getBoolean(doneField))
+                        ? Tasks.forResult(0)
+                        : backfill(leaseRef, doneField, cursorField, fixer,
+                                lease.getString(cursorField), 0));
+    }
+
+    /**
+     * Checks one page of active events in document ID order, writing the
+     * backfill's fixes together with its progress, then continues with the
+     * next page. An interrupted backfill resumes after the last committed
+     * page.
+     */
+    private Task<Integer> backfill(DocumentReference leaseRef, String doneField, String cursorField,
+                                   PageFixer fixer, String after, int fixed) {
+        // One write of each batch records the progress
+        int pageSize = MAX_BATCH_WRITES - 1;
+        Query page = db.collection("events")
+                .whereEqualTo("active", true)
+                .orderBy(FieldPath.documentId());
+        if (after != null) {
+            page = page.startAfter(after);
+        }
+
+        return page.limit(pageSize).get()
+                .onSuccessTask(snapshot -> {
+                    List<DocumentSnapshot> events = snapshot.getDocuments();
+                    boolean done = events.size() < pageSize;
+
+                    WriteBatch batch = db.batch();
+                    int added = fixer.fix(batch, events);
+
+                    Map<String, Object> progress = new HashMap<>();
+                    if (done) {
+                        progress.put(doneField, true);
+                        progress.put(cursorField, FieldValue.delete());
+                    } else {
+                        progress.put(cursorField, events.get(events.size() - 1).getId());
+                    }
+                    batch.set(leaseRef, progress, SetOptions.merge());
+
+                    return batch.commit()
+                            .onSuccessTask(v -> done
+                                    ? Tasks.forResult(fixed + added)
+                                    : backfill(leaseRef, doneField, cursorField, fixer,
+                                            events.get(events.size() - 1).getId(), fixed + added));
+                });
+    }
+
+    /**
+     * Adds a geohash update to the batch for each event that has a
+     * location but no geohash.
+     *
+     * @return Number of events updated
+     */
+    static int addGeohashes(WriteBatch batch, List<DocumentSnapshot> events) {
+        int added = 0;
+        for (DocumentSnapshot event : events) {
+            Double lat = event.getDouble("latitude");
+            Double lng = event.getDouble("longitude");
+            if (event.getString("geohash") != null || lat == null || lng == null) continue;
+
+            batch.update(event.getReference(), "geohash", GeoHashUtils.encode(lat, lng));
+            added++;
+        }
+        return added;
+    }
+
+    /**
+     * Adds a genre update to the batch for each event with a genre not
+     * stored by its canonical display name.
+     *
+     * @return Number of events updated
+     */
+    @SuppressWarnings("unchecked")
+    static int addCanonicalGenres(WriteBatch batch, List<DocumentSnapshot> events) {
+        int added = 0;
+        for (DocumentSnapshot event : events) {
+            Object stored = event.get("musicTypes");
+            if (!(stored instanceof List)) continue;
+
+            List<String> names = (List<String>) stored;
+            List<String> canonical = MusicGenre.canonicalNames(names);
+            if (canonical.equals(names)) continue;
+
+            batch.update(event.getReference(),
+                    "musicTypes", canonical,
+                    EventRepository.UPDATED_AT, FieldValue.serverTimestamp());
+            added++;
+        }
+        return added;
+    }
+
+    /**
+     * Marks the given events inactive, in batches of at most
+     * {@link #MAX_BATCH_WRITES} writes committed in parallel.
+     */
+    private Task<Void> deactivate(List<DocumentSnapshot> events) {
+        List<Task<Void>> commits = new ArrayList<>();
+        WriteBatch batch = null;
+        int writes = 0;
+
+        for (DocumentSnapshot event : events) {
+            if (batch == null) {
+                batch = db.batch();
+                writes = 0;
+            }
+            batch.update(event.getReference(),
+                    "active", false,
+                    EventRepository.UPDATED_AT, FieldValue.serverTimestamp());
+
+            if (++writes == MAX_BATCH_WRITES) {
+                commits.add(batch.commit());
+                batch = null;
+            }
+        }
+        if (batch != null) {
+            commits.add(batch.commit());
+        }
+        return Tasks.whenAll(commits);
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.jamming.repository;
+
+import com.example.jamming.model.Event;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Live changes to the events a query plan selects, written after a point
+ * in time, kept up to date by Firestore snapshot listeners.
+ *
+ * The feed listens to the plan's change queries (events written after that
+ * time, see {@link EventQueryPlanner.Plan#changeQueries}) and to the
+ * tombstones written after it. It never loads the plan's full result: the
+ * caller already holds those events, fetched page by page or restored from
+ * disk, up to the point in time. The first change set therefore carries
+ * what a one-time sync would (see {@link EventRepository#getEventChangesSince}),
+ * and later ones only the documents written again, so a one-seat change on
+ * one event costs one document.
+ *
+ * Changed events are reported whether or not they are still active, like
+ * the one-time sync; the caller decides which ones to keep. An event whose
+ * edit moved it out of the plan leaves the change queries without a trace,
+ * so it is reported through its tombstone, written in the same commit. A
+ * tombstone does not remove an event the feed has seen written at or after
+ * the tombstone's time, since that event still matches the plan.
+ *
+ * The feed's watermark is the time up to which every listener has read
+ * from the server (see {@link EventRepository#readWatermark}), so it keeps
+ * advancing while nothing is written.
+ *
+ * Callbacks run on the main thread. Call {@link #stop()} to detach.
+ */
+public class EventFeed {
+
+    /**
+     * Receives the feed's change sets.
+     */
+    public interface Listener {
+        void onChanges(Changes changes);
+        void onError(Exception e);
+    }
+
+    private final EventQueryPlanner.Plan plan;
+    private final Listener listener;
+    private final List<ListenerRegistration> registrations = new ArrayList<>();
+
+    /** Latest update time seen per event, to tell moves from removals */
+    private final Map<String, Long> writtenAt = new HashMap<>();
+
+    private boolean stopped;
+
+    /** Watermark of each listener's latest server snapshot; the tombstones' last */
+    private long[] readAt = new long[0];
+
+    /** Server time up to which the feed has reported every change */
+    private long watermark;
+
+    EventFeed(EventQueryPlanner.Plan plan, Listener listener, long sinceMillis) {
+        this.plan = plan;
+        this.listener = listener;
+        this.watermark = sinceMillis;
+    }
+
+    /**
+     * Attaches one listener per change query, and one to the tombstones.
+     *
+     * @param changeQueries Change queries of the plan
+     * @param tombstones Query over the tombstones written after the feed's start time
+     */
+    void start(List<Query> changeQueries, Query tombstones) {
+        readAt = new long[changeQueries.size() + 1];
+        Arrays.fill(readAt, watermark);
+        for (int i = 0; i < changeQueries.size(); i++) {
+            int listener = i;
+            registrations.add(changeQueries.get(i).addSnapshotListener(
+                    (snapshot, error) -> onEvents(listener, snapshot, error)));
+        }
+        registrations.add(tombstones.addSnapshotListener(
+                (snapshot, error) -> onTombstones(changeQueries.size(), snapshot, error)));
+    }
+
+    /**
+     * Returns the plan this feed follows.
+     */
+    public EventQueryPlanner.Plan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Returns the server time up to which the feed has reported every
+     * change, to sync from once it is stopped.
+     */
+    public long getWatermark() {
+        return watermark;
+    }
+
+    /**
+     * Detaches the listeners; no further change sets are reported.
+     */
+    public void stop() {
+        stopped = true;
+        for (ListenerRegistration registration : registrations) {
+            registration.remove();
+        }
+        registrations.clear();
+    }
+
+    private void onEvents(int listener, QuerySnapshot snapshot, FirebaseFirestoreException error) {
+        if (!accept(listener, snapshot, error)) return;
+
+        List<Event> changed = new ArrayList<>();
+        for (DocumentChange change : snapshot.getDocumentChanges()) {
+            // Documents only leave a change query when edited out of the plan; their tombstone reports it
+            if (change.getType() == DocumentChange.Type.REMOVED) continue;
+
+            DocumentSnapshot doc = change.getDocument();
+            long updatedAt = EventRepository.timestampMillis(doc, EventRepository.UPDATED_AT);
+            writtenAt.merge(doc.getId(), updatedAt, Math::max);
+
+            Event event = EventRepository.toEvent(doc);
+            if (event != null && plan.acceptsLocation(event.getLatitude(), event.getLongitude())) {
+                changed.add(event);
+            }
+        }
+        report(changed, new ArrayList<>());
+    }
+
+    private void onTombstones(int listener, QuerySnapshot snapshot, FirebaseFirestoreException error) {
+        if (!accept(listener, snapshot, error)) return;
+
+        List<String> removed = new ArrayList<>();
+        for (DocumentChange change : snapshot.getDocumentChanges()) {
+            if (change.getType() == DocumentChange.Type.REMOVED) continue;
+
+            DocumentSnapshot doc = change.getDocument();
+            long deletedAt = EventRepository.timestampMillis(doc, EventRepository.DELETED_AT);
+            Long written = writtenAt.get(doc.getId());
+            if (written == null || written < deletedAt) {
+                removed.add(doc.getId());
+            }
+        }
+        report(new ArrayList<>(), removed);
+    }
+
+    private boolean accept(int listener, QuerySnapshot snapshot, FirebaseFirestoreException error) {
+        if (stopped) return false;
+        if (error != null) {
+            this.listener.onError(error);
+            return false;
+        }
+        if (snapshot == null) return false;
+
+        // Snapshots from the local cache may lag behind the server
+        if (!snapshot.getMetadata().isFromCache()) {
+            readAt[listener] = Math.max(readAt[listener], EventRepository.readWatermark());
+            long complete = Long.MAX_VALUE;
+            for (long time : readAt) complete = Math.min(complete, time);
+            watermark = Math.max(watermark, complete);
+        }
+        return true;
+    }
+
+    private void report(List<Event> changed, List<String> removed) {
+        if (!changed.isEmpty() || !removed.isEmpty()) {
+            listener.onChanges(new Changes(changed, removed, watermark));
+        }
+    }
+
+    /**
+     * One change set of the feed: the events added or modified and the IDs
+     * of the events removed since the previous change set.
+     */
+    public static class Changes {
+        private final List<Event> events;
+        private final List<String> removedIds;
+        private final long watermark;
+
+        Changes(List<Event> events, List<String> removedIds, long watermark) {
+            this.events = events;
+            this.removedIds = removedIds;
+            this.watermark = watermark;
+        }
+
+        public List<Event> getEvents() { return events; }
+        public List<String> getRemovedIds() { return removedIds; }
+        /** Server time up to which the feed has reported every change */
+        public long getWatermark() { return watermark; }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.jamming.repository;
+
+import com.example.jamming.model.Event;
+import com.google.firebase.firestore.DocumentSnapshot;
+import java.util.List;
+
+/**
+ * One page of events from a paginated query, with the cursor to continue from.
+ *
+ * Pages are fetched with {@code orderBy} + {@code startAfter} + {@code limit},
+ * so only one page of documents is downloaded and held at a time.
+ */
+public class EventPage {
+
+    private final List<Event> events;
+    private final Cursor cursor;
+    private final long watermark;
+
+    EventPage(List<Event> events, Cursor cursor, long watermark) {
+        this.events = events;
+        this.cursor = cursor;
+        this.watermark = watermark;
+    }
+
+    /** Events of this page, in query order */
+    public List<Event> getEvents() { return events; }
+
+    /** Cursor to fetch the next page with, or null if this is the last page */
+    public Cursor getCursor() { return cursor; }
+
+    /** Whether more pages follow */
+    public boolean hasMore() { return cursor != null; }
+
+    /** Server time up to which the page is complete: the time it was read */
+    public long getWatermark() { return watermark; }
+
+    /**
+     * Position to continue a paginated query from: the query to run (a plan
+     * may consist of several queries, which are paged one after the other)
+     * and the last document read from it, or null to start at its beginning.
+     */
+    public static class Cursor {
+        final int query;
+        final DocumentSnapshot after;
+
+        Cursor(int query, DocumentSnapshot after) {
+            this.query = query;
+            this.after = after;
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.example.jamming.repository;
+
+import com.example.jamming.model.Event;
+import com.example.jamming.model.EventFilter;
+import com.example.jamming.model.MusicGenre;
+import com.example.jamming.utils.GeoHashUtils;
+import com.example.jamming.utils.GeoUtils;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.Query;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Translates an {@link EventFilter} into the most selective Firestore query
+ * it can express, and describes what is left to filter on the device.
+ *
+ * Pushed down to Firestore:
+ * - {@code active == true}
+ * - a {@code dateTime} range starting no earlier than now
+ * - {@code array-contains-any} on {@code musicTypes} for selected genres,
+ *   by their canonical display names (see {@link Plan#genreNames})
+ * - {@code geohash} ranges covering the distance filter's circle, one
+ *   query per range (see {@link GeoHashUtils#queryRanges})
+ *
+ * Everything else (time of day, seats, the exact distance) cannot be
+ * expressed in Firestore queries, and stays client-side.
+ *
+ * Note: the combined queries need composite indexes on
+ * (active, musicTypes, dateTime) and (active, musicTypes, geohash, dateTime)
+ * in the Firestore console, and the change queries (see
+ * {@link Plan#changeQueries}) on (musicTypes, updatedAt, dateTime) and
+ * (musicTypes, geohash, updatedAt, dateTime).
+ */
+public class EventQueryPlanner {
+
+    /** Firestore limit on the number of values in array-contains-any */
+    static final int MAX_ARRAY_CONTAINS_ANY = 30;
+
+    private EventQueryPlanner() {
+    }
+
+    /**
+     * Plans the query for a filter.
+     *
+     * @param filter Filter to translate (null means no criteria)
+     * @param now Current time in milliseconds
+     * @return Query plan
+     */
+    public static Plan plan(EventFilter filter, long now) {
+        if (filter == null) filter = new EventFilter();
+
+        long from = now;
+        Long to = null;
+        if (filter.getStartDateMillis() != null && filter.getEndDateMillis() != null) {
+            from = Math.max(now, filter.getStartDateMillis());
+            to = filter.getEndDateMillis();
+        }
+
+        int genreMask = filter.genreMask();
+        if (Plan.genreNames(genreMask).size() > MAX_ARRAY_CONTAINS_ANY) genreMask = 0;
+
+        GeoUtils.RadiusMatcher circle = null;
+        if (filter.getCenterLat() != null && filter.getCenterLng() != null && filter.getRadiusKm() != null) {
+            circle = GeoUtils.radiusMatcher(filter.getCenterLat(), filter.getCenterLng(), filter.getRadiusKm());
+        }
+
+        return new Plan(now, from, to, genreMask, filter, circle);
+    }
+
+    /**
+     * An immutable query plan: the criteria pushed down to Firestore.
+     */
+    public static final class Plan {
+        private final long plannedAt;
+        private final EventFilter filter;
+        private final long from;
+        private final Long to;
+        private final int genreMask;
+
+        /* Distance filter; all null/NaN without one */
+        private final double centerLat;
+        private final double centerLng;
+        private final Integer radiusKm;
+        private final GeoUtils.RadiusMatcher circle;
+
+        Plan(long plannedAt, long from, Long to, int genreMask, EventFilter filter, GeoUtils.RadiusMatcher circle) {
+            this.plannedAt = plannedAt;
+            this.filter = new EventFilter(filter);
+            this.from = from;
+            this.to = to;
+            this.genreMask = genreMask;
+            this.circle = circle;
+            this.centerLat = circle != null ? filter.getCenterLat() : Double.NaN;
+            this.centerLng = circle != null ? filter.getCenterLng() : Double.NaN;
+            this.radiusKm = circle != null ? filter.getRadiusKm() : null;
+        }
+
+        /**
+         * Builds the queries to run for this plan. Without a distance filter
+         * this is a single query ordered by date; otherwise one query per
+         * geohash range, ordered by geohash, which should run in parallel and
+         * whose results may overlap. Being ordered, each can be paged.
+         *
+         * @param events Query over the "events" collection
+         * @return Queries restricted by the plan
+         */
+        public List<Query> queries(Query events) {
+            return ordered(apply(events));
+        }
+
+        /**
+         * Builds the queries for the events of this plan written after a
+         * point in time, split like {@link #queries}. They do not require
+         * {@code active}, so that events deactivated since are reported too.
+         *
+         * @param events Query over the "events" collection
+         * @param since Server time to fetch changes after
+         * @return Queries restricted by the plan and the change time
+         */
+        public List<Query> changeQueries(Query events, Timestamp since) {
+            return ordered(restrict(events.whereGreaterThan(EventRepository.UPDATED_AT, since)));
+        }
+
+        /**
+         * Orders a restricted query by date, or splits it into one query
+         * per geohash range of the plan's circle.
+         */
+        private List<Query> ordered(Query base) {
+            List<Query> queries = new ArrayList<>();
+            if (circle == null) {
+                queries.add(base.orderBy("dateTime"));
+                return queries;
+            }
+            for (GeoHashUtils.Range range : GeoHashUtils.queryRanges(centerLat, centerLng, radiusKm)) {
+                queries.add(base.orderBy("geohash").startAt(range.getStart()).endAt(range.getEnd()));
+            }
+            return queries;
+        }
+
+        /**
+         * Returns the filter this plan was built from, so that the plan can
+         * be rebuilt later with {@code plan(getFilter(), getPlannedAt())}.
+         */
+        public EventFilter getFilter() {
+            return new EventFilter(filter);
+        }
+
+        /**
+         * Returns the time this plan was built at.
+         */
+        public long getPlannedAt() {
+            return plannedAt;
+        }
+
+        /**
+         * Checks whether an event satisfies every criterion of the plan, i.e.
+         * whether the plan's queries would return it. Used to decide if a
+         * changed event belongs to the events fetched with this plan.
+         *
+         * @param event Event to check
+         * @return True if the plan selects the event
+         */
+        public boolean matches(Event event) {
+            if (!event.isActive()) return false;
+            if (event.getDateTime() < from) return false;
+            if (to != null && event.getDateTime() > to) return false;
+            if (genreMask != 0 && (event.genreMask() & genreMask) == 0) return false;
+            return acceptsLocation(event.getLatitude(), event.getLongitude());
+        }
+
+        /**
+         * Checks whether a location lies within the plan's distance filter.
+         * Geohash ranges cover more than the circle, so every result of
+         * {@link #queries} needs this check.
+         *
+         * @param lat Latitude of the event
+         * @param lng Longitude of the event
+         * @return True if there is no distance filter or the location is within it
+         */
+        public boolean acceptsLocation(double lat, double lng) {
+            return circle == null || circle.matches(lat, lng);
+        }
+
+        /**
+         * Adds the pushed-down criteria, except the location, to a query over
+         * the events collection.
+         *
+         * @param events Query over the "events" collection
+         * @return Query restricted by the plan
+         */
+        public Query apply(Query events) {
+            return restrict(events.whereEqualTo("active", true));
+        }
+
+        /**
+         * Adds the pushed-down date range and genres to a query.
+         */
+        private Query restrict(Query query) {
+            query = query.whereGreaterThanOrEqualTo("dateTime", from);
+            if (to != null) {
+                query = query.whereLessThanOrEqualTo("dateTime", to);
+            }
+            if (genreMask != 0) {
+                query = query.whereArrayContainsAny("musicTypes", genreNames(genreMask));
+            }
+            return query;
+        }
+
+        /**
+         * Returns the genres the plan's queries are restricted to (0 for every genre).
+         */
+        public int getGenreMask() {
+            return genreMask;
+        }
+
+        /**
+         * Returns the earliest start the plan's queries fetch.
+         */
+        public long getFrom() {
+            return from;
+        }
+
+        /**
+         * Returns the latest start the plan's queries fetch (null for no end).
+         */
+        public Long getTo() {
+            return to;
+        }
+
+        /**
+         * Returns the radius around a location within which the plan's
+         * queries fetch every event: the part of the plan's circle centered
+         * on that location.
+         *
+         * @param lat Latitude of the location
+         * @param lng Longitude of the location
+         * @return Radius in kilometers, infinite without a distance filter
+         */
+        public double coveredRadiusKm(double lat, double lng) {
+            if (circle == null) return Double.POSITIVE_INFINITY;
+            return Math.max(0, radiusKm - GeoUtils.calculateDistanceKm(centerLat, centerLng, lat, lng));
+        }
+
+        /**
+         * Checks whether this plan restricts more than active, upcoming events.
+         */
+        public boolean isRestricted() {
+            return to != null || genreMask != 0 || circle != null;
+        }
+
+        /**
+         * Checks whether the events fetched with this plan contain every event
+         * another filter could match, so it can be applied without refetching.
+         *
+         * @param filter Filter to check
+         * @param now Current time in milliseconds
+         * @return True if the fetched events are a superset of the filter's matches
+         */
+        public boolean covers(EventFilter filter, long now) {
+            Plan other = plan(filter, now);
+
+            boolean genresCovered = genreMask == 0
+                    || (other.genreMask != 0 && (other.genreMask & ~genreMask) == 0);
+            // Events before this plan's start may have been skipped only if they are still upcoming
+            boolean startCovered = from <= other.from;
+            boolean endCovered = to == null || (other.to != null && other.to <= to);
+            // The other circle must lie entirely within this one
+            boolean locationCovered = circle == null
+                    || (other.circle != null && GeoUtils.calculateDistanceKm(
+                            centerLat, centerLng, other.centerLat, other.centerLng)
+                            + other.radiusKm <= radiusKm);
+
+            return genresCovered && startCovered && endCovered && locationCovered;
+        }
+
+        /**
+         * Returns the part of a filter that still has to be applied on the device
+         * to events fetched with this plan. Criteria this plan already enforces
+         * exactly are removed.
+         *
+         * @param filter Filter covered by this plan (see {@link #covers})
+         * @param now Current time in milliseconds
+         * @return Leftover criteria
+         */
+        public EventFilter residual(EventFilter filter, long now) {
+            EventFilter residual = new EventFilter(filter);
+            Plan other = plan(filter, now);
+
+            if (other.genreMask == genreMask) {
+                residual.setMusicTypes(new ArrayList<>());
+            }
+            // Same end, and a start no later than the current time, is enforced by the query and by "upcoming"
+            if (filter.getStartDateMillis() != null && filter.getEndDateMillis() != null
+                    && other.to != null && other.to.equals(to) && filter.getStartDateMillis() <= from) {
+                residual.setDateRange(null, null);
+            }
+            // Fetched events were already checked against this exact circle
+            if (circle != null && other.circle != null && radiusKm.equals(other.radiusKm)
+                    && centerLat == other.centerLat && centerLng == other.centerLng) {
+                residual.setLocation(null, null, null);
+            }
+            return residual;
+        }
+
+        /**
+         * Returns the stored names that select the genres of a mask.
+         * Firestore compares exactly, so genres are stored under their
+         * canonical display names (see {@link MusicGenre#canonicalNames});
+         * older events are converted by {@link EventExpirySweeper}.
+         */
+        static List<String> genreNames(int mask) {
+            List<String> names = new ArrayList<>();
+            for (MusicGenre genre : MusicGenre.values()) {
+                if ((mask & genre.getMask()) != 0) {
+                    names.add(genre.getDisplayName());
+                }
+            }
+            return names;
+        }
+    }
+}
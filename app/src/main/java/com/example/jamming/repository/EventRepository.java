@@ -1,6 +1,11 @@
 package com.example.jamming.repository;
 import com.example.jamming.model.Event;
+import com.example.jamming.model.EventMapper;
+import com.example.jamming.model.MusicGenre;
+import com.example.jamming.utils.GeoHashUtils;
 import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.DocumentChange;
 import com.google.firebase.firestore.DocumentReference;
@@ -8,11 +13,18 @@ import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FieldPath;
 import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.WriteBatch;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Repository responsible for managing event-related data.
@@ -22,13 +34,49 @@ import java.util.Map;
  */
 public class EventRepository {
 
+    /**
+     * Server timestamp of the last write to an event document.
+     * Every write sets it, so that clients can sync only what changed.
+     */
+    static final String UPDATED_AT = "updatedAt";
+
+    /**
+     * Collection recording the IDs of events deleted, or edited in a way
+     * that can move them out of a query plan, so that syncing clients drop
+     * them (an edited event that still matches arrives with the changes).
+     */
+    static final String TOMBSTONES = "eventTombstones";
+
+    /** Server timestamp of a deletion, in a tombstone document */
+    static final String DELETED_AT = "deletedAt";
+
+    /**
+     * Longest time a client may go without syncing. Tombstones are pruned
+     * after this time, so older copies must be fetched again instead.
+     */
+    public static final long MAX_SYNC_AGE_MILLIS = 7L * 24 * 60 * 60 * 1000;
+
+    /**
+     * Allowance for the client clock running ahead of the server's,
+     * subtracted from the time of a read to get its watermark.
+     */
+    static final long CLOCK_MARGIN_MILLIS = 5 * 60 * 1000;
+
+    /** Fields a query plan selects events by; changing one writes a tombstone */
+    private static final String[] PLANNED_FIELDS = {"dateTime", "musicTypes", "latitude", "longitude"};
+
+    /** Maximum number of values in a Firestore "in" filter */
+    static final int MAX_IN_VALUES = 30;
+
     private final FirebaseFirestore db;
+    private final SeatShardCounter seats;
 
     /**
      * Default constructor using the Firestore singleton instance.
      */
     public EventRepository() {
         this.db = FirebaseFirestore.getInstance();
+        this.seats = new SeatShardCounter(db);
     }
 
     /**
@@ -38,11 +86,17 @@ public class EventRepository {
      */
     public EventRepository(FirebaseFirestore db) {
         this.db = db;
+        this.seats = new SeatShardCounter(db);
     }
 
     /**
      * Creates a new event document in Firestore.
-     * A unique document ID is generated and assigned to the event.
+     * A unique document ID is generated and assigned to the event,
+     * and the geohash of its location is stored for location queries.
+     * Genres are stored by their canonical display names, the only ones
+     * genre queries ask for (see {@link MusicGenre#canonicalNames}).
+     * The document, its update timestamp and its seat shards
+     * (see {@link SeatShardCounter}) are written in one batch.
      *
      * @param event Event object to store
      * @return Task representing the create operation
@@ -53,20 +107,28 @@ public class EventRepository {
 
         // Assign generated Firestore ID to the event object
         event.setId(ref.getId());
-
-        return ref.set(event);
+        event.setGeohash(GeoHashUtils.encode(event.getLatitude(), event.getLongitude()));
+        event.setMusicTypes(MusicGenre.canonicalNames(event.getMusicTypes()));
+
+        WriteBatch batch = db.batch();
+        batch.set(ref, event);
+        batch.update(ref, UPDATED_AT, FieldValue.serverTimestamp());
+        SeatShardCounter.create(batch, ref, event.getMaxCapacity());
+        return batch.commit();
     }
 
     /**
      * Retrieves an event by its unique identifier.
+     * Concurrent reads of the same event share one request, and the result
+     * is served from memory for {@link DocumentReadCoalescer#TTL_MILLIS}.
      *
      * @param eventId Event ID
      * @return Task containing the event document snapshot
      */
     public Task<DocumentSnapshot> getEventById(String eventId) {
-        return db.collection("events")
-                .document(eventId)
-                .get();
+        return DocumentReadCoalescer.of(db).get(
+                DocumentReadCoalescer.key("events", eventId),
+                db.collection("events").document(eventId));
     }
 
     /**
@@ -81,6 +143,116 @@ public class EventRepository {
                 .get();
     }
 
+    /**
+     * Retrieves any number of events by their document IDs.
+     *
+     * Events read by ID within the last {@link DocumentReadCoalescer#TTL_MILLIS} are
+     * served from memory. The others are split into chunks of
+     * {@link #MAX_IN_VALUES} IDs, and all chunks are queried at once, so the
+     * whole batch costs one parallel round trip. A failed chunk does not fail
+     * the batch: its IDs are reported in {@link EventBatch#getFailedIds()}.
+     * Only when no event was found and a chunk failed does the task fail,
+     * with that chunk's error, as there is nothing to show.
+     *
+     * @param ids Event IDs (duplicates are ignored)
+     * @return Task containing the events found, in the order of {@code ids}
+     */
+    public Task<EventBatch> batchGetEvents(List<String> ids) {
+        DocumentReadCoalescer reads = DocumentReadCoalescer.of(db);
+        long now = System.currentTimeMillis();
+
+        Map<String, Event> found = new HashMap<>();
+        List<String> toFetch = new ArrayList<>();
+        Map<String, Integer> versions = new HashMap<>();
+        for (String id : new LinkedHashSet<>(ids)) {
+            String key = DocumentReadCoalescer.key("events", id);
+            DocumentSnapshot cached = reads.peek(key, now);
+            Event event = cached != null ? toEvent(cached) : null;
+            if (event != null) {
+                found.put(id, event);
+            } else {
+                toFetch.add(id);
+                versions.put(id, reads.version(key));
+            }
+        }
+        if (toFetch.isEmpty()) {
+            return Tasks.forResult(new EventBatch(inOrder(ids, found), new ArrayList<>(), new ArrayList<>()));
+        }
+
+        List<List<String>> chunks = new ArrayList<>();
+        List<Task<QuerySnapshot>> queries = new ArrayList<>();
+        for (int i = 0; i < toFetch.size(); i += MAX_IN_VALUES) {
+            List<String> chunk = toFetch.subList(i, Math.min(i + MAX_IN_VALUES, toFetch.size()));
+            chunks.add(chunk);
+            queries.add(getEventsByIds(chunk));
+        }
+
+        return Tasks.whenAllComplete(queries)
+                .continueWith(task -> {
+                    Set<String> failed = new LinkedHashSet<>();
+                    Exception error = null;
+
+                    for (int c = 0; c < queries.size(); c++) {
+                        Task<QuerySnapshot> query = queries.get(c);
+                        if (!query.isSuccessful()) {
+                            failed.addAll(chunks.get(c));
+                            if (error == null) error = query.getException();
+                            continue;
+                        }
+                        for (DocumentSnapshot doc : query.getResult()) {
+                            Event event = toEvent(doc);
+                            if (event == null) continue;
+
+                            found.put(event.getId(), event);
+                            reads.put(DocumentReadCoalescer.key("events", event.getId()), doc,
+                                    versions.get(event.getId()));
+                        }
+                    }
+
+                    if (found.isEmpty() && error != null) throw error;
+
+                    List<String> missing = new ArrayList<>();
+                    for (String id : toFetch) {
+                        if (!found.containsKey(id) && !failed.contains(id)) missing.add(id);
+                    }
+                    return new EventBatch(inOrder(ids, found), missing, new ArrayList<>(failed));
+                });
+    }
+
+    /**
+     * Lists the found events in the order of the requested IDs.
+     */
+    private static List<Event> inOrder(List<String> ids, Map<String, Event> found) {
+        List<Event> events = new ArrayList<>();
+        for (String id : new LinkedHashSet<>(ids)) {
+            Event event = found.get(id);
+            if (event != null) events.add(event);
+        }
+        return events;
+    }
+
+    /**
+     * Result of {@link #batchGetEvents}: the events found, the IDs that do
+     * not exist, and the IDs whose chunk could not be read.
+     */
+    public static class EventBatch {
+        private final List<Event> events;
+        private final List<String> missingIds;
+        private final List<String> failedIds;
+
+        public EventBatch(List<Event> events, List<String> missingIds, List<String> failedIds) {
+            this.events = events;
+            this.missingIds = missingIds;
+            this.failedIds = failedIds;
+        }
+
+        public List<Event> getEvents() { return events; }
+        public List<String> getMissingIds() { return missingIds; }
+        public List<String> getFailedIds() { return failedIds; }
+        /** Whether every requested ID was read (found or known to be missing) */
+        public boolean isComplete() { return failedIds.isEmpty(); }
+    }
+
 
     /**
      * Retrieves all events created by a specific owner.
@@ -96,61 +268,357 @@ public class EventRepository {
 
     /**
      * Updates one or more fields of an existing event.
+     * When the location changes, its geohash is updated along with it,
+     * and new genres are stored by their canonical display names.
+     * The update timestamp is always set.
+     * A capacity change also splits the free seats over the event's
+     * seat shards again, in one transaction with the update.
+     * Changing a field query plans select by also writes a tombstone in
+     * the same commit, so clients syncing with a plan the event leaves
+     * drop it (see {@link #getEventChangesSince}).
      *
      * @param eventId Event ID
      * @param updates Map of field names and new values
      * @return Task representing the update operation
      */
     public Task<Void> updateEvent(String eventId, Map<String, Object> updates) {
-        return db.collection("events")
-                .document(eventId)
-                .update(updates);
+        updates = new HashMap<>(updates);
+        Object lat = updates.get("latitude");
+        Object lng = updates.get("longitude");
+        if (lat instanceof Number && lng instanceof Number) {
+            updates.put("geohash", GeoHashUtils.encode(
+                    ((Number) lat).doubleValue(), ((Number) lng).doubleValue()));
+        }
+        Object musicTypes = updates.get("musicTypes");
+        if (musicTypes instanceof List) {
+            List<String> names = new ArrayList<>();
+            for (Object name : (List<?>) musicTypes) names.add(String.valueOf(name));
+            updates.put("musicTypes", MusicGenre.canonicalNames(names));
+        }
+        updates.put(UPDATED_AT, FieldValue.serverTimestamp());
+
+        DocumentReference tombstone = null;
+        for (String field : PLANNED_FIELDS) {
+            if (updates.containsKey(field)) {
+                tombstone = db.collection(TOMBSTONES).document(eventId);
+                break;
+            }
+        }
+
+        Task<Void> write;
+        Object capacity = updates.get("maxCapacity");
+        if (capacity instanceof Number) {
+            write = seats.resize(eventId, ((Number) capacity).intValue(), updates, tombstone);
+        } else if (tombstone != null) {
+            WriteBatch batch = db.batch();
+            batch.update(db.collection("events").document(eventId), updates);
+            batch.set(tombstone, tombstoneData());
+            write = batch.commit();
+        } else {
+            write = db.collection("events").document(eventId).update(updates);
+        }
+        return DocumentReadCoalescer.of(db).invalidating(
+                DocumentReadCoalescer.key("events", eventId), write);
+    }
+
+    /**
+     * Returns the contents of a tombstone written now.
+     */
+    static Map<String, Object> tombstoneData() {
+        Map<String, Object> tombstone = new HashMap<>();
+        tombstone.put(DELETED_AT, FieldValue.serverTimestamp());
+        return tombstone;
     }
 
     /**
      * Deletes an event document from Firestore.
+     * A tombstone with the deletion time is written in the same batch,
+     * so that clients syncing changes also learn about the deletion.
+     * The event's seat shards are deleted with it.
      *
      * @param eventId Event ID
      * @return Task representing the delete operation
      */
     public Task<Void> deleteEvent(String eventId) {
-        return db.collection("events")
-                .document(eventId)
-                .delete();
+        DocumentReference ref = db.collection("events").document(eventId);
+        WriteBatch batch = db.batch();
+        batch.delete(ref);
+        SeatShardCounter.delete(batch, ref);
+        batch.set(db.collection(TOMBSTONES).document(eventId), tombstoneData());
+        return DocumentReadCoalescer.of(db).invalidating(
+                DocumentReadCoalescer.key("events", eventId), batch.commit());
     }
 
     /**
      * Retrieves all active events.
-     * Events whose date has already passed are automatically marked as inactive.
+     * Events whose date has already passed are excluded by the query, so
+     * they are never downloaded; marking them inactive is left to
+     * {@link #sweepExpiredEvents(String)}.
      *
      * @return Task containing a list of currently active events
      */
     public Task<List<Event>> getActiveEvents() {
         return db.collection("events")
                 .whereEqualTo("active", true)
+                .whereGreaterThanOrEqualTo("dateTime", System.currentTimeMillis())
                 .get()
                 .continueWith(task -> {
                     List<Event> list = new ArrayList<>();
-                    long now = System.currentTimeMillis();
+                    for (DocumentSnapshot doc : task.getResult()) {
+                        Event event = toEvent(doc);
+                        if (event == null) continue;
+
+                        list.add(event);
+                    }
+                    return list;
+                });
+    }
+
+    /**
+     * Marks events whose date has passed as inactive, unless another client
+     * already did so recently (see {@link EventExpirySweeper}).
+     *
+     * @param clientId Identifies this client in the sweep lease
+     * @return Task containing the number of events deactivated
+     */
+    public Task<Integer> sweepExpiredEvents(String clientId) {
+        return new EventExpirySweeper(db).sweepIfDue(clientId, System.currentTimeMillis());
+    }
+
+    /**
+     * Retrieves the active, upcoming events that a query plan selects.
+     * The plan's criteria are evaluated by Firestore, so only candidate
+     * events are downloaded; the remaining criteria are applied locally
+     * (see {@link EventQueryPlanner.Plan#residual}).
+     *
+     * With a distance filter the plan runs one query per geohash range in
+     * parallel; results are merged, and events outside the circle dropped.
+     * Events stored before geohashes existed get one from the expiry
+     * sweep's migration (see {@link EventExpirySweeper}).
+     *
+     * The result's watermark is the time of the read (see
+     * {@link #readWatermark}); later changes can be fetched with
+     * {@link #getEventChangesSince}.
+     *
+     * @param plan Query plan built from the current filter
+     * @return Task containing the selected events
+     */
+    public Task<EventChanges> getActiveEvents(EventQueryPlanner.Plan plan) {
+        long watermark = readWatermark();
+        List<Task<QuerySnapshot>> queries = new ArrayList<>();
+        for (Query query : plan.queries(db.collection("events"))) {
+            queries.add(query.get());
+        }
+
+        return Tasks.<QuerySnapshot>whenAllSuccess(queries)
+                .continueWith(task -> {
+                    Map<String, Event> events = new LinkedHashMap<>();
+
+                    for (QuerySnapshot snapshot : task.getResult()) {
+                        for (DocumentSnapshot doc : snapshot) {
+                            if (events.containsKey(doc.getId())) continue;
+
+                            Event event = toPlannedEvent(doc, plan);
+                            if (event == null) continue;
+
+                            events.put(event.getId(), event);
+                        }
+                    }
+                    return new EventChanges(new ArrayList<>(events.values()), new ArrayList<>(), watermark);
+                });
+    }
+
+    /**
+     * Retrieves one page of the active, upcoming events that a query plan
+     * selects, so that large result sets can be loaded progressively.
+     *
+     * Without a distance filter the events are ordered by date. With one,
+     * the plan's geohash range queries are paged one after the other, each
+     * in geohash order; events outside the circle are dropped, so a page
+     * may hold fewer events than requested even when more follow.
+     *
+     * The page's watermark is the time of its read (see {@link #readWatermark}).
+     *
+     * @param plan Query plan built from the current filter
+     * @param cursor Cursor of the previous page, or null for the first page
+     * @param pageSize Maximum number of documents to read
+     * @return Task containing the page
+     */
+    public Task<EventPage> getActiveEventsPage(EventQueryPlanner.Plan plan, EventPage.Cursor cursor, int pageSize) {
+        List<Query> queries = plan.queries(db.collection("events"));
+        int index = cursor != null ? cursor.query : 0;
+        long watermark = readWatermark();
+
+        return page(queries.get(index), cursor, pageSize)
+                .continueWith(task -> {
+                    List<Event> events = new ArrayList<>();
 
                     for (DocumentSnapshot doc : task.getResult()) {
-                        Event event = doc.toObject(Event.class);
+                        Event event = toPlannedEvent(doc, plan);
                         if (event == null) continue;
 
-                        event.setId(doc.getId());
+                        events.add(event);
+                    }
+                    return new EventPage(events,
+                            nextCursor(task.getResult(), index, queries.size(), pageSize), watermark);
+                });
+    }
 
-                        if (event.getDateTime() < now) {
-                            db.collection("events")
-                                    .document(event.getId())
-                                    .update("active", false);
-                            continue;
+    /**
+     * Starts a live feed of the changes to a query plan's events after a
+     * point in time: the events written since, and the IDs of the events
+     * deleted or moved since. The plan's full result is never re-read;
+     * the caller keeps the events it already holds (see {@link EventFeed}).
+     *
+     * @param plan Query plan the caller's events were fetched with
+     * @param sinceMillis Server time to follow changes after
+     * @param listener Receives the feed's change sets on the main thread
+     * @return The running feed; stop it when updates are no longer needed
+     */
+    public EventFeed listenToEventChanges(EventQueryPlanner.Plan plan, long sinceMillis, EventFeed.Listener listener) {
+        Timestamp since = new Timestamp(new Date(sinceMillis));
+        EventFeed feed = new EventFeed(plan, listener, sinceMillis);
+        feed.start(plan.changeQueries(db.collection("events"), since),
+                db.collection(TOMBSTONES).whereGreaterThan(DELETED_AT, since));
+        return feed;
+    }
+
+    /**
+     * Maps a document returned by a plan's query to an event, or returns
+     * null if it does not map or lies outside the plan's circle.
+     */
+    private Event toPlannedEvent(DocumentSnapshot doc, EventQueryPlanner.Plan plan) {
+        Event event = toEvent(doc);
+        if (event == null) return null;
+
+        if (!plan.acceptsLocation(event.getLatitude(), event.getLongitude())) return null;
+        return event;
+    }
+
+    /**
+     * Runs one page of an ordered query, continuing after the cursor's document.
+     */
+    private static Task<QuerySnapshot> page(Query query, EventPage.Cursor cursor, int pageSize) {
+        if (cursor != null && cursor.after != null) {
+            query = query.startAfter(cursor.after);
+        }
+        return query.limit(pageSize).get();
+    }
+
+    /**
+     * Computes where the next page starts: after the last document when the
+     * page was full, otherwise at the next of the queries; null when done.
+     */
+    private static EventPage.Cursor nextCursor(QuerySnapshot snapshot, int query, int queryCount, int pageSize) {
+        List<DocumentSnapshot> docs = snapshot.getDocuments();
+        if (docs.size() >= pageSize) {
+            return new EventPage.Cursor(query, docs.get(docs.size() - 1));
+        }
+        return query + 1 < queryCount ? new EventPage.Cursor(query + 1, null) : null;
+    }
+
+    /**
+     * Retrieves the events a query plan selects that were written after a
+     * point in time, and the IDs of events deleted or moved since. Only
+     * documents changed since then are downloaded, and the plan's criteria
+     * are evaluated by Firestore, so a client holding an earlier copy can
+     * bring it up to date cheaply.
+     *
+     * Changed events are returned whether or not they are still active;
+     * the caller decides which ones to keep. Tombstones carry no event
+     * fields and are returned unfiltered; they are few, as they are pruned
+     * after {@link #MAX_SYNC_AGE_MILLIS}.
+     *
+     * @param plan Query plan the caller's events were fetched with
+     * @param sinceMillis Server time to fetch changes after
+     * @return Task containing the changes; its watermark is the time of
+     *         the read (see {@link #readWatermark})
+     */
+    public Task<EventChanges> getEventChangesSince(EventQueryPlanner.Plan plan, long sinceMillis) {
+        long watermark = readWatermark();
+        Timestamp since = new Timestamp(new Date(sinceMillis));
+        List<Task<QuerySnapshot>> changed = new ArrayList<>();
+        for (Query query : plan.changeQueries(db.collection("events"), since)) {
+            changed.add(query.get());
+        }
+        Task<QuerySnapshot> deleted = db.collection(TOMBSTONES)
+                .whereGreaterThan(DELETED_AT, since)
+                .get();
+
+        List<Task<QuerySnapshot>> all = new ArrayList<>(changed);
+        all.add(deleted);
+        return Tasks.whenAllSuccess(all)
+                .continueWith(task -> {
+                    // Geohash range queries may overlap, so changes are merged by ID
+                    Map<String, Event> events = new LinkedHashMap<>();
+                    List<String> deletedIds = new ArrayList<>();
+
+                    for (Task<QuerySnapshot> query : changed) {
+                        for (DocumentSnapshot doc : query.getResult()) {
+                            // Geohash ranges cover more than the plan's circle
+                            Event event = toEvent(doc);
+                            if (event != null && plan.acceptsLocation(event.getLatitude(), event.getLongitude())) {
+                                events.put(event.getId(), event);
+                            }
                         }
-                        list.add(event);
                     }
-                    return list;
+                    for (DocumentSnapshot doc : deleted.getResult()) {
+                        deletedIds.add(doc.getId());
+                    }
+                    return new EventChanges(new ArrayList<>(events.values()), deletedIds, watermark);
                 });
     }
 
+    /**
+     * Maps an event document to an event with its ID set, using
+     * {@link EventMapper} instead of reflective {@code toObject}.
+     *
+     * @param doc Event document
+     * @return The event, or null if the document does not exist
+     */
+    public static Event toEvent(DocumentSnapshot doc) {
+        Map<String, Object> data = doc.getData();
+        return data != null ? EventMapper.fromMap(doc.getId(), data) : null;
+    }
+
+    /**
+     * Returns the watermark of a read issued now: the client clock minus
+     * {@link #CLOCK_MARGIN_MILLIS}. Every write committed before the read
+     * is in its result, so the result is complete up to this server time
+     * even when nothing was written for a long time.
+     */
+    static long readWatermark() {
+        return System.currentTimeMillis() - CLOCK_MARGIN_MILLIS;
+    }
+
+    /**
+     * Reads a timestamp field in milliseconds; 0 when missing.
+     */
+    static long timestampMillis(DocumentSnapshot doc, String field) {
+        Timestamp timestamp = doc.getTimestamp(field);
+        return timestamp != null ? timestamp.toDate().getTime() : 0;
+    }
+
+    /**
+     * Events loaded or changed in one request, the IDs of events deleted,
+     * and the server time up to which the result is complete.
+     */
+    public static class EventChanges {
+        private final List<Event> events;
+        private final List<String> deletedIds;
+        private final long watermark;
+
+        public EventChanges(List<Event> events, List<String> deletedIds, long watermark) {
+            this.events = events;
+            this.deletedIds = deletedIds;
+            this.watermark = watermark;
+        }
+
+        public List<Event> getEvents() { return events; }
+        public List<String> getDeletedIds() { return deletedIds; }
+        public long getWatermark() { return watermark; }
+    }
+
     /**
      * Retrieves all events created by a specific owner.
      *
@@ -167,78 +635,98 @@ public class EventRepository {
                 .continueWith(task -> {
                     List<Event> events = new ArrayList<>();
                     for (DocumentSnapshot doc : task.getResult()) {
-                        Event event = doc.toObject(Event.class);
+                        Event event = toEvent(doc);
                         if (event == null) continue;
-                        event.setId(doc.getId());
                         events.add(event);
                     }
                     return events;
                 });
     }
 
+    /**
+     * Retrieves one page of the events created by a specific owner, either
+     * upcoming events (soonest first) or past events (most recent first),
+     * so that owners with many events can load them progressively.
+     *
+     * Requires a composite index on ownerId and dateTime (in both orders).
+     *
+     * @param ownerId Owner user ID
+     * @param upcoming True for events from {@code now} on, false for earlier events
+     * @param now Current time in milliseconds
+     * @param cursor Cursor of the previous page, or null for the first page
+     * @param pageSize Maximum number of events per page
+     * @return Task containing the page
+     */
+    public Task<EventPage> getOwnerEventsPage(String ownerId, boolean upcoming, long now,
+                                              EventPage.Cursor cursor, int pageSize) {
+        Query query = db.collection("events").whereEqualTo("ownerId", ownerId);
+        query = upcoming
+                ? query.whereGreaterThanOrEqualTo("dateTime", now)
+                        .orderBy("dateTime", Query.Direction.ASCENDING)
+                : query.whereLessThan("dateTime", now)
+                        .orderBy("dateTime", Query.Direction.DESCENDING);
+
+        return page(query, cursor, pageSize)
+                .continueWith(task -> {
+                    List<Event> events = new ArrayList<>();
+                    for (DocumentSnapshot doc : task.getResult()) {
+                        Event event = toEvent(doc);
+                        if (event == null) continue;
+                        events.add(event);
+                    }
+                    return new EventPage(events, nextCursor(task.getResult(), 0, 1, pageSize), 0);
+                });
+    }
+
 
     /**
-     * Decrements the number of reserved seats for an event.
+     * Cancels a user's registration to an event: frees a seat in one of
+     * its seat shards and removes the event from the user's registered
+     * events, in one transaction (see {@link SeatShardCounter}).
      *
      * @param eventId Event ID
-     * @return Task representing the update operation
+     * @param uid User ID
+     * @return Task representing the transactional operation
      */
-    public Task<Void> decrementReserved(String eventId) {
-        return db.collection("events")
-                .document(eventId)
-                .update("reserved", FieldValue.increment(-1));
+    public Task<Void> unregisterUser(String eventId, String uid) {
+        DocumentReadCoalescer reads = DocumentReadCoalescer.of(db);
+        Task<Void> cancellation = seats.release(eventId, uid);
+
+        // Writes both documents
+        reads.invalidating(DocumentReadCoalescer.key("users", uid), cancellation);
+        return reads.invalidating(DocumentReadCoalescer.key("events", eventId), cancellation);
     }
 
     /**
      * Registers a user to an event only if capacity is available.
-     * This operation is performed atomically using a Firestore transaction.
+     * The seat is taken in one of the event's seat shards, so that many
+     * users can register at once (see {@link SeatShardCounter}).
      *
      * @param eventId Event ID
      * @param uid User ID
-     * @return Task representing the transactional operation
+     * @return Task failing with "EVENT_FULL" when no seat is left
      */
     public Task<Void> registerUserIfCapacityAvailable(String eventId, String uid) {
+        DocumentReadCoalescer reads = DocumentReadCoalescer.of(db);
+        Task<Void> registration = seats.reserve(eventId, uid);
 
-        return db.runTransaction(transaction -> {
-
-            DocumentReference eventRef =
-                    db.collection("events").document(eventId);
-            DocumentReference userRef =
-                    db.collection("users").document(uid);
-
-            DocumentSnapshot eventSnap = transaction.get(eventRef);
-
-            if (!eventSnap.exists()) {
-                throw new RuntimeException("EVENT_NOT_FOUND");
-            }
-
-            Long reserved = eventSnap.getLong("reserved");
-            Long max = eventSnap.getLong("maxCapacity");
-
-            if (reserved == null || max == null) {
-                throw new RuntimeException("INVALID_EVENT_DATA");
-            }
-
-            if (reserved >= max) {
-                throw new RuntimeException("EVENT_FULL");
-            }
-
-            // update num reserved
-            transaction.update(eventRef, "reserved", FieldValue.increment(1));
-
-            // update num available
-            transaction.update(eventRef, "availableSpots", FieldValue.increment(-1));
-
-
-            //update participants list
-            transaction.update(eventRef, "participants", FieldValue.arrayUnion(uid));
-
-            // update user's registered events
-            transaction.update(userRef, "registeredEventIds", FieldValue.arrayUnion(eventId));
+        // Writes both documents
+        reads.invalidating(DocumentReadCoalescer.key("users", uid), registration);
+        return reads.invalidating(DocumentReadCoalescer.key("events", eventId), registration);
+    }
 
-            return null;
-        });
+    /**
+     * Reads the exact number of seats reserved for an event.
+     * The count on the event document is an aggregate written after
+     * each registration, so it may briefly lag behind the seat shards.
+     *
+     * @param eventId Event ID
+     * @return Task containing the number of reserved seats
+     */
+    public Task<Integer> getReservedSeats(String eventId) {
+        return seats.getReservedSeats(eventId);
     }
+
     public interface OnEventFullListener {
         void onEventFull(String eventId, String eventName);
     }
@@ -257,7 +745,7 @@ public class EventRepository {
 
                         if (dc.getType() == com.google.firebase.firestore.DocumentChange.Type.MODIFIED) {
 
-                            Event event = dc.getDocument().toObject(Event.class);
+                            Event event = toEvent(dc.getDocument());
                             if (event != null) {
                                 int currentJoined = event.getReserved();
                                 int maxCapacity = event.getMaxCapacity();
@@ -318,40 +806,73 @@ public class EventRepository {
                 .add(notifMap);
     }
 
+    /**
+     * Notifies a user of changes to the events they are registered to.
+     * The registered events are taken from the user's document, and
+     * followed again whenever that list changes.
+     *
+     * @param userId User ID
+     * @param listener Receives a title and message per change
+     */
+    @SuppressWarnings("unchecked")
     public void listenToUserEvents(String userId, OnEventChangeListener listener) {
-        db.collection("events")
-                .whereArrayContains("participants", userId) // מאזין רק לאירועים שנרשמתי אליהם
-                .addSnapshotListener((snapshots, e) -> {
-                    if (e != null || snapshots == null) return;
+        List<ListenerRegistration> eventListeners = new ArrayList<>();
+        List<String> followed = new ArrayList<>();
+
+        db.collection("users").document(userId)
+                .addSnapshotListener((userSnap, userError) -> {
+                    if (userError != null || userSnap == null) return;
+
+                    List<String> ids = (List<String>) userSnap.get("registeredEventIds");
+                    if (ids == null) ids = new ArrayList<>();
+                    if (ids.equals(followed)) return;
+
+                    for (ListenerRegistration registration : eventListeners) registration.remove();
+                    eventListeners.clear();
+                    followed.clear();
+                    followed.addAll(ids);
+
+                    // מאזין רק לאירועים שנרשמתי אליהם
+                    for (int i = 0; i < ids.size(); i += MAX_IN_VALUES) {
+                        List<String> chunk = new ArrayList<>(ids.subList(i, Math.min(i + MAX_IN_VALUES, ids.size())));
+                        eventListeners.add(db.collection("events")
+                                .whereIn(FieldPath.documentId(), chunk)
+                                .addSnapshotListener((snapshots, e) -> {
+                                    if (e != null || snapshots == null) return;
+                                    notifyEventChanges(userId, snapshots, listener);
+                                }));
+                    }
+                });
+    }
 
-                    for (DocumentChange dc : snapshots.getDocumentChanges()) {
-                        Event event = dc.getDocument().toObject(Event.class);
-                        String title = "";
-                        String message = "";
-                        boolean notify = false;
+    private void notifyEventChanges(String userId, QuerySnapshot snapshots, OnEventChangeListener listener) {
+        for (DocumentChange dc : snapshots.getDocumentChanges()) {
+            Event event = toEvent(dc.getDocument());
+            String title = "";
+            String message = "";
+            boolean notify = false;
 
 
-                        if (dc.getType() == DocumentChange.Type.MODIFIED) {
-                            title = "Event Update";
-                            message = "The event '" + event.getName() + "' details have changed.";
-                            notify = true;
-                        }
+            if (dc.getType() == DocumentChange.Type.MODIFIED) {
+                title = "Event Update";
+                message = "The event '" + event.getName() + "' details have changed.";
+                notify = true;
+            }
 
-                        else if (dc.getType() == DocumentChange.Type.REMOVED) {
-                            title = "Event Cancelled";
-                            message = "The event '" + event.getName() + "' was cancelled.";
-                            notify = true;
-                        }
+            else if (dc.getType() == DocumentChange.Type.REMOVED) {
+                title = "Event Cancelled";
+                message = "The event '" + event.getName() + "' was cancelled.";
+                notify = true;
+            }
 
-                        if (notify) {
-                            // message on phone
-                            listener.onEventChanged(title, message);
+            if (notify) {
+                // message on phone
+                listener.onEventChanged(title, message);
 
-                            // add notification in db
-                            saveNotificationToHistory(userId, title, message);
-                        }
-                    }
-                });
+                // add notification in db
+                saveNotificationToHistory(userId, title, message);
+            }
+        }
     }
 
 
@@ -0,0 +1,467 @@
+package com.example.jamming.repository;
+
+import com.example.jamming.model.Event;
+import com.example.jamming.model.EventFilter;
+import com.google.android.gms.tasks.Tasks;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps a local copy of the active events a filter needs up to date.
+ *
+ * The copy is fetched with a query plan built from the filter (see
+ * {@link EventQueryPlanner}), page by page, and is then brought up to date
+ * with the changes since the time it was read: once per {@link #load}, or
+ * live through an {@link EventFeed} while live updates run. It is stored
+ * on the device, so the next start shows it before anything is fetched.
+ * A filter the copy's plan does not cover triggers a full load instead.
+ *
+ * Callbacks run on the main thread, and all methods must be called from it.
+ */
+public class EventSync {
+
+    /**
+     * Receives the loaded events as they change.
+     */
+    public interface Listener {
+        /** The loaded events were replaced, by a page of a full load or by a merged sync */
+        void onEventsLoaded(List<Event> events);
+
+        /** Single loaded events changed live; events not loaded yet are among the changed ones */
+        void onEventsChanged(List<Event> changed, List<String> removedIds);
+
+        /** A refresh ended without changing the loaded events */
+        void onRefreshed();
+
+        /** A full load failed; nothing is loaded */
+        void onLoadFailed();
+    }
+
+    /** Number of events fetched per page on a full load */
+    private static final int FETCH_PAGE_SIZE = 200;
+
+    /**
+     * Overlap subtracted from the watermark when syncing, so that writes
+     * committed slightly out of timestamp order are not missed.
+     */
+    private static final long SYNC_MARGIN_MILLIS = 60_000;
+
+    private final EventRepository eventRepository;
+    private final Listener listener;
+
+    /** Filter the loaded events must cover */
+    private EventFilter filter;
+
+    /** Loaded events, by ID */
+    private Map<String, Event> loaded = new LinkedHashMap<>();
+
+    /**
+     * Query plan the loaded events were fetched with. Firestore already
+     * applied its criteria, so only the residual filter runs locally.
+     */
+    private EventQueryPlanner.Plan plan = EventQueryPlanner.plan(null, 0);
+
+    /** Incremented per fetch, so that responses of superseded fetches are ignored */
+    private int generation;
+
+    /**
+     * Server time up to which the loaded events are known to be up to date,
+     * or -1 when nothing is loaded to sync.
+     */
+    private long watermark = -1;
+
+    /** On-device copy of the loaded events; null until attached */
+    private EventDiskCache diskCache;
+
+    /** Runs disk cache reads and writes off the main thread */
+    private ExecutorService diskExecutor;
+
+    /** Whether the disk cache was already consulted */
+    private boolean diskCacheChecked;
+
+    /** Whether the disk cache is being read; loading waits for it */
+    private boolean diskReadPending;
+
+    /** Whether changes should be followed live (see {@link #startLiveUpdates()}) */
+    private boolean liveUpdates;
+
+    /** Live feed of the changes to the loaded events; null while not following them */
+    private EventFeed feed;
+
+    /**
+     * Creates a sync reporting to the given listener.
+     *
+     * @param eventRepository Repository the events are read from
+     * @param listener Receives the loaded events
+     */
+    public EventSync(EventRepository eventRepository, Listener listener) {
+        this.eventRepository = eventRepository;
+        this.listener = listener;
+    }
+
+    /**
+     * Attaches the on-device event cache. Must be called before the first
+     * {@link #load} to show cached events immediately.
+     *
+     * @param file File to store cached events in
+     */
+    public void attachDiskCache(File file) {
+        if (diskCache != null) return;
+
+        diskCache = new EventDiskCache(file);
+        diskExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    /**
+     * Returns the query plan the loaded events were fetched with.
+     */
+    public EventQueryPlanner.Plan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Sets the filter the loaded events must cover, and loads the events
+     * again if they do not.
+     *
+     * @param filter New filter
+     * @return Whether the loaded events already cover the filter
+     */
+    public boolean setFilter(EventFilter filter) {
+        this.filter = filter;
+        if (plan.covers(filter, System.currentTimeMillis())) return true;
+
+        load(filter);
+        return false;
+    }
+
+    /**
+     * Loads the events a filter needs.
+     *
+     * The on-device copy is reported first, if it covers the filter. As
+     * long as the loaded events cover the filter, only the changes since
+     * the last sync are fetched, or followed live while live updates run;
+     * failing that, all events the filter needs are fetched page by page,
+     * and live updates then follow the changes from there.
+     *
+     * @param filter Filter the loaded events must cover
+     */
+    public void load(EventFilter filter) {
+        this.filter = filter;
+        int current = ++generation;
+
+        if (diskCache != null && !diskCacheChecked) {
+            diskCacheChecked = true;
+            diskReadPending = true;
+            Tasks.call(diskExecutor, diskCache::read)
+                    .addOnCompleteListener(task -> {
+                        diskReadPending = false;
+                        // Nothing is fetched before the read completes, so the copy is the newest data
+                        restoreFromDisk(task.isSuccessful() ? task.getResult() : null);
+                        refresh(generation);
+                    });
+            return;
+        }
+        if (diskReadPending) return; // refreshed once the read completes
+
+        refresh(current);
+    }
+
+    /**
+     * Starts following changes to the events live, e.g. while the screen
+     * is visible. Only events written after the loaded events' watermark
+     * are downloaded, and each change is reported on its own.
+     *
+     * @param filter Filter the loaded events must cover
+     */
+    public void startLiveUpdates(EventFilter filter) {
+        liveUpdates = true;
+        load(filter);
+    }
+
+    /**
+     * Stops following changes live and stores the events on the device.
+     */
+    public void stopLiveUpdates() {
+        liveUpdates = false;
+        if (feed != null) {
+            stopFeed();
+            saveToDisk();
+        }
+    }
+
+    /**
+     * Stops the live feed and releases the disk cache's thread.
+     */
+    public void close() {
+        if (feed != null) feed.stop();
+        if (diskExecutor != null) diskExecutor.shutdown();
+    }
+
+    /**
+     * Brings the loaded events up to date for the filter. If they cover
+     * it, only their changes are fetched once, or followed live while live
+     * updates run; otherwise they are fetched again.
+     *
+     * @param current Fetch generation this request belongs to
+     */
+    private void refresh(int current) {
+        long now = System.currentTimeMillis();
+
+        if (canSync(now) && plan.covers(filter, now)) {
+            if (!liveUpdates) {
+                syncChanges(current);
+            } else if (feed == null || feed.getPlan() != plan) {
+                follow(plan, watermark);
+                listener.onRefreshed();
+            } else {
+                listener.onRefreshed();
+            }
+        } else {
+            stopFeed();
+            fetchAll(current);
+        }
+    }
+
+    /**
+     * Checks whether the loaded events can be brought up to date with the
+     * changes since their watermark. Tombstones of deleted events are only
+     * kept for {@link EventRepository#MAX_SYNC_AGE_MILLIS}, so older
+     * copies are fetched again instead.
+     */
+    private boolean canSync(long now) {
+        return watermark >= 0 && now - watermark < EventRepository.MAX_SYNC_AGE_MILLIS;
+    }
+
+    /**
+     * Replaces the live feed with one following the changes to the given
+     * plan's events after a watermark, minus {@link #SYNC_MARGIN_MILLIS}
+     * like a one-time sync.
+     *
+     * @param followed Plan the loaded events were fetched with
+     * @param since Server time up to which the loaded events are complete
+     */
+    private void follow(EventQueryPlanner.Plan followed, long since) {
+        stopFeed();
+
+        feed = eventRepository.listenToEventChanges(followed, since - SYNC_MARGIN_MILLIS, new EventFeed.Listener() {
+            @Override
+            public void onChanges(EventFeed.Changes changes) {
+                if (isCurrent()) applyFeedChanges(changes);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                if (!isCurrent()) return;
+                // Fall back to one-time syncs until live updates are restarted
+                stopFeed();
+                liveUpdates = false;
+                refresh(++generation);
+            }
+
+            private boolean isCurrent() {
+                return feed != null && feed.getPlan() == followed;
+            }
+        });
+    }
+
+    /**
+     * Stops the live feed, if any, keeping the time up to which it had
+     * brought the loaded events up to date.
+     */
+    private void stopFeed() {
+        if (feed != null) {
+            if (feed.getPlan() == plan) {
+                watermark = Math.max(watermark, feed.getWatermark());
+            }
+            feed.stop();
+            feed = null;
+        }
+    }
+
+    /**
+     * Applies a change set of the live feed to the loaded events. Like a
+     * one-time sync, changed events the plan no longer selects are removed.
+     *
+     * @param changes Change set reported by the feed
+     */
+    private void applyFeedChanges(EventFeed.Changes changes) {
+        watermark = Math.max(watermark, changes.getWatermark());
+
+        List<Event> changed = new ArrayList<>();
+        List<String> removedIds = new ArrayList<>();
+        for (String id : changes.getRemovedIds()) {
+            if (loaded.remove(id) != null) removedIds.add(id);
+        }
+        for (Event event : changes.getEvents()) {
+            if (plan.matches(event)) {
+                loaded.put(event.getId(), event);
+                changed.add(event);
+            } else if (loaded.remove(event.getId()) != null) {
+                removedIds.add(event.getId());
+            }
+        }
+        listener.onEventsChanged(changed, removedIds);
+    }
+
+    /**
+     * Uses the on-device snapshot as the loaded events, if it covers the filter.
+     *
+     * @param snapshot Snapshot read from disk (may be null)
+     */
+    private void restoreFromDisk(EventDiskCache.Snapshot snapshot) {
+        if (snapshot == null) return;
+
+        EventQueryPlanner.Plan restored = EventQueryPlanner.plan(snapshot.getFilter(), snapshot.getPlannedAt());
+        if (!restored.covers(filter, System.currentTimeMillis())) return;
+
+        plan = restored;
+        watermark = snapshot.getWatermark();
+        replace(snapshot.getEvents());
+    }
+
+    /**
+     * Replaces the loaded events and reports them.
+     */
+    private void replace(List<Event> events) {
+        loaded = new LinkedHashMap<>();
+        for (Event event : events) loaded.put(event.getId(), event);
+        listener.onEventsLoaded(new ArrayList<>(loaded.values()));
+    }
+
+    /**
+     * Fetches all events the filter needs, page by page. Events are
+     * reported as pages arrive, so the first results appear before the
+     * whole result set is downloaded.
+     *
+     * @param current Fetch generation this request belongs to
+     */
+    private void fetchAll(int current) {
+        EventQueryPlanner.Plan fetched = EventQueryPlanner.plan(filter, System.currentTimeMillis());
+        fetchPage(current, fetched, null, new LinkedHashMap<>(), Long.MAX_VALUE, 0);
+    }
+
+    /**
+     * Fetches one page of a full load and continues with the next one.
+     *
+     * Reporting the loaded events makes the listener rebuild its state,
+     * which costs time linear in the number of events. They are therefore
+     * reported for the first page, whenever they have doubled since they
+     * were last reported, and for the last page, so that a full load stays
+     * linear overall.
+     *
+     * @param current Fetch generation this request belongs to
+     * @param fetched Plan being loaded
+     * @param cursor Cursor of the previous page, or null for the first page
+     * @param pages Events loaded so far, by ID
+     * @param since Read time of the first page, up to which the loaded
+     *              events are complete; Long.MAX_VALUE before it
+     * @param shown Number of loaded events last reported
+     */
+    private void fetchPage(int current, EventQueryPlanner.Plan fetched, EventPage.Cursor cursor,
+                           Map<String, Event> pages, long since, int shown) {
+        eventRepository.getActiveEventsPage(fetched, cursor, FETCH_PAGE_SIZE)
+                .addOnSuccessListener(page -> {
+                    if (current != generation) return;
+
+                    // Geohash range queries may overlap, so pages are merged by ID
+                    for (Event event : page.getEvents()) pages.putIfAbsent(event.getId(), event);
+                    // Writes after the first page's read may have missed pages read earlier
+                    long complete = Math.min(since, page.getWatermark());
+
+                    if (page.hasMore()) {
+                        int nowShown = shown;
+                        if (shown == 0 || pages.size() >= 2 * shown) {
+                            plan = fetched;
+                            // Not complete yet, so not eligible for syncing
+                            watermark = -1;
+                            replace(new ArrayList<>(pages.values()));
+                            nowShown = pages.size();
+                        }
+                        fetchPage(current, fetched, page.getCursor(), pages, complete, nowShown);
+                        return;
+                    }
+
+                    plan = fetched;
+                    watermark = complete;
+                    replace(new ArrayList<>(pages.values()));
+                    saveToDisk();
+                    if (!fetched.covers(filter, System.currentTimeMillis())) {
+                        // The filter changed while loading and needs a wider query
+                        load(filter);
+                        return;
+                    }
+                    if (liveUpdates) follow(fetched, complete);
+                })
+                .addOnFailureListener(e -> {
+                    if (current != generation) return;
+                    plan = fetched;
+                    watermark = -1;
+                    loaded = new LinkedHashMap<>();
+                    listener.onLoadFailed();
+                });
+    }
+
+    /**
+     * Fetches the events of the plan changed or deleted since the last
+     * sync and merges them into the loaded events. If the sync fails, the
+     * loaded events are kept as they are.
+     *
+     * @param current Fetch generation this request belongs to
+     */
+    private void syncChanges(int current) {
+        eventRepository.getEventChangesSince(plan, watermark - SYNC_MARGIN_MILLIS)
+                .addOnSuccessListener(changes -> {
+                    if (current != generation) return;
+                    watermark = Math.max(watermark, changes.getWatermark());
+                    if (mergeChanges(changes)) {
+                        saveToDisk();
+                    } else {
+                        listener.onRefreshed();
+                    }
+                })
+                .addOnFailureListener(e -> {
+                    if (current != generation) return;
+                    listener.onRefreshed();
+                });
+    }
+
+    /**
+     * Applies synced changes to the loaded events: deleted events and
+     * events the plan no longer selects are removed, other changed events
+     * are added or replaced.
+     *
+     * @param changes Changes fetched from the repository
+     * @return Whether anything changed
+     */
+    private boolean mergeChanges(EventRepository.EventChanges changes) {
+        if (changes.getEvents().isEmpty() && changes.getDeletedIds().isEmpty()) return false;
+
+        Map<String, Event> byId = new LinkedHashMap<>(loaded);
+        for (String id : changes.getDeletedIds()) byId.remove(id);
+        for (Event event : changes.getEvents()) {
+            if (plan.matches(event)) {
+                byId.put(event.getId(), event);
+            } else {
+                byId.remove(event.getId());
+            }
+        }
+        replace(new ArrayList<>(byId.values()));
+        return true;
+    }
+
+    /**
+     * Stores the loaded events on the device, in the background.
+     */
+    private void saveToDisk() {
+        if (diskCache == null) return;
+
+        EventDiskCache.Snapshot snapshot = new EventDiskCache.Snapshot(
+                plan.getFilter(), plan.getPlannedAt(), watermark, new ArrayList<>(loaded.values()));
+        diskExecutor.execute(() -> diskCache.write(snapshot));
+    }
+}
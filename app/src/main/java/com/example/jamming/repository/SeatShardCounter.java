@@ -0,0 +1,451 @@
+package com.example.jamming.repository;
+
+import android.util.Log;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.Transaction;
+import com.google.firebase.firestore.WriteBatch;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Seat reservations of events, counted over several shard documents.
+ *
+ * Firestore sustains about one write per second on a single document, and
+ * a transaction that reads a document is retried whenever another client
+ * writes it first. Counting seats on the event document therefore makes
+ * registrations to a popular event fail under load. Instead, an event's
+ * capacity is split over {@link #SHARDS} documents in its
+ * {@link #COLLECTION} subcollection, each with its own capacity and
+ * reserved count. A registration transaction reads and writes a single,
+ * randomly picked shard; when that shard is full, the next transaction
+ * tries another one, until every shard was found full. Concurrent
+ * registrations therefore rarely touch the same document, even when the
+ * event is nearly full.
+ *
+ * The registration transactions never touch the event document. Who is
+ * registered is recorded in the user's {@code registeredEventIds}, in the
+ * same transaction as the seat. The event's {@code reserved} and
+ * {@code availableSpots} fields are an aggregate of the shards, written
+ * again after every registration and cancellation, outside of it. The
+ * aggregate is summed and written in its own transaction, so a stale sum
+ * never overwrites a newer one, and updates of one event requested while
+ * one runs are merged into a single follow-up. Lists, filters and the
+ * owner's screens use the aggregate; where the exact count matters at
+ * once, {@link #getReservedSeats(String)} sums the shards.
+ *
+ * Events created before seats were sharded get their shards on their
+ * first registration, split from the counts on the event document.
+ */
+public class SeatShardCounter {
+
+    /** Subcollection of an event holding its seat shards */
+    static final String COLLECTION = "seatShards";
+
+    /** Number of shards per event */
+    static final int SHARDS = 10;
+
+    /** Seats of a shard */
+    static final String CAPACITY = "capacity";
+
+    /** Seats taken in a shard */
+    static final String RESERVED = "reserved";
+
+    /** Failure of a seat transaction whose shard had no seat free (or taken, for a release) */
+    static final String SHARD_FULL = "SHARD_FULL";
+
+    private static final String TAG = "SeatShardCounter";
+
+    private final FirebaseFirestore db;
+    private final Random random;
+
+    /** Events whose aggregate is being written */
+    private final Set<String> refreshing = new HashSet<>();
+
+    /** Events whose aggregate must be written again once the running update ends */
+    private final Set<String> stale = new HashSet<>();
+
+    /**
+     * Creates a counter over the given Firestore instance.
+     *
+     * @param db Firestore instance
+     */
+    public SeatShardCounter(FirebaseFirestore db) {
+        this(db, new Random());
+    }
+
+    SeatShardCounter(FirebaseFirestore db, Random random) {
+        this.db = db;
+        this.random = random;
+    }
+
+    /**
+     * Splits a count as evenly as possible over the shards; the first
+     * shards get the remainder.
+     *
+     * @param total Count to split
+     * @return Per shard, its part of the count
+     */
+    static int[] split(int total) {
+        int[] parts = new int[SHARDS];
+        for (int i = 0; i < SHARDS; i++) {
+            parts[i] = total / SHARDS + (i < total % SHARDS ? 1 : 0);
+        }
+        return parts;
+    }
+
+    private static DocumentReference shard(DocumentReference eventRef, int index) {
+        return eventRef.collection(COLLECTION).document(String.valueOf(index));
+    }
+
+    private static Map<String, Object> shardData(int capacity, int reserved) {
+        Map<String, Object> data = new HashMap<>();
+        data.put(CAPACITY, capacity);
+        data.put(RESERVED, reserved);
+        return data;
+    }
+
+    /**
+     * Adds the creation of a new event's shards to a batch.
+     *
+     * @param batch Batch creating the event
+     * @param eventRef Event document
+     * @param capacity Capacity of the event
+     */
+    static void create(WriteBatch batch, DocumentReference eventRef, int capacity) {
+        int[] capacities = split(capacity);
+        for (int i = 0; i < SHARDS; i++) {
+            batch.set(shard(eventRef, i), shardData(capacities[i], 0));
+        }
+    }
+
+    /**
+     * Adds the deletion of an event's shards to a batch.
+     *
+     * @param batch Batch deleting the event
+     * @param eventRef Event document
+     */
+    static void delete(WriteBatch batch, DocumentReference eventRef) {
+        for (int i = 0; i < SHARDS; i++) {
+            batch.delete(shard(eventRef, i));
+        }
+    }
+
+    /**
+     * Returns the shard indexes in a random order, in which seat
+     * transactions try them.
+     */
+    private int[] shardOrder() {
+        int[] order = new int[SHARDS];
+        for (int i = 0; i < SHARDS; i++) {
+            int j = random.nextInt(i + 1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+        return order;
+    }
+
+    /**
+     * Takes a seat for a user and records the event in the user's
+     * registered events, in one transaction over a single shard; a full
+     * shard is skipped for the next one. The event document's aggregate
+     * is written again afterwards.
+     *
+     * A failed aggregate update does not fail the registration: the seat
+     * is taken, and the next update writes the whole aggregate again.
+     *
+     * @param eventId Event ID
+     * @param uid User ID
+     * @return Task failing with "EVENT_FULL", "EVENT_NOT_FOUND" or
+     *         "INVALID_EVENT_DATA" when no seat could be taken
+     */
+    public Task<Void> reserve(String eventId, String uid) {
+        DocumentReference eventRef = db.collection("events").document(eventId);
+        DocumentReference userRef = db.collection("users").document(uid);
+
+        return reserve(eventRef, userRef, eventId, shardOrder(), 0)
+                .onSuccessTask(v -> refreshAggregate(eventRef));
+    }
+
+    private Task<Void> reserve(DocumentReference eventRef, DocumentReference userRef, String eventId,
+                               int[] order, int attempt) {
+        return takeSeat(eventRef, userRef, eventId, order[attempt])
+                .continueWithTask(task -> {
+                    if (task.isSuccessful() || !isShardFull(task.getException())) return task;
+                    return attempt + 1 < SHARDS
+                            ? reserve(eventRef, userRef, eventId, order, attempt + 1)
+                            : Tasks.forException(new RuntimeException("EVENT_FULL"));
+                });
+    }
+
+    private static boolean isShardFull(Exception e) {
+        return e != null && SHARD_FULL.equals(e.getMessage());
+    }
+
+    /**
+     * Transaction taking a seat in the given shard and recording the event
+     * in the user's registered events. No other shard is read.
+     *
+     * @return Task failing with {@link #SHARD_FULL} when the shard has no seat free
+     */
+    Task<Void> takeSeat(DocumentReference eventRef, DocumentReference userRef, String eventId, int index) {
+        return db.runTransaction(transaction -> {
+            DocumentSnapshot shard = transaction.get(shard(eventRef, index));
+
+            if (!shard.exists()) {
+                shardExistingEvent(transaction, eventRef, index);
+            } else if (hasFreeSeat(shard)) {
+                transaction.update(shard.getReference(), RESERVED, FieldValue.increment(1));
+            } else {
+                throw new RuntimeException(SHARD_FULL);
+            }
+
+            transaction.update(userRef, "registeredEventIds", FieldValue.arrayUnion(eventId));
+            return null;
+        });
+    }
+
+    private static boolean hasFreeSeat(DocumentSnapshot shard) {
+        Long capacity = shard.getLong(CAPACITY);
+        Long reserved = shard.getLong(RESERVED);
+        return capacity != null && reserved != null && reserved < capacity;
+    }
+
+    /**
+     * Creates the shards of an event stored before seats were sharded,
+     * splitting the counts on its document, with one more seat taken.
+     */
+    private static void shardExistingEvent(Transaction transaction, DocumentReference eventRef, int start)
+            throws FirebaseFirestoreException {
+        DocumentSnapshot eventSnap = transaction.get(eventRef);
+
+        if (!eventSnap.exists()) {
+            throw new RuntimeException("EVENT_NOT_FOUND");
+        }
+
+        Long reserved = eventSnap.getLong("reserved");
+        Long max = eventSnap.getLong("maxCapacity");
+
+        if (reserved == null || max == null) {
+            throw new RuntimeException("INVALID_EVENT_DATA");
+        }
+
+        if (reserved >= max) {
+            throw new RuntimeException("EVENT_FULL");
+        }
+
+        int[] capacities = split(max.intValue());
+        int[] taken = split(reserved.intValue());
+
+        // Reserved <= capacity in every shard, and at least one has a free seat
+        int index = start;
+        while (taken[index] >= capacities[index]) {
+            index = (index + 1) % SHARDS;
+        }
+        taken[index]++;
+
+        for (int i = 0; i < SHARDS; i++) {
+            transaction.set(shard(eventRef, i), shardData(capacities[i], taken[i]));
+        }
+    }
+
+    /**
+     * Frees a user's seat and removes the event from the user's registered
+     * events, in one transaction over a single shard, like
+     * {@link #reserve}: a shard with no seat taken is skipped for the next
+     * one. The event document's aggregate is written again afterwards.
+     * Events without shards have the counts on their document decremented
+     * in the transaction instead.
+     *
+     * @param eventId Event ID
+     * @param uid User ID
+     * @return Task representing the operation
+     */
+    public Task<Void> release(String eventId, String uid) {
+        DocumentReference eventRef = db.collection("events").document(eventId);
+        DocumentReference userRef = db.collection("users").document(uid);
+
+        return release(eventRef, userRef, eventId, shardOrder(), 0)
+                .onSuccessTask(v -> refreshAggregate(eventRef));
+    }
+
+    private Task<Void> release(DocumentReference eventRef, DocumentReference userRef, String eventId,
+                               int[] order, int attempt) {
+        boolean last = attempt + 1 == SHARDS;
+        return freeSeat(eventRef, userRef, eventId, order[attempt], last)
+                .continueWithTask(task -> task.isSuccessful() || !isShardFull(task.getException())
+                        ? task
+                        : release(eventRef, userRef, eventId, order, attempt + 1));
+    }
+
+    /**
+     * Transaction freeing a seat in the given shard and removing the event
+     * from the user's registered events. No other shard is read.
+     *
+     * @param last Whether every other shard was found without a seat taken;
+     *             the registration is then removed even if this one has none
+     * @return Task failing with {@link #SHARD_FULL} when the shard has no
+     *         seat taken and others remain to be tried
+     */
+    Task<Void> freeSeat(DocumentReference eventRef, DocumentReference userRef, String eventId,
+                        int index, boolean last) {
+        return db.runTransaction(transaction -> {
+            DocumentSnapshot shard = transaction.get(shard(eventRef, index));
+            Long reserved = shard.getLong(RESERVED);
+
+            if (!shard.exists()) {
+                // Not sharded: the counts live on the event document
+                transaction.update(eventRef,
+                        "reserved", FieldValue.increment(-1),
+                        "availableSpots", FieldValue.increment(1),
+                        EventRepository.UPDATED_AT, FieldValue.serverTimestamp());
+            } else if (reserved != null && reserved > 0) {
+                transaction.update(shard.getReference(), RESERVED, FieldValue.increment(-1));
+            } else if (!last) {
+                throw new RuntimeException(SHARD_FULL);
+            }
+
+            transaction.update(userRef, "registeredEventIds", FieldValue.arrayRemove(eventId));
+            return null;
+        });
+    }
+
+    /**
+     * Writes the event document's seat counts from the sum of its shards.
+     * While an update of the event runs, further requests only mark it
+     * stale, and one more update follows. The whole aggregate is written,
+     * so a failed update is corrected by the next one; failures are
+     * logged, not reported.
+     */
+    private Task<Void> refreshAggregate(DocumentReference eventRef) {
+        String eventId = eventRef.getId();
+        if (!refreshing.add(eventId)) {
+            stale.add(eventId);
+            return Tasks.forResult(null);
+        }
+
+        return writeAggregate(eventRef)
+                .continueWithTask(task -> {
+                    if (!task.isSuccessful()) {
+                        Log.w(TAG, "Seat counts of " + eventId + " not updated", task.getException());
+                    }
+                    refreshing.remove(eventId);
+                    return stale.remove(eventId)
+                            ? refreshAggregate(eventRef)
+                            : Tasks.forResult(null);
+                });
+    }
+
+    /**
+     * Transaction summing an event's shards into its seat counts. A seat
+     * taken or freed after the shards were read makes the transaction run
+     * again, so the counts written are never older than ones already
+     * written.
+     */
+    Task<Void> writeAggregate(DocumentReference eventRef) {
+        return db.runTransaction(transaction -> {
+            int capacity = 0;
+            int reserved = 0;
+            for (int i = 0; i < SHARDS; i++) {
+                DocumentSnapshot shard = transaction.get(shard(eventRef, i));
+                if (!shard.exists()) return null; // not sharded: the counts are on the event
+
+                Long seats = shard.getLong(CAPACITY);
+                Long taken = shard.getLong(RESERVED);
+                capacity += seats != null ? seats.intValue() : 0;
+                reserved += taken != null ? taken.intValue() : 0;
+            }
+
+            Map<String, Object> counts = new HashMap<>();
+            counts.put("reserved", reserved);
+            counts.put("availableSpots", capacity - reserved);
+            counts.put(EventRepository.UPDATED_AT, FieldValue.serverTimestamp());
+            transaction.update(eventRef, counts);
+            return null;
+        });
+    }
+
+    /**
+     * Changes an event's capacity, together with other updates of the event
+     * document. Each shard keeps its reserved seats; the free seats are
+     * split over the shards again.
+     *
+     * @param eventId Event ID
+     * @param capacity New capacity
+     * @param updates Updates of the event document, applied in the same transaction
+     * @param tombstone Tombstone to write in the same transaction, when the
+     *                  updates can move the event out of query plans (may be null)
+     * @return Task failing with "CAPACITY_BELOW_RESERVED" when fewer seats
+     *         than already reserved are requested
+     */
+    public Task<Void> resize(String eventId, int capacity, Map<String, Object> updates,
+                             DocumentReference tombstone) {
+        DocumentReference eventRef = db.collection("events").document(eventId);
+
+        return db.runTransaction(transaction -> {
+            DocumentSnapshot[] shards = new DocumentSnapshot[SHARDS];
+            int reserved = 0;
+            for (int i = 0; i < SHARDS; i++) {
+                shards[i] = transaction.get(shard(eventRef, i));
+                Long taken = shards[i].getLong(RESERVED);
+                reserved += taken != null ? taken.intValue() : 0;
+            }
+
+            if (shards[0].exists()) {
+                if (capacity < reserved) {
+                    throw new RuntimeException("CAPACITY_BELOW_RESERVED");
+                }
+
+                int[] free = split(capacity - reserved);
+                for (int i = 0; i < SHARDS; i++) {
+                    Long taken = shards[i].getLong(RESERVED);
+                    int held = taken != null ? taken.intValue() : 0;
+                    transaction.set(shard(eventRef, i), shardData(held + free[i], held));
+                }
+            }
+
+            transaction.update(eventRef, updates);
+            if (tombstone != null) {
+                transaction.set(tombstone, EventRepository.tombstoneData());
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Reads the exact number of seats reserved for an event, summed over
+     * its shards. For events without shards, the count on the event
+     * document is returned.
+     *
+     * @param eventId Event ID
+     * @return Task containing the number of reserved seats
+     */
+    public Task<Integer> getReservedSeats(String eventId) {
+        DocumentReference eventRef = db.collection("events").document(eventId);
+
+        return eventRef.collection(COLLECTION).get()
+                .onSuccessTask(snapshot -> {
+                    if (snapshot.isEmpty()) {
+                        return eventRef.get().continueWith(task -> {
+                            Long reserved = task.getResult().getLong("reserved");
+                            return reserved != null ? reserved.intValue() : 0;
+                        });
+                    }
+
+                    int reserved = 0;
+                    for (DocumentSnapshot shard : snapshot.getDocuments()) {
+                        Long taken = shard.getLong(RESERVED);
+                        reserved += taken != null ? taken.intValue() : 0;
+                    }
+                    return Tasks.forResult(reserved);
+                });
+    }
+}
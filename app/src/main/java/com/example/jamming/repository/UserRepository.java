@@ -39,13 +39,24 @@ public class UserRepository {
 
     /**
      * Retrieves a user document by its unique identifier (UID).
+     * Concurrent reads of the same user share one request, and the result
+     * is served from memory for {@link DocumentReadCoalescer#TTL_MILLIS}.
      *
      * @param uid User ID
      * @return Task containing the user document snapshot
      */    public Task<DocumentSnapshot> getUserById(String uid) {
-        return db.collection("users")
-                .document(uid)
-                .get();
+        return DocumentReadCoalescer.of(db).get(
+                DocumentReadCoalescer.key("users", uid),
+                db.collection("users").document(uid));
+    }
+
+    /**
+     * Runs a write on a user document, keeping reads of the user
+     * from being served from before the write.
+     */
+    private <T> Task<T> written(String uid, Task<T> write) {
+        return DocumentReadCoalescer.of(db).invalidating(
+                DocumentReadCoalescer.key("users", uid), write);
     }
 
     /**
@@ -75,9 +86,9 @@ public class UserRepository {
      * @return Task representing the update operation
      */
     public Task<Void> updateUserField(String uid, String fieldName, Object value) {
-        return db.collection("users")
+        return written(uid, db.collection("users")
                 .document(uid)
-                .update(fieldName, value);
+                .update(fieldName, value));
     }
 
     /**
@@ -88,9 +99,9 @@ public class UserRepository {
      * @return Task representing the update operation
      */
     public Task<Void> updateUserProfile(String uid, Map<String, Object> updates) {
-        return db.collection("users")
+        return written(uid, db.collection("users")
                 .document(uid)
-                .update(updates);
+                .update(updates));
     }
     /**
      * Retrieves the last event filter used by the user.
@@ -127,9 +138,9 @@ public class UserRepository {
      * @param eventId Event ID to register
      * @return Task representing the update operation
      */    public Task<Void> registerEventForUser(String uid, String eventId) {
-        return db.collection("users")
+        return written(uid, db.collection("users")
                 .document(uid)
-                .update("registeredEventIds", FieldValue.arrayUnion(eventId));
+                .update("registeredEventIds", FieldValue.arrayUnion(eventId)));
     }
 
     /**
@@ -141,9 +152,9 @@ public class UserRepository {
      * @return Task representing the update operation
      */
     public Task<Void> unregisterEventForUser(String uid, String eventId) {
-        return db.collection("users")
+        return written(uid, db.collection("users")
                 .document(uid)
-                .update("registeredEventIds", FieldValue.arrayRemove(eventId));
+                .update("registeredEventIds", FieldValue.arrayRemove(eventId)));
     }
 
     /**
@@ -153,9 +164,7 @@ public class UserRepository {
      * @return Task containing a list of event IDs
      */
     public Task<List<String>> getRegisteredEvents(String uid) {
-        return db.collection("users")
-                .document(uid)
-                .get()
+        return getUserById(uid)
                 .onSuccessTask(doc -> {
 
                     if (!doc.exists()) {
@@ -179,9 +188,9 @@ public class UserRepository {
      * @return Task representing the update operation
      */
     public Task<Void> updateProfileImage(String uid, String imageUrl) {
-        return db.collection("users")
+        return written(uid, db.collection("users")
                 .document(uid)
-                .update("profileImageUrl", imageUrl);
+                .update("profileImageUrl", imageUrl));
     }
 
     /**
@@ -192,9 +201,9 @@ public class UserRepository {
      * @return Task representing the update operation
      */
     public Task<Void> updateNotificationsEnabled(String uid, boolean enabled) {
-        return db.collection("users")
+        return written(uid, db.collection("users")
                 .document(uid)
-                .update("notificationsEnabled", enabled);
+                .update("notificationsEnabled", enabled));
     }
 
     /**
@@ -204,9 +213,9 @@ public class UserRepository {
      * @return Task representing the delete operation
      */
     public Task<Void> deleteUserProfile(String uid) {
-        return db.collection("users")
+        return written(uid, db.collection("users")
                 .document(uid)
-                .delete();
+                .delete());
     }
 
     /**
@@ -218,7 +227,7 @@ public class UserRepository {
      * @param fullName User display name (optional)
      */
     public Task<Void> createUserIfMissing(String uid, String email, String fullName) {
-        return db.collection("users").document(uid).get()
+        return getUserById(uid)
                 .continueWithTask(task -> {
                     if (!task.isSuccessful()) {
                         return Tasks.forException(task.getException());
@@ -239,7 +248,7 @@ public class UserRepository {
                     data.put("createdAt", FieldValue.serverTimestamp());
                     data.put("registeredEventIds", new ArrayList<>());
 
-                    return db.collection("users").document(uid).set(data);
+                    return written(uid, db.collection("users").document(uid).set(data));
                 });
     }
 
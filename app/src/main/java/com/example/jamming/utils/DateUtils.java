@@ -1,16 +1,119 @@
 package com.example.jamming.utils;
 
 import java.text.SimpleDateFormat;
-import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
+import java.util.TimeZone;
 
 /**
  * Utility class for date and time formatting and conversions.
  * Provides helper methods for displaying and manipulating timestamps.
+ *
+ * Time-zone and locale dependent state (zone offsets, formatters and
+ * already formatted strings) is cached, because these helpers run once per
+ * event while filtering and while binding event cards. The default time
+ * zone and locale are compared with the cached ones at most every
+ * {@link #ZONE_CHECK_MILLIS}, since reading the default zone clones it;
+ * a change of either in the system settings is picked up by the first
+ * call after that.
  */
 public class DateUtils {
 
+    private static final long MINUTE_MILLIS = 60_000L;
+    private static final long DAY_MILLIS = 24 * 60 * MINUTE_MILLIS;
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    /** Number of formatted dates remembered (direct-mapped by day) */
+    private static final int DATE_CACHE_SIZE = 64;
+
+    /** Number of constant-offset days remembered (direct-mapped by day) */
+    private static final int WINDOW_CACHE_SIZE = 64;
+
+    /** Interval between checks of the default time zone and locale */
+    static final long ZONE_CHECK_MILLIS = 250;
+
+    private static volatile ZoneState zoneState = new ZoneState();
+
+    /** {@link System#nanoTime()} from which the default zone is checked again */
+    private static volatile long nextZoneCheck = System.nanoTime();
+
+    /** Per-thread formatters, since SimpleDateFormat is not thread-safe */
+    private static final ThreadLocal<Formatters> FORMATTERS = new ThreadLocal<>();
+
+    /**
+     * Time zone and locale snapshot, together with everything derived from it.
+     * Cached strings are written without locking: they are immutable, so a
+     * racing thread at worst formats the same value again.
+     */
+    private static final class ZoneState {
+        final TimeZone zone = TimeZone.getDefault();
+        final Locale locale = Locale.getDefault();
+
+        /** Constant-offset days, slotted by the UTC day their start falls on */
+        final OffsetWindow[] windows = new OffsetWindow[WINDOW_CACHE_SIZE];
+
+        final String[] timeByMinute = new String[MINUTES_PER_DAY];
+        final DateEntry[] dateByDay = new DateEntry[DATE_CACHE_SIZE];
+    }
+
+    /**
+     * Local day [start, end) in UTC milliseconds during which the zone offset
+     * does not change. Days with a DST transition never become a window.
+     */
+    private static final class OffsetWindow {
+        final long start;
+        final long end;
+        final int offset;
+
+        OffsetWindow(long start, long end, int offset) {
+            this.start = start;
+            this.end = end;
+            this.offset = offset;
+        }
+    }
+
+    private static final class DateEntry {
+        final long day;
+        final String text;
+
+        DateEntry(long day, String text) {
+            this.day = day;
+            this.text = text;
+        }
+    }
+
+    private static final class Formatters {
+        final ZoneState state;
+        final SimpleDateFormat date;
+        final SimpleDateFormat time;
+
+        Formatters(ZoneState state) {
+            this.state = state;
+            date = new SimpleDateFormat("dd.MM.yyyy", state.locale);
+            time = new SimpleDateFormat("HH:mm", state.locale);
+            date.setTimeZone(state.zone);
+            time.setTimeZone(state.zone);
+        }
+    }
+
+    /**
+     * Returns the cached state. Once per {@link #ZONE_CHECK_MILLIS}, it is
+     * first rebuilt if the default time zone or locale no longer matches it.
+     */
+    private static ZoneState state() {
+        ZoneState state = zoneState;
+        long now = System.nanoTime();
+        if (now - nextZoneCheck < 0) return state;
+
+        nextZoneCheck = now + ZONE_CHECK_MILLIS * 1_000_000L;
+        if (!state.locale.equals(Locale.getDefault())
+                || !state.zone.getID().equals(TimeZone.getDefault().getID())) {
+            state = new ZoneState();
+            zoneState = state;
+        }
+        return state;
+    }
+
     /**
      * Formats a timestamp to a date string (day, month, year).
      *
@@ -18,23 +121,34 @@ public class DateUtils {
      * @return Formatted date string in the format dd.MM.yyyy
      */
     public static String formatOnlyDate(long timestamp) {
-        return new SimpleDateFormat(
-                "dd.MM.yyyy",
-                Locale.getDefault()
-        ).format(new Date(timestamp));
+        ZoneState state = state();
+        long day = Math.floorDiv(timestamp + offsetAt(state, timestamp), DAY_MILLIS);
+        int slot = (int) (day & (DATE_CACHE_SIZE - 1));
+
+        DateEntry entry = state.dateByDay[slot];
+        if (entry == null || entry.day != day) {
+            entry = new DateEntry(day, formatters(state).date.format(new Date(timestamp)));
+            state.dateByDay[slot] = entry;
+        }
+        return entry.text;
     }
 
     /**
-            * Formats a timestamp to a time string (hours and minutes).
-            *
-            * @param timestamp Time in milliseconds since epoch
+     * Formats a timestamp to a time string (hours and minutes).
+     *
+     * @param timestamp Time in milliseconds since epoch
      * @return Formatted time string in the format HH:mm
      */
     public static String formatOnlyTime(long timestamp) {
-        return new SimpleDateFormat(
-                "HH:mm",
-                Locale.getDefault()
-        ).format(new Date(timestamp));
+        ZoneState state = state();
+        int minute = minutesFromMidnight(state, timestamp);
+
+        String text = state.timeByMinute[minute];
+        if (text == null) {
+            text = formatters(state).time.format(new Date(timestamp));
+            state.timeByMinute[minute] = text;
+        }
+        return text;
     }
 
     /**
@@ -44,10 +158,50 @@ public class DateUtils {
      * @return Number of minutes from midnight
      */
     public static int minutesFromMidnight(long millis) {
-        Calendar c = Calendar.getInstance();
-        c.setTimeInMillis(millis);
-        return c.get(Calendar.HOUR_OF_DAY) * 60
-                + c.get(Calendar.MINUTE);
+        return minutesFromMidnight(state(), millis);
+    }
+
+    private static int minutesFromMidnight(ZoneState state, long millis) {
+        long local = millis + offsetAt(state, millis);
+        return (int) (Math.floorMod(local, DAY_MILLIS) / MINUTE_MILLIS);
+    }
+
+    /**
+     * Returns the zone offset at an instant without allocating, as long as
+     * the instant's local day is cached. Otherwise the offset is looked up in
+     * the zone and, when the local day has a single offset, the day is cached.
+     *
+     * A local day containing {@code millis} starts within the preceding 24
+     * hours, so its window sits in the slot of this UTC day or the previous one.
+     */
+    private static int offsetAt(ZoneState state, long millis) {
+        long utcDay = Math.floorDiv(millis, DAY_MILLIS);
+        OffsetWindow window = state.windows[(int) (utcDay & (WINDOW_CACHE_SIZE - 1))];
+        if (window != null && millis >= window.start && millis < window.end) {
+            return window.offset;
+        }
+        window = state.windows[(int) ((utcDay - 1) & (WINDOW_CACHE_SIZE - 1))];
+        if (window != null && millis >= window.start && millis < window.end) {
+            return window.offset;
+        }
+
+        int offset = state.zone.getOffset(millis);
+        long dayStart = Math.floorDiv(millis + offset, DAY_MILLIS) * DAY_MILLIS - offset;
+        long dayEnd = dayStart + DAY_MILLIS;
+        if (state.zone.getOffset(dayStart) == offset && state.zone.getOffset(dayEnd - 1) == offset) {
+            int slot = (int) (Math.floorDiv(dayStart, DAY_MILLIS) & (WINDOW_CACHE_SIZE - 1));
+            state.windows[slot] = new OffsetWindow(dayStart, dayEnd, offset);
+        }
+        return offset;
+    }
+
+    private static Formatters formatters(ZoneState state) {
+        Formatters formatters = FORMATTERS.get();
+        if (formatters == null || formatters.state != state) {
+            formatters = new Formatters(state);
+            FORMATTERS.set(formatters);
+        }
+        return formatters;
     }
 
     /**
@@ -0,0 +1,212 @@
+package com.example.jamming.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Utility class for geohashes: base32 strings that identify a grid cell,
+ * where every additional character subdivides the cell into 32.
+ *
+ * Events store a geohash so that a location search can be expressed as a
+ * few string range queries ("all hashes starting with this prefix")
+ * instead of downloading every event and measuring distances.
+ */
+public class GeoHashUtils {
+
+    /** Precision stored on events: 9 characters, cells of about 5m x 5m */
+    public static final int STORED_PRECISION = 9;
+
+    /** Largest number of range queries used to cover a circle */
+    public static final int MAX_RANGES = 9;
+
+    /** Largest number of cells enumerated at one precision */
+    private static final int MAX_CELLS = 64;
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    /**
+     * Encodes a location at the precision stored on events.
+     *
+     * @param lat Latitude
+     * @param lng Longitude
+     * @return Geohash of {@link #STORED_PRECISION} characters
+     */
+    public static String encode(double lat, double lng) {
+        return encode(lat, lng, STORED_PRECISION);
+    }
+
+    /**
+     * Encodes a location.
+     *
+     * @param lat Latitude
+     * @param lng Longitude
+     * @param precision Number of characters (1-12)
+     * @return Geohash of the cell containing the location
+     */
+    public static String encode(double lat, double lng, int precision) {
+        int bits = 5 * precision;
+        long x = cellIndex(lng, -180, 360, lngBits(bits));
+        long y = cellIndex(lat, -90, 180, latBits(bits));
+        return toHash(interleave(x, y, bits), precision);
+    }
+
+    /**
+     * Computes the geohash ranges that together contain every location
+     * within a radius of a center. The finest precision whose cells merge
+     * into at most {@link #MAX_RANGES} ranges is used, so few queries are
+     * needed while little is downloaded outside the circle.
+     *
+     * Ranges cover the circle's bounding box, so results still need an
+     * exact distance check.
+     *
+     * @param centerLat Latitude of the center
+     * @param centerLng Longitude of the center
+     * @param radiusKm Radius in kilometers
+     * @return Disjoint ranges in ascending order
+     */
+    public static List<Range> queryRanges(double centerLat, double centerLng, double radiusKm) {
+        GeoUtils.RadiusMatcher circle = GeoUtils.radiusMatcher(centerLat, centerLng, radiusKm);
+        double minLat = Math.max(-90, circle.minLat());
+        double maxLat = Math.min(90, circle.maxLat());
+        double[][] lngIntervals = lngIntervals(centerLng, circle.maxDeltaLng());
+
+        for (int precision = STORED_PRECISION; precision > 1; precision--) {
+            long[] cells = cells(precision, minLat, maxLat, lngIntervals);
+            if (cells == null) continue;
+
+            List<Range> ranges = merge(cells, precision);
+            if (ranges.size() <= MAX_RANGES) return ranges;
+        }
+        return merge(cells(1, minLat, maxLat, lngIntervals), 1);
+    }
+
+    /**
+     * Splits the longitude span of a circle at the antimeridian.
+     */
+    private static double[][] lngIntervals(double centerLng, double maxDeltaLng) {
+        if (maxDeltaLng >= 180) {
+            return new double[][]{{-180, 180}};
+        }
+        double lo = centerLng - maxDeltaLng;
+        double hi = centerLng + maxDeltaLng;
+        if (lo < -180) {
+            return new double[][]{{-180, hi}, {lo + 360, 180}};
+        }
+        if (hi > 180) {
+            return new double[][]{{-180, hi - 360}, {lo, 180}};
+        }
+        return new double[][]{{lo, hi}};
+    }
+
+    /**
+     * Returns the sorted cell codes covering a box, or null if there are
+     * more than {@link #MAX_CELLS}.
+     */
+    private static long[] cells(int precision, double minLat, double maxLat, double[][] lngIntervals) {
+        int bits = 5 * precision;
+        int lngBits = lngBits(bits);
+        int latBits = latBits(bits);
+
+        long yFrom = cellIndex(minLat, -90, 180, latBits);
+        long yTo = cellIndex(maxLat, -90, 180, latBits);
+        long columns = 0;
+        long[][] xRanges = new long[lngIntervals.length][];
+        for (int k = 0; k < lngIntervals.length; k++) {
+            long xFrom = cellIndex(lngIntervals[k][0], -180, 360, lngBits);
+            long xTo = cellIndex(lngIntervals[k][1], -180, 360, lngBits);
+            xRanges[k] = new long[]{xFrom, xTo};
+            columns += xTo - xFrom + 1;
+        }
+        if (columns * (yTo - yFrom + 1) > MAX_CELLS) return null;
+
+        long[] codes = new long[(int) (columns * (yTo - yFrom + 1))];
+        int count = 0;
+        for (long[] xRange : xRanges) {
+            for (long x = xRange[0]; x <= xRange[1]; x++) {
+                for (long y = yFrom; y <= yTo; y++) {
+                    codes[count++] = interleave(x, y, bits);
+                }
+            }
+        }
+        Arrays.sort(codes);
+        return codes;
+    }
+
+    /**
+     * Merges runs of consecutive cell codes into single ranges.
+     */
+    private static List<Range> merge(long[] codes, int precision) {
+        List<Range> ranges = new ArrayList<>();
+        int i = 0;
+        while (i < codes.length) {
+            int j = i;
+            while (j + 1 < codes.length && codes[j + 1] <= codes[j] + 1) j++;
+            ranges.add(new Range(toHash(codes[i], precision), toHash(codes[j], precision) + "~"));
+            i = j + 1;
+        }
+        return ranges;
+    }
+
+    /** Geohashes start with a longitude bit, so longitude gets the odd one */
+    private static int lngBits(int bits) {
+        return (bits + 1) / 2;
+    }
+
+    private static int latBits(int bits) {
+        return bits / 2;
+    }
+
+    /**
+     * Index of the cell containing a value when [min, min + span] is split
+     * into 2^bits cells. Scaling by a power of two is exact, so the index at
+     * a coarser precision is always a prefix of the finer one.
+     */
+    private static long cellIndex(double value, double min, double span, int bits) {
+        long cells = 1L << bits;
+        long index = (long) Math.floor((value - min) / span * cells);
+        return Math.max(0, Math.min(cells - 1, index));
+    }
+
+    /**
+     * Interleaves longitude and latitude bits, longitude first.
+     */
+    private static long interleave(long x, long y, int bits) {
+        int xBit = lngBits(bits) - 1;
+        int yBit = latBits(bits) - 1;
+        long code = 0;
+        for (int i = 0; i < bits; i++) {
+            long bit = (i % 2 == 0) ? (x >>> xBit--) & 1 : (y >>> yBit--) & 1;
+            code = (code << 1) | bit;
+        }
+        return code;
+    }
+
+    private static String toHash(long code, int precision) {
+        char[] chars = new char[precision];
+        for (int i = precision - 1; i >= 0; i--) {
+            chars[i] = BASE32[(int) (code & 31)];
+            code >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * A range of geohashes, for use with
+     * {@code orderBy("geohash").startAt(start).endAt(end)}.
+     * The end is suffixed with "~", which sorts after every base32
+     * character, so all finer hashes with the end prefix are included.
+     */
+    public static final class Range {
+        private final String start;
+        private final String end;
+
+        Range(String start, String end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public String getStart() { return start; }
+        public String getEnd() { return end; }
+    }
+}
@@ -6,6 +6,14 @@ package com.example.jamming.utils;
  */
 public class GeoUtils {
 
+    private static final double EARTH_RADIUS_KM = 6371.0;
+
+    /** Largest angular radius (radians) for the equirectangular fast path */
+    private static final double MAX_APPROX_RADIUS_RAD = 0.1;
+
+    /** Highest latitude (degrees) a circle may reach for the fast path */
+    private static final double MAX_APPROX_LAT = 70.0;
+
     /**
      * Calculates the distance in kilometers between two geographic points
      * using the Haversine formula.
@@ -44,4 +52,111 @@ public class GeoUtils {
         // Final distance in kilometers
         return R * c;
     }
+
+    /**
+     * Creates a matcher for "within {@code radiusKm} of a center" checks.
+     * Precomputes everything that depends only on the center and radius,
+     * so it should be created once per filter and reused for every point.
+     *
+     * @param centerLat Latitude of the center
+     * @param centerLng Longitude of the center
+     * @param radiusKm Radius in kilometers
+     * @return Matcher for the circle
+     */
+    public static RadiusMatcher radiusMatcher(double centerLat, double centerLng, double radiusKm) {
+        return new RadiusMatcher(centerLat, centerLng, radiusKm);
+    }
+
+    /**
+     * Fast point-in-circle test that gives exactly the same answers as
+     * {@code calculateDistanceKm(center, point) <= radiusKm}.
+     *
+     * Points are first checked against the circle's bounding box. Inside
+     * the box, small circles away from the poles compare a squared
+     * equirectangular distance (no trigonometry per point) against an inner
+     * and an outer radius. Only points in the band between the two, where
+     * the approximation error could flip the answer, use exact Haversine.
+     */
+    public static final class RadiusMatcher {
+        private final double centerLat;
+        private final double centerLng;
+        private final double radiusKm;
+
+        /* Bounding box; maxDeltaLng >= 180 means no longitude bound */
+        private final double minLat;
+        private final double maxLat;
+        private final double maxDeltaLng;
+
+        /* Equirectangular projection scale and decision band, in km */
+        private final boolean approximate;
+        private final double kmPerDegLat;
+        private final double kmPerDegLng;
+        private final double innerSq;
+        private final double outerSq;
+
+        private RadiusMatcher(double centerLat, double centerLng, double radiusKm) {
+            this.centerLat = centerLat;
+            this.centerLng = centerLng;
+            this.radiusKm = radiusKm;
+
+            double angular = radiusKm / EARTH_RADIUS_KM;
+            // Slightly widened so rounding never rejects a boundary point
+            double angularDeg = Math.toDegrees(angular) * (1 + 1e-9);
+            minLat = centerLat - angularDeg;
+            maxLat = centerLat + angularDeg;
+
+            double cosLat = Math.cos(Math.toRadians(centerLat));
+            if (maxLat >= 90 || minLat <= -90 || angular >= Math.PI / 2) {
+                // The circle contains a pole, so it spans every longitude
+                maxDeltaLng = 180;
+            } else {
+                maxDeltaLng = Math.toDegrees(Math.asin(Math.min(1, Math.sin(angular) / cosLat))) * (1 + 1e-9);
+            }
+
+            approximate = angular <= MAX_APPROX_RADIUS_RAD
+                    && Math.max(Math.abs(minLat), Math.abs(maxLat)) <= MAX_APPROX_LAT;
+            kmPerDegLat = EARTH_RADIUS_KM * Math.PI / 180;
+            kmPerDegLng = kmPerDegLat * cosLat;
+
+            // Relative error bound of the projection within the bounding box:
+            // the cosine drift over the latitude span, the curvature term,
+            // plus headroom for rounding
+            double margin = Math.abs(Math.tan(Math.toRadians(centerLat))) * angular
+                    + angular * angular + 0.001;
+            double inner = radiusKm * Math.max(0, 1 - margin);
+            double outer = radiusKm * (1 + margin);
+            innerSq = inner * inner;
+            outerSq = outer * outer;
+        }
+
+        /**
+         * Checks whether a point lies within the radius of the center.
+         *
+         * @param lat Latitude of the point
+         * @param lng Longitude of the point
+         * @return true if the Haversine distance is at most the radius
+         */
+        public boolean matches(double lat, double lng) {
+            if (lat < minLat || lat > maxLat) return false;
+
+            double deltaLng = Math.abs(lng - centerLng);
+            if (deltaLng > 180) deltaLng = 360 - deltaLng;
+            if (deltaLng > maxDeltaLng) return false;
+
+            if (approximate) {
+                double y = (lat - centerLat) * kmPerDegLat;
+                double x = deltaLng * kmPerDegLng;
+                double distanceSq = x * x + y * y;
+                if (distanceSq <= innerSq) return true;
+                if (distanceSq > outerSq) return false;
+            }
+
+            return calculateDistanceKm(centerLat, centerLng, lat, lng) <= radiusKm;
+        }
+
+        /* Bounding box of the circle; latitudes may exceed +-90 */
+        double minLat() { return minLat; }
+        double maxLat() { return maxLat; }
+        double maxDeltaLng() { return maxDeltaLng; }
+    }
 }
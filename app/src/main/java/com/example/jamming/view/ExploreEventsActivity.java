@@ -11,6 +11,7 @@ import com.example.jamming.model.Event;
 import com.example.jamming.model.EventFilter;
 import com.example.jamming.model.MusicGenre;
 import com.example.jamming.navigation.UserMenuHandler;
+import com.example.jamming.utils.FormTextWatcher;
 import com.example.jamming.utils.MapUiHelper;
 import com.example.jamming.view.dialog.FilterDialogs;
 import com.example.jamming.viewmodel.ExploreEventsViewModel;
@@ -19,7 +20,9 @@ import com.google.android.gms.maps.SupportMapFragment;
 import com.google.android.gms.maps.model.LatLng;
 import android.view.View;
 import android.widget.Button;
+import android.widget.EditText;
 import android.widget.Toast;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -42,6 +45,7 @@ public class ExploreEventsActivity extends BaseMapActivity {
 
     // UI elements
     private TextView emptyText;
+    private EditText etSearchEvents;
     private Button btnMyEvents, btnAllEvent, filterDistance, filterDate, filterTime, filterMusic, filterCapacity;
 
     // Map state
@@ -58,6 +62,9 @@ public class ExploreEventsActivity extends BaseMapActivity {
     private long lastBackPressTime = 0;
     private static final long BACK_PRESS_INTERVAL = 2000; // milliseconds
 
+    // Number of events shown by the "Nearest" option of the distance filter
+    private static final int NEAREST_EVENTS_COUNT = 20;
+
     /**
      * Activity creation lifecycle callback.
      * Initializes the base layout, views, map, ViewModel, observers, and listeners.
@@ -109,9 +116,11 @@ public class ExploreEventsActivity extends BaseMapActivity {
         // Initialize filter
         viewModel.initFilter();
 
-        // Load initial data
+        // Load initial data (cached events first, then only what changed)
+        viewModel.attachDiskCache(new File(getCacheDir(), "explore_events.cache"));
         viewModel.loadAllEvents();
         viewModel.loadUserName();
+        viewModel.sweepExpiredEvents();
         setupBackPressedHandler();
 
         if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.TIRAMISU) {
@@ -143,13 +152,23 @@ public class ExploreEventsActivity extends BaseMapActivity {
     }
     /**
      * Called when the Activity comes to the foreground.
-     * Used here to refresh the events list to ensure up-to-date data
-     * (e.g., after returning from details/edit screens).
+     * Starts following event changes live, so the list stays up to date
+     * (e.g., after returning from details/edit screens) without re-reading it.
      */
     @Override
     protected void onResume() {
         super.onResume();
-        viewModel.loadAllEvents();
+        viewModel.startLiveUpdates();
+    }
+
+    /**
+     * Called when the Activity leaves the foreground.
+     * Stops the live updates; they resume in {@link #onResume()}.
+     */
+    @Override
+    protected void onPause() {
+        super.onPause();
+        viewModel.stopLiveUpdates();
     }
 
     /**
@@ -157,6 +176,7 @@ public class ExploreEventsActivity extends BaseMapActivity {
      */
     private void initViews() {
         emptyText = findViewById(R.id.emptyText);
+        etSearchEvents = findViewById(R.id.etSearchEvents);
         btnAllEvent = findViewById(R.id.btnAllEvents);
         btnMyEvents = findViewById(R.id.btnMyEvents);
         filterDistance = findViewById(R.id.filterDistance);
@@ -197,6 +217,9 @@ public class ExploreEventsActivity extends BaseMapActivity {
         // Clear all filters and show all events
         btnAllEvent.setOnClickListener(v -> viewModel.clearFilter());
 
+        // Free-text search, updated on every keystroke
+        etSearchEvents.addTextChangedListener(FormTextWatcher.after(viewModel::setSearchQuery));
+
         // Navigate to "My Events" screen
         btnMyEvents.setOnClickListener(v -> startActivity(new Intent(this, MyEventUserActivity.class)));
 
@@ -211,6 +234,7 @@ public class ExploreEventsActivity extends BaseMapActivity {
                     eventFilter.getMaxAvailableSpots(),
                     eventFilter.getMinCapacity(),
                     eventFilter.getMaxCapacity(),
+                    viewModel.getFacetCounts(null, null),
                     (minA, maxA, minC, maxC) ->
                             viewModel.updateFilter(filter -> {
                                 filter.setAvailableSpotsRange(minA, maxA);
@@ -224,6 +248,7 @@ public class ExploreEventsActivity extends BaseMapActivity {
 
             MusicGenre[] allGenres = MusicGenre.values();
             FilterDialogs.showMusic(this, new HashSet<>(eventFilter.getMusicTypes()), allGenres,
+                    viewModel.getFacetCounts(null, null),
                     selected ->
                             viewModel.updateFilter(filter -> filter.setMusicTypes(new ArrayList<>(selected))));
         });
@@ -234,6 +259,7 @@ public class ExploreEventsActivity extends BaseMapActivity {
             if (eventFilter == null) return;
 
             FilterDialogs.showTimeRange(getSupportFragmentManager(), this, eventFilter.getStartMinute(), eventFilter.getEndMinute(),
+                    viewModel.getFacetCounts(null, null),
                     (start, end) ->
                             viewModel.updateFilter(filter -> filter.setTimeRange(start, end)));
         });
@@ -244,6 +270,7 @@ public class ExploreEventsActivity extends BaseMapActivity {
             if (eventFilter == null) return;
 
             FilterDialogs.showDateRange(getSupportFragmentManager(), this, eventFilter.getStartDateMillis(), eventFilter.getEndDateMillis(),
+                    viewModel.getFacetCounts(null, null),
                     (start, end) ->
                             viewModel.updateFilter(filter -> filter.setDateRange(start, end)));
         });
@@ -257,8 +284,14 @@ public class ExploreEventsActivity extends BaseMapActivity {
                 if (eventFilter  == null) return;
 
                 FilterDialogs.showDistance(this, location, eventFilter.getRadiusKm(),
+                        viewModel.getFacetCounts(location.getLatitude(), location.getLongitude()),
                         (lat, lng, radiusKm) ->
-                                viewModel.updateFilter(filter -> filter.setLocation(lat, lng, radiusKm)));
+                                viewModel.updateFilter(filter -> filter.setLocation(lat, lng, radiusKm)),
+                        (lat, lng) -> {
+                            // Drop the radius so the nearest events are not limited by it
+                            viewModel.updateFilter(filter -> filter.setLocation(null, null, null));
+                            viewModel.showNearest(lat, lng, NEAREST_EVENTS_COUNT);
+                        });
             });
         });
     }
@@ -327,9 +360,11 @@ public class ExploreEventsActivity extends BaseMapActivity {
     /**
      * Moves the camera to the user's location if available,
      * otherwise moves it to a predefined fallback location.
+     * A known location is also used to rank events by distance.
      */
     private void handleInitialLocation(Location location) {
         if (location != null) {
+            viewModel.setUserLocation(location.getLatitude(), location.getLongitude());
             LatLng here = new LatLng(location.getLatitude(), location.getLongitude());
             mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(here, 13f));
         } else {
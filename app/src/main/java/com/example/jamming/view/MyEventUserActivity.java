@@ -113,6 +113,9 @@ public class MyEventUserActivity extends BaseActivity {
                 case LOAD_ERROR:
                     Toast.makeText(this, getString(R.string.error_failed_to_load_events), Toast.LENGTH_SHORT).show();
                     break;
+                case PARTIAL_LOAD_ERROR:
+                    Toast.makeText(this, getString(R.string.error_failed_to_load_some_events), Toast.LENGTH_SHORT).show();
+                    break;
                 case NONE:
                     emptyMessageText.setVisibility(View.GONE);
                     break;
@@ -39,6 +39,7 @@ public class OwnerActivity extends BaseActivity {
     private TextView emptyEventsText;
     private LinearLayout eventsContainer;
     private Button createEventBtn;
+    private Button loadMoreBtn;
 
     // Navigation handler for the drawer menu
     private OwnerMenuHandler menuHandler;
@@ -98,6 +99,7 @@ public class OwnerActivity extends BaseActivity {
         createEventBtn = findViewById(R.id.createEventButton);
         eventsContainer = findViewById(R.id.eventsContainer);
         emptyEventsText = findViewById(R.id.emptyEventsText);
+        loadMoreBtn = findViewById(R.id.btnLoadMoreEvents);
     }
 
     /**
@@ -114,6 +116,9 @@ public class OwnerActivity extends BaseActivity {
         createEventBtn.setOnClickListener(v ->
                 startActivity(new Intent(this, CreateNewEventActivity.class))
         );
+
+        // Load the next page of upcoming events
+        loadMoreBtn.setOnClickListener(v -> viewModel.loadMoreUpcomingEvents());
     }
 
     /**
@@ -154,6 +159,11 @@ public class OwnerActivity extends BaseActivity {
             }
         });
 
+        // Offer loading more events while further pages exist
+        viewModel.getHasMoreUpcomingEvents().observe(this, hasMore ->
+                loadMoreBtn.setVisibility(Boolean.TRUE.equals(hasMore) ? View.VISIBLE : View.GONE)
+        );
+
         // Observe general messages (errors, confirmations) and show as Toast
         viewModel.getMessage().observe(this, msg ->
                 Toast.makeText(this, msg, Toast.LENGTH_SHORT).show()
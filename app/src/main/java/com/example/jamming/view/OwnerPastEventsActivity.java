@@ -2,6 +2,7 @@ package com.example.jamming.view;
 
 import android.os.Bundle;
 import android.view.View;
+import android.widget.Button;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -33,6 +34,9 @@ public class OwnerPastEventsActivity extends BaseActivity {
     /** Text shown when there are no past events to display */
     private TextView emptyPastEventsText;
 
+    /** Loads the next page of past events; shown while more pages exist */
+    private Button loadMoreBtn;
+
     /** Handles navigation menu actions for owner screens */
     private OwnerMenuHandler menuHandler;
 
@@ -56,6 +60,8 @@ public class OwnerPastEventsActivity extends BaseActivity {
         // Bind UI components from the layout
         pastEventsContainer = findViewById(R.id.pastEventsContainer);
         emptyPastEventsText = findViewById(R.id.emptyPastEventsText);
+        loadMoreBtn = findViewById(R.id.btnLoadMorePastEvents);
+        loadMoreBtn.setOnClickListener(v -> viewModel.loadMorePastEvents());
 
         // Initialize ViewModel and menu handler
         viewModel = new ViewModelProvider(this).get(OwnerViewModel.class);
@@ -63,6 +69,9 @@ public class OwnerPastEventsActivity extends BaseActivity {
 
         // Start observing LiveData exposed by the ViewModel
         observeViewModel();
+        viewModel.getHasMorePastEvents().observe(this, hasMore ->
+                loadMoreBtn.setVisibility(Boolean.TRUE.equals(hasMore) ? View.VISIBLE : View.GONE)
+        );
 
         // Trigger initial load of owner's events (past & upcoming are split in the ViewModel)
         viewModel.loadOwnerEvents();
@@ -8,6 +8,7 @@ import android.view.View;
 import android.widget.EditText;
 import android.widget.TextView;
 import com.example.jamming.R;
+import com.example.jamming.model.EventFacetCounts;
 import com.example.jamming.model.MusicGenre;
 import com.google.android.material.slider.Slider;
 import com.example.jamming.utils.DateUtils;
@@ -40,20 +41,35 @@ public class FilterDialogs {
     //Callback for distance-based filtering
     public interface DistanceCallback { void onSelected(double lat, double lng, int radiusKm);}
 
+    //Callback for showing the events nearest to a location
+    public interface NearestCallback { void onSelected(double lat, double lng);}
+
+    // Number of coming days offered as quick date choices
+    private static final int QUICK_DAYS = 7;
+
+    // Parts of the day offered as quick time choices: [start hour, end hour)
+    private static final int[][] DAY_PARTS = {{6, 12}, {12, 18}, {18, 24}, {0, 6}};
+    private static final String[] DAY_PART_NAMES = {"Morning", "Afternoon", "Evening", "Night"};
+
     /* ===================== MUSIC ===================== */
     // Displays a multi-choice dialog for selecting music genres.
-    // Pre-selects currently active genres.
+    // Pre-selects currently active genres and, when counts are given,
+    // shows how many events each genre would return (when known).
     public static void showMusic(
             Context ctx,
             Set<MusicGenre> current,
             MusicGenre[] allGenres,
+            EventFacetCounts counts,
             GenresCallback callback
     ) {
         String[] displayNames = new String[allGenres.length];
         boolean[] checked = new boolean[allGenres.length];
 
         for (int i = 0; i < allGenres.length; i++) {
-            displayNames[i] = allGenres[i].getDisplayName();
+            int count = counts != null ? counts.getGenreCount(allGenres[i]) : -1;
+            displayNames[i] = count >= 0
+                    ? allGenres[i].getDisplayName() + " (" + count + ")"
+                    : allGenres[i].getDisplayName();
             checked[i] = current.contains(allGenres[i]);
         }
 
@@ -78,12 +94,14 @@ public class FilterDialogs {
 
     // Shows the time filter dialog.
     // If a filter is already applied, displays the current range
-    // and allows the user to change or clear it.
+    // and allows the user to change or clear it. When counts are given,
+    // parts of the day are offered first, with how many events each would return.
     public static void showTimeRange(
             androidx.fragment.app.FragmentManager fm,
             Context ctx,
             Integer currentStartMinute,
             Integer currentEndMinute,
+            EventFacetCounts counts,
             TimeRangeCallback callback
     ) {
 
@@ -93,7 +111,7 @@ public class FilterDialogs {
                     .setMessage(DateUtils.formatTimeRange(currentStartMinute, currentEndMinute))
 
                     .setPositiveButton("Change", (d, w) -> {
-                        openTimePickers(fm, currentStartMinute, currentEndMinute, callback);
+                        openTimeChoices(fm, ctx, currentStartMinute, currentEndMinute, counts, callback);
                     })
                     .setNegativeButton("Clear", (d, w) -> {
                         callback.onSelected(null, null);
@@ -101,7 +119,47 @@ public class FilterDialogs {
                     .setNeutralButton("Cancel", null).show();
             return;
         }
-        openTimePickers(fm, null, null, callback);
+        openTimeChoices(fm, ctx, null, null, counts, callback);
+    }
+
+    // Lists the parts of the day with their event counts;
+    // "Custom range" opens the time pickers.
+    private static void openTimeChoices(
+            androidx.fragment.app.FragmentManager fm,
+            Context ctx,
+            Integer startMinute,
+            Integer endMinute,
+            EventFacetCounts counts,
+            TimeRangeCallback callback
+    ) {
+        if (counts == null) {
+            openTimePickers(fm, startMinute, endMinute, callback);
+            return;
+        }
+
+        int[] hourCounts = counts.getHourCounts();
+        String[] items = new String[DAY_PARTS.length + 1];
+        for (int i = 0; i < DAY_PARTS.length; i++) {
+            int count = 0;
+            for (int hour = DAY_PARTS[i][0]; hour < DAY_PARTS[i][1]; hour++) {
+                count += hourCounts[hour];
+            }
+            items[i] = DAY_PART_NAMES[i] + " "
+                    + DateUtils.formatTimeRange(DAY_PARTS[i][0] * 60, DAY_PARTS[i][1] % 24 * 60)
+                    + " (" + count + ")";
+        }
+        items[DAY_PARTS.length] = "Custom range…";
+
+        new AlertDialog.Builder(ctx)
+                .setTitle("Select time")
+                .setItems(items, (d, which) -> {
+                    if (which == DAY_PARTS.length) {
+                        openTimePickers(fm, startMinute, endMinute, callback);
+                        return;
+                    }
+                    callback.onSelected(DAY_PARTS[which][0] * 60, DAY_PARTS[which][1] * 60 - 1);
+                })
+                .setNegativeButton("Cancel", null).show();
     }
 
     // Opens two sequential time pickers (start → end).
@@ -127,12 +185,14 @@ public class FilterDialogs {
 
     // Shows the date filter dialog.
     // If a date range is already selected, displays it
-    // and allows the user to change or clear the filter.
+    // and allows the user to change or clear the filter. When counts are
+    // given, the coming days are offered first, with how many events each would return.
     public static void showDateRange(
             androidx.fragment.app.FragmentManager fm,
             Context ctx,
             Long currentStart,
             Long currentEnd,
+            EventFacetCounts counts,
             DateRangeCallback callback
     ) {
         if (currentStart != null && currentEnd != null) {
@@ -140,7 +200,7 @@ public class FilterDialogs {
                     .setTitle("Current date filter")
                     .setMessage(DateUtils.formatOnlyDate(currentStart) + " – " + DateUtils.formatOnlyDate(currentEnd))
                     .setPositiveButton("Change", (d, w) -> {
-                        openDatePickers(fm, ctx, currentStart, currentEnd, callback);
+                        openDateChoices(fm, ctx, currentStart, currentEnd, counts, callback);
                     })
                     .setNegativeButton("Clear", (d, w) -> {
                         callback.onSelected(null, null);
@@ -148,7 +208,49 @@ public class FilterDialogs {
                     .setNeutralButton("Cancel", null).show();
             return;
         }
-        openDatePickers(fm, ctx, null, null, callback);
+        openDateChoices(fm, ctx, null, null, counts, callback);
+    }
+
+    // Lists the coming days with their event counts (when known);
+    // "Custom range" opens the date pickers.
+    private static void openDateChoices(
+            androidx.fragment.app.FragmentManager fm,
+            Context ctx,
+            Long startMillis,
+            Long endMillis,
+            EventFacetCounts counts,
+            DateRangeCallback callback
+    ) {
+        if (counts == null) {
+            openDatePickers(fm, ctx, startMillis, endMillis, callback);
+            return;
+        }
+
+        int[] dayCounts = counts.getDayCounts();
+        String[] items = new String[QUICK_DAYS + 1];
+        Calendar day = Calendar.getInstance();
+        for (int i = 0; i < QUICK_DAYS; i++) {
+            String label = DateUtils.formatOnlyDate(day.getTimeInMillis());
+            items[i] = dayCounts[i] >= 0 ? label + " (" + dayCounts[i] + ")" : label;
+            day.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        items[QUICK_DAYS] = "Custom range…";
+
+        new AlertDialog.Builder(ctx)
+                .setTitle("Select date")
+                .setItems(items, (d, which) -> {
+                    if (which == QUICK_DAYS) {
+                        openDatePickers(fm, ctx, startMillis, endMillis, callback);
+                        return;
+                    }
+                    Calendar c = Calendar.getInstance();
+                    c.add(Calendar.DAY_OF_MONTH, which);
+                    int y = c.get(Calendar.YEAR);
+                    int mo = c.get(Calendar.MONTH);
+                    int dd = c.get(Calendar.DAY_OF_MONTH);
+                    callback.onSelected(toStartOfDayMillis(y, mo, dd), toEndOfDayMillis(y, mo, dd));
+                })
+                .setNegativeButton("Cancel", null).show();
     }
 
     // Opens two sequential date pickers (start → end).
@@ -199,17 +301,28 @@ public class FilterDialogs {
 
     // Displays a combined capacity filter dialog
     // for available spots and total event capacity.
+    // When counts are given, each section lists how many events fall in each seat range.
     public static void showCapacityCombinedFilter(
             Context ctx,
             Integer curMinAvailable,
             Integer curMaxAvailable,
             Integer curMinCapacity,
             Integer curMaxCapacity,
+            EventFacetCounts counts,
             CapacityCombinedCallback callback
     ) {
         View v = LayoutInflater.from(ctx)
                 .inflate(R.layout.activity_dialog_capacity_filter, null);
 
+        if (counts != null) {
+            TextView spotsCounts = v.findViewById(R.id.availableSpotsCounts);
+            TextView capacityCounts = v.findViewById(R.id.capacityCounts);
+            spotsCounts.setText(seatBucketsLabel(counts.getAvailableSpotsCounts()));
+            capacityCounts.setText(seatBucketsLabel(counts.getCapacityCounts()));
+            spotsCounts.setVisibility(View.VISIBLE);
+            capacityCounts.setVisibility(View.VISIBLE);
+        }
+
         EditText minAvail = v.findViewById(R.id.inputMinAvailable);
         EditText maxAvail = v.findViewById(R.id.inputMaxAvailable);
         EditText minCap   = v.findViewById(R.id.inputMinCapacity);
@@ -244,6 +357,19 @@ public class FilterDialogs {
                 .setNegativeButton("Cancel", null)
                 .show();
     }
+    // Lists the event count of each seat range, e.g. "0–9: 4 · 10–24: 7 · 500+: 1"
+    private static String seatBucketsLabel(int[] counts) {
+        int[] bounds = EventFacetCounts.SEAT_BUCKETS;
+        StringBuilder label = new StringBuilder();
+        for (int i = 0; i < bounds.length; i++) {
+            if (i > 0) label.append(" · ");
+            label.append(bounds[i]);
+            label.append(i + 1 < bounds.length ? "–" + (bounds[i + 1] - 1) : "+");
+            label.append(": ").append(counts[i]);
+        }
+        return label.toString();
+    }
+
     private static Integer parseIntOrNull(String s) {
         s = s.trim();
         return s.isEmpty() ? null : Integer.parseInt(s);
@@ -259,12 +385,16 @@ public class FilterDialogs {
     /* ===================== DISTANCE ===================== */
 
     // Displays a distance filter dialog using a slider.
-    // Requires a valid current location.
+    // Requires a valid current location. When counts are given, the label
+    // shows how many events the selected radius would return.
+    // "Nearest" shows the closest events instead, whatever their distance.
     public static void showDistance(
             Context ctx,
             Location currentLocation,
             Integer currentRadius,
-            DistanceCallback callback
+            EventFacetCounts counts,
+            DistanceCallback callback,
+            NearestCallback nearestCallback
     ) {
         if (currentLocation == null) {
             new AlertDialog.Builder(ctx)
@@ -279,10 +409,10 @@ public class FilterDialogs {
 
         int startRadius = currentRadius != null ? currentRadius : 10;
         slider.setValue(startRadius);
-        label.setText("Distance: " + startRadius + " km");
+        label.setText(distanceLabel(startRadius, counts));
 
         slider.addOnChangeListener((s, value, fromUser) -> {
-            label.setText("Distance: " + Math.round(value) + " km");
+            label.setText(distanceLabel(Math.round(value), counts));
         });
 
         new AlertDialog.Builder(ctx)
@@ -296,6 +426,22 @@ public class FilterDialogs {
                             radius
                     );
                 })
+                .setNeutralButton("Nearest", (d, w) -> {
+                    nearestCallback.onSelected(
+                            currentLocation.getLatitude(),
+                            currentLocation.getLongitude()
+                    );
+                })
                 .setNegativeButton("Cancel", null).show();
     }
+
+    // Builds the slider label, including the event count when known
+    private static String distanceLabel(int radiusKm, EventFacetCounts counts) {
+        String label = "Distance: " + radiusKm + " km";
+        int count = counts != null ? counts.getWithinKmCount(radiusKm) : -1;
+        if (count >= 0) {
+            label += " · " + count + " events";
+        }
+        return label;
+    }
 }
@@ -105,7 +105,7 @@ public class EditEventViewModel extends ViewModel {
                         return;
                     }
 
-                    Event event = doc.toObject(Event.class);
+                    Event event = EventRepository.toEvent(doc);
                     if (event == null) {
                         errorMessageRes.setValue(R.string.error_failed_to_load_event);
                         return;
@@ -99,7 +99,7 @@ public class EventDetailViewModel extends ViewModel {
                         return;
                     }
 
-                    Event event = doc.toObject(Event.class);
+                    Event event = EventRepository.toEvent(doc);
                     if (event == null) {
                         errorMessageResId.postValue(R.string.error_event_invalid_data);
                         return;
@@ -119,6 +119,7 @@ public class EventDetailViewModel extends ViewModel {
                             .addOnSuccessListener(events -> {
                                 boolean registered = events.contains(eventId);
                                 updateRegistrationState(event, registered);
+                                refreshReservedSeats(event, registered);
                                 isLoading.postValue(false);
                             })
                             .addOnFailureListener(e -> {
@@ -175,10 +176,11 @@ public class EventDetailViewModel extends ViewModel {
                                 // Reload event to update capacity and UI
                                 eventRepository.getEventById(eventId)
                                         .addOnSuccessListener(doc -> {
-                                            Event refreshed = doc.toObject(Event.class);
+                                            Event refreshed = EventRepository.toEvent(doc);
                                             if (refreshed != null) {
                                                 eventLiveData.postValue(refreshed);
                                                 updateRegistrationState(refreshed, true);
+                                                refreshReservedSeats(refreshed, true);
                                             }
                                         });
                             })
@@ -213,34 +215,43 @@ public class EventDetailViewModel extends ViewModel {
             return;
         }
 
-        userRepository.unregisterEventForUser(uid, eventId)
+        // Frees the seat and unregisters the user in one transaction
+        eventRepository.unregisterUser(eventId, uid)
                 .addOnSuccessListener(unused -> {
-
-                    // Decrease reserved count after successful cancellation
-                    eventRepository.decrementReserved(eventId)
-                            .addOnSuccessListener(v -> {
-                                uiEvent.postValue(UiEvent.CANCEL_SUCCESS);
-
-                                // Reload event data
-                                eventRepository.getEventById(eventId)
-                                        .addOnSuccessListener(doc -> {
-                                            Event refreshed = doc.toObject(Event.class);
-                                            if (refreshed != null) {
-                                                eventLiveData.postValue(refreshed);
-                                                updateRegistrationState(refreshed, false);
-                                            }
-                                        });
-
-                            })
-                            .addOnFailureListener(e ->
-                                    errorMessageResId.postValue(R.string.error_update_event_capacity_failed)
-                            );
+                    uiEvent.postValue(UiEvent.CANCEL_SUCCESS);
+
+                    // Reload event data
+                    eventRepository.getEventById(eventId)
+                            .addOnSuccessListener(doc -> {
+                                Event refreshed = EventRepository.toEvent(doc);
+                                if (refreshed != null) {
+                                    eventLiveData.postValue(refreshed);
+                                    updateRegistrationState(refreshed, false);
+                                    refreshReservedSeats(refreshed, false);
+                                }
+                            });
                 })
                 .addOnFailureListener(e ->
                         errorMessageResId.postValue(R.string.error_cancel_registration_failed)
                 );
     }
 
+    /**
+     * Replaces the event's seat count with the exact one summed from its
+     * seat shards. The count stored on the event document is only updated
+     * when a seat shard fills up or stops being full.
+     */
+    private void refreshReservedSeats(Event event, boolean isRegistered) {
+        eventRepository.getReservedSeats(eventId)
+                .addOnSuccessListener(reserved -> {
+                    if (reserved == event.getReserved()) return;
+
+                    event.setReserved(reserved);
+                    eventLiveData.postValue(event);
+                    updateRegistrationState(event, isRegistered);
+                });
+    }
+
     /**
      * Updates the registration-related UI state based on event status and user registration.
      */
@@ -4,12 +4,18 @@ import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 import com.example.jamming.model.Event;
+import com.example.jamming.model.EventCatalog;
+import com.example.jamming.model.EventFacetCounts;
 import com.example.jamming.model.EventFilter;
-import com.example.jamming.model.EventFilterEngine;
+import com.example.jamming.model.EventRanker;
 import com.example.jamming.repository.AuthRepository;
+import com.example.jamming.repository.EventQueryPlanner;
 import com.example.jamming.repository.EventRepository;
+import com.example.jamming.repository.EventSync;
 import com.example.jamming.repository.UserRepository;
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 
@@ -60,6 +66,7 @@ public class ExploreEventsViewModel extends ViewModel {
         this.authRepository = authRepository;
         this.userRepository = userRepository;
         this.eventRepository = eventRepository;
+        this.sync = new EventSync(eventRepository, new SyncListener());
     }
 
 
@@ -97,10 +104,52 @@ public class ExploreEventsViewModel extends ViewModel {
     private final MutableLiveData<List<Event>> filteredEvents = new MutableLiveData<>(new ArrayList<>());
 
     /**
-     * Internal list of all fetched events.
+     * Loaded events, with the state to filter, search and rank them.
      * Not exposed to the UI directly.
      */
-    private List<Event> allEvents = new ArrayList<>();
+    private final EventCatalog catalog = new EventCatalog();
+
+    /**
+     * Keeps {@link #catalog} up to date with the events the filter needs:
+     * fetches, syncs, follows changes live and caches them on the device.
+     */
+    private final EventSync sync;
+
+    /**
+     * Location of the "nearest events" mode, or null when the regular
+     * filter result is shown. Cleared whenever the filter changes.
+     */
+    private double[] nearestOrigin;
+
+    /** Number of events shown in the "nearest events" mode */
+    private int nearestCount;
+
+    /** Largest number of events shown on the map at once */
+    static final int MAX_VISIBLE_EVENTS = 100;
+
+    /**
+     * Last known location of the user, used to rank events by distance
+     * when the filter has no center; null until known.
+     */
+    private double[] userLocation;
+
+    /** Free-text search entered by the user; empty when not searching */
+    private String searchQuery = "";
+
+    /**
+     * Attaches the on-device event cache. Must be called before the first
+     * {@link #loadAllEvents()} to show cached events immediately.
+     *
+     * @param file file to store cached events in
+     */
+    public void attachDiskCache(File file) {
+        sync.attachDiskCache(file);
+    }
+
+    @Override
+    protected void onCleared() {
+        sync.close();
+    }
 
     /* ===== LiveData getters (read-only exposure) ===== */
     public LiveData<EmptyState> getEmptyState() {return emptyState;}
@@ -127,20 +176,71 @@ public class ExploreEventsViewModel extends ViewModel {
     }
 
     /**
-     * Loads all active events from the repository.
-     * Once loaded, the current filter is applied automatically.
+     * Marks past events as inactive in the background, unless another
+     * client already did so recently. Failures are ignored; the next
+     * client to start tries again.
+     */
+    public void sweepExpiredEvents() {
+        String uid = authRepository.getCurrentUid();
+        if (uid == null) return;
+
+        eventRepository.sweepExpiredEvents(uid);
+    }
+
+    /**
+     * Loads the active events the current filter needs, showing the
+     * on-device copy first and then only fetching what changed when
+     * possible (see {@link EventSync#load}). The current filter is
+     * applied automatically.
      */
     public void loadAllEvents() {
-        eventRepository.getActiveEvents()
-                .addOnSuccessListener(fetchedEvents -> {
-                    allEvents = fetchedEvents;
-                    applyFilter();
-                })
-                .addOnFailureListener(e -> {
-                    allEvents = new ArrayList<>();
-                    filteredEvents.setValue(new ArrayList<>());
-                    updateEmptyState();
-                });
+        sync.load(filter.getValue());
+    }
+
+    /**
+     * Starts following changes to the events live, e.g. while the screen
+     * is visible. Each change is applied to the loaded events in place,
+     * without re-reading or re-filtering the whole set.
+     */
+    public void startLiveUpdates() {
+        sync.startLiveUpdates(filter.getValue());
+    }
+
+    /**
+     * Stops following changes live and stores the events on the device.
+     */
+    public void stopLiveUpdates() {
+        sync.stopLiveUpdates();
+    }
+
+    /**
+     * Receives the loaded events from {@link #sync} and shows the ones
+     * matching the current filter.
+     */
+    private final class SyncListener implements EventSync.Listener {
+        @Override
+        public void onEventsLoaded(List<Event> events) {
+            catalog.setEvents(events);
+            applyFilter();
+        }
+
+        @Override
+        public void onEventsChanged(List<Event> changed, List<String> removedIds) {
+            catalog.applyChanges(changed, removedIds);
+            applyFilter();
+        }
+
+        @Override
+        public void onRefreshed() {
+            applyFilter();
+        }
+
+        @Override
+        public void onLoadFailed() {
+            catalog.setEvents(new ArrayList<>());
+            filteredEvents.setValue(new ArrayList<>());
+            updateEmptyState();
+        }
     }
 
     /**
@@ -185,13 +285,18 @@ public class ExploreEventsViewModel extends ViewModel {
     /**
      * Sets a new filter, applies it to the event list,
      * and optionally persists it for the current user.
+     * Events are fetched again when the new filter may match events
+     * that the last query excluded.
      *
      * @param newFilter the filter to apply
      * @param persist   whether the filter should be saved for future sessions
      */
     private void setFilter(EventFilter newFilter, boolean persist) {
+        nearestOrigin = null;
         filter.setValue(newFilter);
-        applyFilter();
+        if (sync.setFilter(newFilter)) {
+            applyFilter();
+        }
 
         if (persist) {
             String uid = authRepository.getCurrentUid();
@@ -202,24 +307,134 @@ public class ExploreEventsViewModel extends ViewModel {
     }
 
     /**
-     * Applies the current filter to the full event list
+     * Shows the events closest to a location instead of those within a radius.
+     * All other criteria of the current filter still apply. The mode stays
+     * active across reloads until the filter changes.
+     *
+     * @param lat latitude of the user's location
+     * @param lng longitude of the user's location
+     * @param count maximum number of events to show
+     */
+    public void showNearest(double lat, double lng, int count) {
+        nearestOrigin = new double[]{lat, lng};
+        nearestCount = count;
+        applyFilter();
+    }
+
+    /**
+     * Sets the user's location, used to rank events by distance.
+     *
+     * @param lat latitude of the user's location
+     * @param lng longitude of the user's location
+     */
+    public void setUserLocation(double lat, double lng) {
+        userLocation = new double[]{lat, lng};
+        applyFilter();
+    }
+
+    /**
+     * Sets the free-text search. Only events containing every word of the
+     * query (as a word prefix) in their name, genres, description or address
+     * are shown, best matches first, on top of the active filter.
+     *
+     * @param query text typed by the user; blank clears the search
+     */
+    public void setSearchQuery(String query) {
+        String normalized = query != null ? query.trim() : "";
+        if (normalized.equals(searchQuery)) return;
+
+        searchQuery = normalized;
+        applyFilter();
+    }
+
+    /**
+     * Applies the current filter to the loaded events
      * and updates the filtered events LiveData.
+     * Only the criteria the fetch query did not already enforce are checked
+     * (see {@link EventCatalog#filter}).
+     * An active search further narrows the result. At most
+     * {@link #MAX_VISIBLE_EVENTS} events are shown: the most relevant ones
+     * (see {@link EventRanker}), or the best search matches while searching.
      */
     private void applyFilter() {
-        EventFilter f = filter.getValue();
-        List<Event> result = EventFilterEngine.filter(allEvents, f);
-        filteredEvents.setValue(result);
+        // Even without a filter, only active, upcoming events are shown and ranked
+        EventFilter f = filter.getValue() != null ? filter.getValue() : new EventFilter();
+        long now = System.currentTimeMillis();
+        int[] positions = nearestOrigin != null
+                ? catalog.nearest(f, now, nearestOrigin[0], nearestOrigin[1], nearestCount)
+                : catalog.filter(sync.getPlan().residual(f, now), now);
+
+        if (!searchQuery.isEmpty()) {
+            // Nearest-events results keep their distance order
+            positions = catalog.search(positions, searchQuery, nearestOrigin != null);
+            if (positions.length > MAX_VISIBLE_EVENTS) {
+                positions = Arrays.copyOf(positions, MAX_VISIBLE_EVENTS);
+            }
+        } else if (nearestOrigin == null) {
+            positions = catalog.rank(positions, ranker(f, now), MAX_VISIBLE_EVENTS);
+        }
+        filteredEvents.setValue(catalog.materialize(positions));
         updateEmptyState();
     }
 
+    /**
+     * Creates the ranker ordering filter results by relevance. Distances
+     * are measured from the filter's center, or from the user's location.
+     *
+     * @param f active filter
+     * @param now current time in milliseconds
+     */
+    private EventRanker ranker(EventFilter f, long now) {
+        Double lat = null;
+        Double lng = null;
+        if (f.getCenterLat() != null && f.getCenterLng() != null) {
+            lat = f.getCenterLat();
+            lng = f.getCenterLng();
+        } else if (userLocation != null) {
+            lat = userLocation[0];
+            lng = userLocation[1];
+        }
+        return new EventRanker(now, lat, lng, f.genreMask());
+    }
+
+    /**
+     * Counts how many events each filter option would return,
+     * given the other criteria of the current filter.
+     * Used by the filter dialogs to show live counts next to each option.
+     * Counts cover the fetched events only, so options outside the genres,
+     * dates or distance pushed into the query are reported as unknown (-1)
+     * rather than as having no events.
+     *
+     * @param originLat latitude to measure distances from when the filter has no center (may be null)
+     * @param originLng longitude to measure distances from when the filter has no center (may be null)
+     * @return counts per filter option
+     */
+    public EventFacetCounts getFacetCounts(Double originLat, Double originLng) {
+        EventFilter f = filter.getValue() != null ? filter.getValue() : new EventFilter();
+        long now = System.currentTimeMillis();
+        EventFacetCounts counts = catalog.countFacets(f, now, originLat, originLng);
+        EventQueryPlanner.Plan fetchPlan = sync.getPlan();
+
+        // Distances are measured from the origin, or from the filter's center without one
+        double coveredKm = Double.POSITIVE_INFINITY;
+        if (originLat != null && originLng != null) {
+            coveredKm = fetchPlan.coveredRadiusKm(originLat, originLng);
+        } else if (f.getCenterLat() != null && f.getCenterLng() != null) {
+            coveredKm = fetchPlan.coveredRadiusKm(f.getCenterLat(), f.getCenterLng());
+        }
+        counts.restrictToFetched(fetchPlan.getGenreMask(), fetchPlan.getFrom(), fetchPlan.getTo(), coveredKm, now);
+        return counts;
+    }
+
     /**
      * Updates the empty state based on the current data:
      * - No events in the system
      * - Events exist but none match the filter
      * - Normal state with visible events
+     * An empty result of a query narrowed by the filter counts as "no matches".
      */
     private void updateEmptyState() {
-        if (allEvents.isEmpty()) {
+        if (catalog.isEmpty() && !sync.getPlan().isRestricted()) {
             emptyState.setValue(EmptyState.NO_EVENTS_AT_ALL);
         } else if (filteredEvents.getValue() == null ||
                 filteredEvents.getValue().isEmpty()) {
@@ -10,6 +10,7 @@ import com.example.jamming.repository.AuthRepository;
 import com.example.jamming.repository.EventRepository;
 import com.example.jamming.repository.UserRepository;
 import com.example.jamming.utils.NotificationHelper;
+import com.google.android.gms.tasks.Task;
 
 import java.util.Comparator;
 import java.util.ArrayList;
@@ -83,7 +84,8 @@ public class MyEventUserViewModel extends ViewModel {
         NONE,                   // Normal state, events loaded successfully
         NOT_LOGGED_IN,           // User is not authenticated
         NO_REGISTERED_EVENTS,    // User has no registered events
-        LOAD_ERROR               // Failed to load events or perform an action
+        LOAD_ERROR,              // Failed to load events or perform an action
+        PARTIAL_LOAD_ERROR       // Some registered events could not be loaded
     }
 
     /**
@@ -158,61 +160,45 @@ public class MyEventUserViewModel extends ViewModel {
     }
 
     /**
-     * Loads event documents by their IDs in chunks of up to 10,
-     * due to Firestore query limitations.
+     * Loads event documents by their IDs in one parallel batch.
+     * If some events could not be read, the others are still shown;
+     * if none could be, the load fails as a whole.
      *
      * @param ids list of event document IDs
      */
     private void loadEventsByIds(List<String> ids) {
-        List<EventWithId> result = new ArrayList<>();
+        eventRepository.batchGetEvents(ids)
+                .addOnSuccessListener(batch -> {
+                    List<EventWithId> result = new ArrayList<>();
+                    for (Event event : batch.getEvents()) {
+                        result.add(new EventWithId(event.getId(), event));
+                    }
 
-        // Firestore allows a maximum of 10 IDs in a whereIn query
-        int totalChunks = (int) Math.ceil(ids.size() / 10.0);
-        // Mutable counter to track how many chunks finished loading
-        int[] completedChunks = {0};
-
-        for (int i = 0; i < ids.size(); i += 10) {
-            // Extract a sublist of up to 10 IDs
-            List<String> chunk = ids.subList(i, Math.min(i + 10, ids.size()));
-
-            eventRepository.getEventsByIds(chunk)
-                    .addOnSuccessListener(snapshot -> {
-                        for (var doc : snapshot.getDocuments()) {
-                            Event event = doc.toObject(Event.class);
-                            if (event != null) {
-                                result.add(new EventWithId(doc.getId(), event));
-                            }
-                        }
-
-                        // Mark this chunk as completed
-                        completedChunks[0]++;
-
-                        if (completedChunks[0] == totalChunks) {
-                            myEvents.setValue(sortEventsLogically(result));
-                            state.setValue(MyEventsState.NONE);
-                        }
-                    })
-                    .addOnFailureListener(e ->
-                            state.setValue(MyEventsState.LOAD_ERROR)
-                    );
-        }
+                    myEvents.setValue(sortEventsLogically(result));
+                    state.setValue(batch.isComplete()
+                            ? MyEventsState.NONE
+                            : MyEventsState.PARTIAL_LOAD_ERROR);
+                })
+                .addOnFailureListener(e ->
+                        state.setValue(MyEventsState.LOAD_ERROR)
+                );
     }
 
     /**
      * Handles unregistering a user from an event.
      *
      * @param eventId        event ID
-     * @param updateReserved whether to decrement the reserved counter
+     * @param updateReserved whether to free the user's seat as well
      */
     private void unregister(String eventId, boolean updateReserved) {
         String uid = authRepository.getCurrentUid();
         if (uid == null) return;
 
-        userRepository.unregisterEventForUser(uid, eventId)
+        Task<Void> unregistered = updateReserved
+                ? eventRepository.unregisterUser(eventId, uid)
+                : userRepository.unregisterEventForUser(uid, eventId);
+        unregistered
                 .addOnSuccessListener(unused -> {
-                    if (updateReserved) {
-                        eventRepository.decrementReserved(eventId);
-                    }
                     cancelSuccess.setValue(true);
                     loadMyEvents();
                 })
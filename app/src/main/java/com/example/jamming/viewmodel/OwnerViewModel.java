@@ -7,6 +7,7 @@ import androidx.lifecycle.ViewModel;
 import com.example.jamming.R;
 import com.example.jamming.model.Event;
 import com.example.jamming.repository.AuthRepository;
+import com.example.jamming.repository.EventPage;
 import com.example.jamming.repository.EventRepository;
 import com.example.jamming.repository.UserRepository;
 
@@ -64,18 +65,29 @@ public class OwnerViewModel extends ViewModel {
     /** General message for UI feedback (errors, confirmations) */
     private final MutableLiveData<Integer> message = new MutableLiveData<>();
 
-    /** List of upcoming events created by the owner */
-    private final MutableLiveData<List<Event>> upcomingEvents = new MutableLiveData<>();
+    /** Number of events loaded per page */
+    static final int PAGE_SIZE = 20;
 
-    /** List of past events created by the owner */
-    private final MutableLiveData<List<Event>> pastEvents = new MutableLiveData<>();
+    /** Upcoming events created by the owner, loaded page by page */
+    private final PagedEvents upcoming = new PagedEvents(true);
+
+    /** Past events created by the owner, loaded page by page */
+    private final PagedEvents past = new PagedEvents(false);
+
+    /** Time the lists were (re)loaded at; splits upcoming from past for all pages */
+    private long loadedAt;
+
+    /** Incremented per reload, so that pages of a superseded load are ignored */
+    private int loadGeneration;
     private static final Set<String> notifiedEvents = new HashSet<>();
 
     /** Read-only accessors for the View */
     public LiveData<String> getOwnerName() { return ownerName; }
     public LiveData<Integer> getMessage() { return message; }
-    public LiveData<List<Event>> getUpcomingEvents() { return upcomingEvents; }
-    public LiveData<List<Event>> getPastEvents() { return pastEvents; }
+    public LiveData<List<Event>> getUpcomingEvents() { return upcoming.events; }
+    public LiveData<List<Event>> getPastEvents() { return past.events; }
+    public LiveData<Boolean> getHasMoreUpcomingEvents() { return upcoming.hasMore; }
+    public LiveData<Boolean> getHasMorePastEvents() { return past.hasMore; }
 
 
     /**
@@ -102,50 +114,77 @@ public class OwnerViewModel extends ViewModel {
     }
 
     /**
-     * Loads all events created by the current owner.
+     * Loads the first page of the current owner's events.
      *
      * Events are split into:
-     * - Upcoming events (future date)
-     * - Past events (already occurred)
+     * - Upcoming events (future date), from nearest to farthest
+     * - Past events (already occurred), from most recent to oldest
      *
-     * Each list is sorted by date for display purposes.
+     * Further pages are loaded with {@link #loadMoreUpcomingEvents()} and
+     * {@link #loadMorePastEvents()}.
      */
     public void loadOwnerEvents() {
-        String uid = authRepo.getCurrentUid();
-
-        if (uid == null) {
+        if (authRepo.getCurrentUid() == null) {
             message.setValue(R.string.error_user_not_logged_in);
             return;
         }
 
-        eventRepo.getOwnerEventsMapped(uid)
-                .addOnSuccessListener(events  -> {
+        loadGeneration++;
+        loadedAt = System.currentTimeMillis();
+        upcoming.reset();
+        past.reset();
+        loadPage(upcoming);
+        loadPage(past);
+    }
+
+    /**
+     * Loads the next page of upcoming events, if there is one.
+     */
+    public void loadMoreUpcomingEvents() {
+        if (upcoming.cursor != null) loadPage(upcoming);
+    }
+
+    /**
+     * Loads the next page of past events, if there is one.
+     */
+    public void loadMorePastEvents() {
+        if (past.cursor != null) loadPage(past);
+    }
 
-                    List<Event> upcoming = new ArrayList<>();
-                    List<Event> past = new ArrayList<>();
+    /**
+     * Fetches the next page of a list and appends it.
+     *
+     * @param list list to extend
+     */
+    private void loadPage(PagedEvents list) {
+        String uid = authRepo.getCurrentUid();
 
-                    long now = System.currentTimeMillis();
+        if (uid == null) {
+            message.setValue(R.string.error_user_not_logged_in);
+            return;
+        }
+        if (list.loading) return;
 
-                    for (Event event : events) {
-                        if (event.getDateTime() < now) {
-                            past.add(event);
-                        } else {
-                            upcoming.add(event);
-                        }
-                    }
+        int generation = loadGeneration;
+        list.loading = true;
 
-                    // Sort upcoming events from nearest to farthest
-                    upcoming.sort((a, b) ->
-                            Long.compare(a.getDateTime(), b.getDateTime()));
+        eventRepo.getOwnerEventsPage(uid, list.upcoming, loadedAt, list.cursor, PAGE_SIZE)
+                .addOnSuccessListener(page -> {
+                    if (generation != loadGeneration) return;
 
-                    // Sort past events from most recent to oldest
-                    past.sort((a, b) ->
-                            Long.compare(b.getDateTime(), a.getDateTime()));
+                    List<Event> events = new ArrayList<>(list.loaded);
+                    events.addAll(page.getEvents());
 
-                    upcomingEvents.setValue(upcoming);
-                    pastEvents.setValue(past);
+                    list.loaded = events;
+                    list.cursor = page.getCursor();
+                    list.loading = false;
+                    list.events.setValue(events);
+                    list.hasMore.setValue(page.hasMore());
                 })
                 .addOnFailureListener(e -> {
+                    if (generation != loadGeneration) return;
+
+                    list.loading = false;
                     message.setValue(R.string.error_failed_to_load_events);
                 });
     }
@@ -191,6 +230,25 @@ public class OwnerViewModel extends ViewModel {
         });
     }
 
+    /**
+     * Events of one list loaded so far, with the cursor to continue from.
+     */
+    private static final class PagedEvents {
+        final boolean upcoming;
+        final MutableLiveData<List<Event>> events = new MutableLiveData<>();
+        final MutableLiveData<Boolean> hasMore = new MutableLiveData<>(false);
+        List<Event> loaded = new ArrayList<>();
+        EventPage.Cursor cursor;
+        boolean loading;
+
+        PagedEvents(boolean upcoming) {
+            this.upcoming = upcoming;
+        }
 
-
+        void reset() {
+            loaded = new ArrayList<>();
+            cursor = null;
+            loading = false;
+        }
+    }
 }
@@ -0,0 +1,78 @@
+package com.example.jamming.model;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class EventCatalogTest {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    private EventCatalog catalog;
+    private long now;
+
+    @Before
+    public void setUp() {
+        now = System.currentTimeMillis();
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            events.add(event("e" + i, "Event " + i));
+        }
+        catalog = new EventCatalog();
+        catalog.setEvents(events);
+    }
+
+    private Event event(String id, String name) {
+        Event event = new Event("owner", name, "desc", List.of("Rock"), "address",
+                now + DAY, 50, 32.0, 34.8);
+        event.setId(id);
+        return event;
+    }
+
+    private List<String> matchingIds() {
+        List<String> ids = new ArrayList<>();
+        for (Event event : catalog.materialize(catalog.filter(new EventFilter(), now))) {
+            ids.add(event.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void applyChanges_updatesRemovesAndAppendsEvents() {
+        catalog.applyChanges(List.of(event("e1", "Renamed"), event("e9", "New")), List.of("e2"));
+
+        List<String> ids = matchingIds();
+        assertEquals(8, ids.size());
+        assertFalse(ids.contains("e2"));
+        assertTrue(ids.contains("e9"));
+        assertEquals(1, catalog.search(catalog.filter(new EventFilter(), now), "renamed", false).length);
+    }
+
+    @Test
+    public void applyChanges_manyRemovals_compactsStore() {
+        // Up to the share, removed events keep their rows
+        catalog.applyChanges(List.of(), List.of("e0", "e1"));
+        assertEquals("e7", catalog.materialize(new int[]{7}).get(0).getId());
+
+        catalog.applyChanges(List.of(), List.of("e2"));
+
+        // Rebuilt without the removed rows: e7 moved up
+        assertEquals("e7", catalog.materialize(new int[]{4}).get(0).getId());
+        assertEquals(List.of("e3", "e4", "e5", "e6", "e7"), matchingIds());
+    }
+
+    @Test
+    public void isEmpty_onlyRemovedEvents_isEmpty() {
+        List<String> all = new ArrayList<>();
+        for (int i = 0; i < 8; i++) all.add("e" + i);
+
+        catalog.applyChanges(List.of(), all);
+
+        assertTrue(catalog.isEmpty());
+        assertEquals(0, catalog.filter(new EventFilter(), now).length);
+    }
+}
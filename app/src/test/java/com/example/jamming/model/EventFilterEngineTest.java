@@ -0,0 +1,540 @@
+package com.example.jamming.model;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.example.jamming.utils.GeoUtils;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+
+public class EventFilterEngineTest {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    private List<Event> events;
+
+    @Before
+    public void setUp() {
+        events = new ArrayList<>();
+        Random random = new Random(42);
+        long future = System.currentTimeMillis() + DAY;
+
+        for (int i = 0; i < 2000; i++) {
+            events.add(new Event(
+                    "owner" + i,
+                    "Event " + i,
+                    "desc",
+                    List.of(i % 2 == 0 ? "Rock" : "Jazz"),
+                    "address",
+                    future + i * 60_000L,
+                    50,
+                    29.5 + random.nextDouble() * 3.5,
+                    34.2 + random.nextDouble() * 1.5
+            ));
+        }
+    }
+
+    // ------------------------
+    // spatial index
+    // ------------------------
+
+    @Test
+    public void filter_withSpatialIndex_matchesFullScan() {
+        EventStore store = new EventStore(events);
+        long now = System.currentTimeMillis();
+
+        for (int radius : new int[]{1, 5, 25, 80, 200}) {
+            EventFilter filter = new EventFilter();
+            filter.setLocation(32.08, 34.78, radius);
+
+            CompiledEventFilter compiled = CompiledEventFilter.compile(filter, now);
+            List<Event> scanned = new ArrayList<>();
+            for (int i = 0; i < store.size(); i++) {
+                if (compiled.matches(store, i)) scanned.add(store.get(i));
+            }
+
+            assertEquals(scanned, EventFilterEngine.filter(store, filter));
+        }
+    }
+
+    @Test
+    public void spatialIndex_queryAcrossAntimeridian_returnsBothSides() {
+        List<Event> list = new ArrayList<>();
+        list.add(new Event("o", "east", "", null, "", 0, 1, 0.0, 179.99));
+        list.add(new Event("o", "west", "", null, "", 0, 1, 0.0, -179.99));
+        list.add(new Event("o", "far", "", null, "", 0, 1, 0.0, 10.0));
+
+        int[] candidates = EventSpatialIndex.build(list).query(0.0, 180.0, 10);
+
+        assertArrayEquals(new int[]{0, 1}, candidates);
+    }
+
+    @Test
+    public void radiusMatcher_agreesWithHaversine() {
+        Random random = new Random(3);
+        double lat = 32.08;
+        double lng = 34.78;
+
+        for (double radius : new double[]{0.5, 5, 25, 200}) {
+            GeoUtils.RadiusMatcher circle = GeoUtils.radiusMatcher(lat, lng, radius);
+            for (int k = 0; k < 5000; k++) {
+                double pointLat = lat + (random.nextDouble() - 0.5) * radius / 40;
+                double pointLng = lng + (random.nextDouble() - 0.5) * radius / 40;
+
+                assertEquals(
+                        GeoUtils.calculateDistanceKm(lat, lng, pointLat, pointLng) <= radius,
+                        circle.matches(pointLat, pointLng));
+            }
+        }
+    }
+
+    @Test
+    public void nearestPositions_returnsClosestMatchesInDistanceOrder() {
+        EventStore store = new EventStore(events);
+        long now = System.currentTimeMillis();
+        EventFilter filter = new EventFilter();
+        filter.setMusicTypes(List.of(MusicGenre.ROCK));
+        filter.setLocation(32.08, 34.78, 1);
+
+        int[] nearest = EventFilterEngine.nearestPositions(store, filter, now, 32.08, 34.78, 15);
+
+        CompiledEventFilter compiled = CompiledEventFilter.compile(filter, now);
+        List<Double> distances = new ArrayList<>();
+        for (int i = 0; i < store.size(); i++) {
+            if (compiled.matchesIgnoring(CompiledEventFilter.Facet.DISTANCE, store, i)) {
+                Event e = store.get(i);
+                distances.add(GeoUtils.calculateDistanceKm(32.08, 34.78, e.getLatitude(), e.getLongitude()));
+            }
+        }
+        distances.sort(null);
+
+        assertEquals(15, nearest.length);
+        for (int k = 0; k < nearest.length; k++) {
+            Event e = store.get(nearest[k]);
+            assertEquals("Rock", e.getMusicTypes().get(0));
+            assertEquals(distances.get(k),
+                    GeoUtils.calculateDistanceKm(32.08, 34.78, e.getLatitude(), e.getLongitude()), 1e-9);
+        }
+    }
+
+    @Test
+    public void nearestPositions_highLatitude_findsPointPastRingInHigherRow() {
+        long future = System.currentTimeMillis() + DAY;
+        // Center near the top edge of its cell; the nearest point lies one
+        // row up and two cells east, just outside the first ring
+        double lat = 80.0499;
+        double lng = 0.0499;
+        List<Event> polar = new ArrayList<>();
+        polar.add(new Event("o", "same cell", "", List.of("Rock"), "", future, 10, 80.0001, 0.0499));
+        polar.add(new Event("o", "past ring", "", List.of("Rock"), "", future, 10, 80.0501, 0.1001));
+        polar.add(new Event("o", "far", "", List.of("Rock"), "", future, 10, 80.3, 0.3));
+        EventStore store = new EventStore(polar);
+
+        int[] nearest = EventFilterEngine.nearestPositions(
+                store, new EventFilter(), System.currentTimeMillis(), lat, lng, 1);
+
+        assertEquals(1, nearest.length);
+        assertEquals("past ring", store.get(nearest[0]).getName());
+    }
+
+    // ------------------------
+    // time index
+    // ------------------------
+
+    @Test
+    public void timeIndex_dateAndOvernightTimeRange_matchesFullScan() {
+        EventStore store = new EventStore(events);
+        long now = System.currentTimeMillis();
+        EventFilter filter = new EventFilter();
+        filter.setDateRange(now + DAY + 100 * 60_000L, now + DAY + 1500 * 60_000L);
+        filter.setTimeRange(22 * 60, 2 * 60);
+
+        CompiledEventFilter compiled = CompiledEventFilter.compile(filter, now);
+        List<Integer> scanned = new ArrayList<>();
+        for (int i = 0; i < store.size(); i++) {
+            if (compiled.matches(store, i)) scanned.add(i);
+        }
+
+        int[] indexed = store.getTimeIndex().query(
+                compiled.getEarliestStart(), compiled.getLatestStart(), true, 22 * 60, 2 * 60);
+        assertEquals(scanned.size(), indexed.length);
+        for (int k = 0; k < indexed.length; k++) {
+            assertEquals((int) scanned.get(k), indexed[k]);
+        }
+        assertArrayEquals(indexed, EventFilterEngine.filterPositions(store, filter, now));
+    }
+
+    @Test
+    public void candidates_noDateOrTimeCriterion_scansWithoutTimeIndex() {
+        EventStore store = new EventStore(events);
+        EventFilter filter = new EventFilter();
+        filter.setAvailableSpotsRange(10, null);
+
+        long now = System.currentTimeMillis();
+        assertNull(EventFilterEngine.candidates(store, CompiledEventFilter.compile(filter, now)));
+        assertEquals(events.size(), EventFilterEngine.filterPositions(store, filter, now).length);
+    }
+
+    // ------------------------
+    // compiled filter
+    // ------------------------
+
+    @Test
+    public void compiledFilter_dropsPastAndInactiveEvents() {
+        long now = System.currentTimeMillis();
+        Event past = new Event("o", "past", "", null, "", now - DAY, 10, 0, 0);
+        Event inactive = new Event("o", "inactive", "", null, "", now + DAY, 10, 0, 0);
+        inactive.setActive(false);
+        Event upcoming = new Event("o", "upcoming", "", null, "", now + DAY, 10, 0, 0);
+
+        EventStore store = new EventStore(List.of(past, inactive, upcoming));
+        CompiledEventFilter compiled = CompiledEventFilter.compile(new EventFilter(), now);
+
+        assertFalse(compiled.matches(store, 0));
+        assertFalse(compiled.matches(store, 1));
+        assertTrue(compiled.matches(store, 2));
+        assertEquals(List.of(CompiledEventFilter.Facet.STATUS), compiled.getFacets());
+    }
+
+    @Test
+    public void compiledFilter_skipsUnsetCriteriaAndPutsDistanceLast() {
+        EventFilter filter = new EventFilter();
+        filter.setLocation(32.0, 34.8, 10);
+        filter.setCapacityRange(10, null);
+
+        List<CompiledEventFilter.Facet> facets =
+                CompiledEventFilter.compile(filter, System.currentTimeMillis()).getFacets();
+
+        assertEquals(3, facets.size());
+        assertEquals(CompiledEventFilter.Facet.DISTANCE, facets.get(2));
+    }
+
+    @Test
+    public void filter_combinedCriteria_matchesEachCriterionAlone() {
+        EventFilter filter = new EventFilter();
+        filter.setMusicTypes(List.of(MusicGenre.ROCK));
+        filter.setLocation(31.0, 34.8, 60);
+        filter.setAvailableSpotsRange(1, 100);
+
+        List<Event> result = EventFilterEngine.filter(events, filter);
+
+        assertFalse(result.isEmpty());
+        for (Event e : result) {
+            assertEquals("Rock", e.getMusicTypes().get(0));
+        }
+    }
+
+    // ------------------------
+    // genre mask
+    // ------------------------
+
+    @Test
+    public void genreMask_computedFromDisplayNamesIgnoringUnknownValues() {
+        Event event = new Event();
+        event.setMusicTypes(List.of("Rock", "open mic", "Polka"));
+
+        assertEquals(MusicGenre.ROCK.getMask() | MusicGenre.OPENMIC.getMask(), event.genreMask());
+        assertEquals(List.of(MusicGenre.ROCK, MusicGenre.OPENMIC), event.getMusicGenresEnum());
+        assertNull(MusicGenre.fromDisplayNameOrNull("Polka"));
+    }
+
+    @Test
+    public void filter_byGenre_usesAnyMatch() {
+        EventFilter filter = new EventFilter();
+        filter.setMusicTypes(List.of(MusicGenre.JAZZ, MusicGenre.POP));
+
+        List<Event> result = EventFilterEngine.filter(events, filter);
+
+        assertEquals(events.size() / 2, result.size());
+        for (Event e : result) {
+            assertEquals("Jazz", e.getMusicTypes().get(0));
+        }
+    }
+
+    // ------------------------
+    // facet counts
+    // ------------------------
+
+    @Test
+    public void facetCounts_matchFilteringEachOption() {
+        EventStore store = new EventStore(events);
+        long now = System.currentTimeMillis();
+        EventFilter filter = new EventFilter();
+        filter.setMusicTypes(List.of(MusicGenre.JAZZ));
+        filter.setTimeRange(0, 12 * 60);
+
+        EventFacetCounts counts = EventFacetCounts.compute(store, filter, now, 32.08, 34.78);
+
+        for (MusicGenre genre : new MusicGenre[]{MusicGenre.ROCK, MusicGenre.JAZZ, MusicGenre.POP}) {
+            EventFilter single = new EventFilter();
+            single.setMusicTypes(List.of(genre));
+            single.setTimeRange(0, 12 * 60);
+            assertEquals(EventFilterEngine.filterPositions(store, single, now).length,
+                    counts.getGenreCount(genre));
+        }
+
+        for (int radius : new int[]{5, 50, 200}) {
+            EventFilter withRadius = new EventFilter();
+            withRadius.setMusicTypes(List.of(MusicGenre.JAZZ));
+            withRadius.setTimeRange(0, 12 * 60);
+            withRadius.setLocation(32.08, 34.78, radius);
+            assertEquals(EventFilterEngine.filterPositions(store, withRadius, now).length,
+                    counts.getWithinKmCount(radius));
+        }
+    }
+
+    @Test
+    public void facetCounts_restrictedToFetched_hideUncoveredOptions() {
+        EventStore store = new EventStore(events);
+        long now = System.currentTimeMillis();
+        EventFacetCounts counts = EventFacetCounts.compute(store, new EventFilter(), now, 32.08, 34.78);
+        int rockCount = counts.getGenreCount(MusicGenre.ROCK);
+        int[] days = counts.getDayCounts();
+
+        // Fetched: rock only, from the start of the third day to the end of the fifth, within 50 km
+        long thirdDayStart = dayStart(now, 2);
+        long fifthDayEnd = dayStart(now, 5) - 1;
+        counts.restrictToFetched(MusicGenre.ROCK.getMask(), thirdDayStart, fifthDayEnd, 50, now);
+
+        assertEquals(rockCount, counts.getGenreCount(MusicGenre.ROCK));
+        assertEquals(-1, counts.getGenreCount(MusicGenre.JAZZ));
+
+        int[] restricted = counts.getDayCounts();
+        for (int day = 0; day < restricted.length; day++) {
+            assertEquals(day >= 2 && day <= 4 ? days[day] : -1, restricted[day]);
+        }
+        assertEquals(-1, counts.getDateRangeCount(now, fifthDayEnd));
+        assertEquals(days[2] + days[3] + days[4], counts.getDateRangeCount(thirdDayStart, fifthDayEnd));
+
+        assertTrue(counts.getWithinKmCount(50) >= 0);
+        assertEquals(-1, counts.getWithinKmCount(51));
+    }
+
+    /** Local midnight the given number of days after the day of a time */
+    private static long dayStart(long millis, int days) {
+        Calendar c = Calendar.getInstance();
+        c.setTimeInMillis(millis);
+        c.set(Calendar.HOUR_OF_DAY, 0);
+        c.set(Calendar.MINUTE, 0);
+        c.set(Calendar.SECOND, 0);
+        c.set(Calendar.MILLISECOND, 0);
+        c.add(Calendar.DAY_OF_MONTH, days);
+        return c.getTimeInMillis();
+    }
+
+    // ------------------------
+    // result cache
+    // ------------------------
+
+    @Test
+    public void eventFilter_equality_ignoresGenreOrder() {
+        EventFilter a = new EventFilter();
+        a.setMusicTypes(List.of(MusicGenre.ROCK, MusicGenre.JAZZ));
+        a.setTimeRange(600, 1200);
+        EventFilter b = new EventFilter();
+        b.setMusicTypes(new ArrayList<>(List.of(MusicGenre.JAZZ, MusicGenre.ROCK)));
+        b.setTimeRange(600, 1200);
+
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+
+        b.setTimeRange(600, 1201);
+        assertNotEquals(a, b);
+    }
+
+    @Test
+    public void filterResultCache_keepsCopyAndDropsStartedEvents() {
+        long now = System.currentTimeMillis();
+        EventStore store = new EventStore(List.of(
+                new Event("o", "soon", "", null, "", now + 1000, 10, 0, 0),
+                new Event("o", "later", "", null, "", now + DAY, 10, 0, 0)));
+        FilterResultCache cache = new FilterResultCache(store, 2);
+        EventFilter filter = new EventFilter();
+
+        cache.put(filter, new int[]{0, 1});
+        filter.setCapacityRange(5, null);
+
+        assertNull(cache.get(filter, now));
+        assertArrayEquals(new int[]{0, 1}, cache.get(new EventFilter(), now));
+        assertArrayEquals(new int[]{1}, cache.get(new EventFilter(), now + 2000));
+    }
+
+    // ------------------------
+    // text search
+    // ------------------------
+
+    @Test
+    public void searchIndex_matchesAllWordsAndRanksNameFirst() {
+        long future = System.currentTimeMillis() + DAY;
+        EventSearchIndex index = new EventSearchIndex();
+        index.addAll(List.of(
+                new Event("o", "Blues jam", "Open jam for everyone", List.of("Blues"), "Haifa port", future, 10, 0, 0),
+                new Event("o", "Friday session", "Jazz standards jam", List.of("Jazz"), "Tel Aviv", future, 10, 0, 0),
+                new Event("o", "Jazz night", "Live trio", List.of("Jazz"), "Jerusalem", future, 10, 0, 0)));
+
+        // Name match (2) beats genre and description matches (1)
+        assertArrayEquals(new int[]{2, 1}, index.search("JAZZ"));
+        assertArrayEquals(new int[]{0, 1}, index.search("jam"));
+        assertArrayEquals(new int[]{1}, index.search("ja stand"));
+        assertArrayEquals(new int[]{2}, index.search("jerusalem"));
+        assertArrayEquals(new int[0], index.search("jerusalemx"));
+        assertArrayEquals(new int[0], index.search("  "));
+
+        // Events added later are found too
+        index.add(new Event("o", "Jazz brunch", "", null, "", future, 10, 0, 0));
+        assertArrayEquals(new int[]{2, 3, 1}, index.search("jazz"));
+    }
+
+    // ------------------------
+    // ranking
+    // ------------------------
+
+    @Test
+    public void ranker_top_matchesFullSortOfScores() {
+        EventStore store = new EventStore(events);
+        EventRanker ranker = new EventRanker(
+                System.currentTimeMillis(), 32.0, 34.8, MusicGenre.JAZZ.getMask());
+
+        List<Integer> all = new ArrayList<>();
+        for (int i = 0; i < store.size(); i++) all.add(i);
+        all.sort((a, b) -> {
+            int byScore = Double.compare(ranker.score(store, b), ranker.score(store, a));
+            return byScore != 0 ? byScore : Integer.compare(a, b);
+        });
+
+        int[] top = ranker.top(store, null, 50);
+        assertEquals(50, top.length);
+        for (int k = 0; k < top.length; k++) {
+            assertEquals((int) all.get(k), top[k]);
+        }
+
+        // Closer is better when everything else is equal
+        long start = System.currentTimeMillis() + DAY;
+        EventStore pair = new EventStore(List.of(
+                new Event("o", "far", "", null, "", start, 10, 33.0, 34.8),
+                new Event("o", "near", "", null, "", start, 10, 32.01, 34.8)));
+        assertArrayEquals(new int[]{1, 0}, ranker.top(pair, new int[]{0, 1}, 5));
+    }
+
+    // ------------------------
+    // incremental filtering
+    // ------------------------
+
+    @Test
+    public void incrementalFilter_sequenceOfChanges_matchesFreshFilter() {
+        EventStore store = new EventStore(events);
+        IncrementalEventFilter incremental = new IncrementalEventFilter(store);
+        EventFilter filter = new EventFilter();
+        Random random = new Random(7);
+        long now = System.currentTimeMillis();
+
+        for (int step = 0; step < 200; step++) {
+            switch (random.nextInt(5)) {
+                case 0:
+                    filter.setLocation(31.0 + random.nextDouble(), 34.8, random.nextInt(4) == 0 ? null : 5 + random.nextInt(150));
+                    break;
+                case 1:
+                    filter.setMusicTypes(random.nextBoolean() ? List.of(MusicGenre.ROCK) : new ArrayList<>());
+                    break;
+                case 2:
+                    long from = now + random.nextInt(2000) * 60_000L;
+                    filter.setDateRange(from, from + DAY / 4 + random.nextInt(2000) * 60_000L);
+                    break;
+                case 3:
+                    filter.setTimeRange(random.nextInt(1440), random.nextInt(1440));
+                    break;
+                default:
+                    filter.setCapacityRange(random.nextBoolean() ? null : 40 + random.nextInt(20), null);
+                    break;
+            }
+
+            assertArrayEquals(
+                    EventFilterEngine.filterPositions(store, filter, now),
+                    incremental.apply(filter, now));
+        }
+    }
+
+    @Test
+    public void incrementalFilter_refreshAfterStoreUpdate_matchesFreshFilter() {
+        EventStore store = new EventStore(events);
+        IncrementalEventFilter incremental = new IncrementalEventFilter(store);
+        EventFilter filter = new EventFilter();
+        filter.setLocation(31.5, 34.8, 60);
+        filter.setMusicTypes(List.of(MusicGenre.ROCK));
+        filter.setAvailableSpotsRange(1, null);
+        Random random = new Random(11);
+        long now = System.currentTimeMillis();
+        incremental.apply(filter, now);
+
+        for (int step = 0; step < 200; step++) {
+            int position = random.nextInt(store.size());
+            Event changed = store.get(position);
+            Event event = new Event(changed.getOwnerId(), changed.getName(), "",
+                    List.of(random.nextBoolean() ? "Rock" : "Jazz"), "", changed.getDateTime(), 50,
+                    29.5 + random.nextDouble() * 3.5, 34.2 + random.nextDouble() * 1.5);
+            event.setReserved(random.nextInt(51));
+            event.setActive(random.nextInt(10) != 0);
+
+            store.update(position, event);
+            incremental.refresh(position);
+
+            assertArrayEquals(
+                    EventFilterEngine.filterPositions(store, filter, now),
+                    incremental.apply(filter, now));
+        }
+
+        // Widening afterwards still finds updated events rejected by distance
+        filter.setLocation(31.5, 34.8, 200);
+        assertArrayEquals(
+                EventFilterEngine.filterPositions(store, filter, now),
+                incremental.apply(filter, now));
+    }
+
+    // ------------------------
+    // parallel filtering
+    // ------------------------
+
+    @Test
+    public void filter_parallel_matchesSequentialOrder() {
+        EventStore store = new EventStore(events);
+        EventFilter filter = new EventFilter();
+        filter.setMusicTypes(List.of(MusicGenre.ROCK));
+        filter.setTimeRange(600, 1200);
+        long now = System.currentTimeMillis();
+
+        int threshold = EventFilterEngine.getParallelThreshold();
+        try {
+            EventFilterEngine.setParallelThreshold(Integer.MAX_VALUE);
+            int[] sequential = EventFilterEngine.filterPositions(store, filter, now);
+
+            EventFilterEngine.setParallelThreshold(1);
+            assertArrayEquals(sequential, EventFilterEngine.filterPositions(store, filter, now));
+            assertArrayEquals(sequential, new IncrementalEventFilter(store).apply(filter, now));
+        } finally {
+            EventFilterEngine.setParallelThreshold(threshold);
+        }
+    }
+
+    @Test
+    public void compiledFilter_compare_detectsNarrowingAndWidening() {
+        long now = System.currentTimeMillis();
+        EventFilter filter = new EventFilter();
+        filter.setLocation(32.0, 34.8, 20);
+        CompiledEventFilter wide = CompiledEventFilter.compile(filter, now);
+
+        filter.setLocation(32.0, 34.8, 10);
+        CompiledEventFilter narrow = CompiledEventFilter.compile(filter, now);
+
+        assertEquals(CompiledEventFilter.Change.NARROWER,
+                narrow.compare(CompiledEventFilter.Facet.DISTANCE, wide));
+        assertEquals(CompiledEventFilter.Change.WIDER,
+                wide.compare(CompiledEventFilter.Facet.DISTANCE, narrow));
+        assertEquals(CompiledEventFilter.Change.SAME,
+                wide.compare(CompiledEventFilter.Facet.GENRE, narrow));
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.jamming.model;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class EventMapperTest {
+
+    /**
+     * Builds a document map the way Firestore returns it: whole numbers
+     * as Long, fractions as Double.
+     */
+    private static Map<String, Object> storedEvent() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("id", "stale-id");
+        data.put("ownerId", "owner1");
+        data.put("name", "Jam Night");
+        data.put("description", "Live music");
+        data.put("musicTypes", new ArrayList<>(List.of("Rock", "Jazz")));
+        data.put("address", "Tel Aviv");
+        data.put("dateTime", 1_700_000_000_000L);
+        data.put("maxCapacity", 100L);
+        data.put("reserved", 7L);
+        data.put("active", true);
+        data.put("latitude", 32.08);
+        data.put("longitude", 34.78);
+        data.put("geohash", "sv8wrq");
+        data.put("participants", new ArrayList<>(List.of("u1", "u2")));
+        data.put("availableSpots", 93L);
+        data.put("updatedAt", new Object());
+        return data;
+    }
+
+    @Test
+    public void fromMap_mapsEveryProperty() {
+        Event event = EventMapper.fromMap("e1", storedEvent());
+
+        assertEquals("e1", event.getId());
+        assertEquals("owner1", event.getOwnerId());
+        assertEquals("Jam Night", event.getName());
+        assertEquals("Live music", event.getDescription());
+        assertEquals(List.of("Rock", "Jazz"), event.getMusicTypes());
+        assertEquals(MusicGenre.maskOfDisplayNames(List.of("Rock", "Jazz")), event.genreMask());
+        assertEquals("Tel Aviv", event.getAddress());
+        assertEquals(1_700_000_000_000L, event.getDateTime());
+        assertEquals(100, event.getMaxCapacity());
+        assertEquals(7, event.getReserved());
+        assertTrue(event.isActive());
+        assertEquals(32.08, event.getLatitude(), 0);
+        assertEquals(34.78, event.getLongitude(), 0);
+        assertEquals("sv8wrq", event.getGeohash());
+        assertEquals(List.of("u1", "u2"), event.getParticipants());
+    }
+
+    @Test
+    public void fromMap_missingFields_keepDefaults() {
+        Event event = EventMapper.fromMap("e1", new HashMap<>());
+
+        assertEquals("e1", event.getId());
+        assertNull(event.getName());
+        assertTrue(event.getMusicTypes().isEmpty());
+        assertEquals(0, event.getMaxCapacity());
+        assertFalse(event.isActive());
+        assertNull(event.getParticipants());
+    }
+
+    @Test
+    public void fromMap_wrongTypes_areSkipped() {
+        Map<String, Object> data = storedEvent();
+        data.put("name", 42L);
+        data.put("reserved", "seven");
+        data.put("latitude", 32L);
+
+        Event event = EventMapper.fromMap("e1", data);
+
+        assertNull(event.getName());
+        assertEquals(0, event.getReserved());
+        assertEquals(32.0, event.getLatitude(), 0);
+        assertEquals(100, event.getMaxCapacity());
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.jamming.repository;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.example.jamming.model.MusicGenre;
+import com.example.jamming.utils.GeoHashUtils;
+import com.google.firebase.firestore.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.List;
+import java.util.Map;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EventExpirySweeperTest {
+
+    @Mock FirebaseFirestore mockDb;
+    @Mock CollectionReference mockMaintenance;
+    @Mock DocumentReference mockLease;
+    @Mock Transaction mockTransaction;
+    @Mock DocumentSnapshot mockLeaseSnap;
+
+    private EventExpirySweeper sweeper;
+
+    @Before
+    public void setUp() {
+        sweeper = new EventExpirySweeper(mockDb);
+
+        lenient().when(mockDb.collection("maintenance")).thenReturn(mockMaintenance);
+        lenient().when(mockMaintenance.document("eventExpirySweep")).thenReturn(mockLease);
+    }
+
+    /**
+     * Runs the lease transaction body against the mocked transaction.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean runLeaseTransaction(long now) throws Exception {
+        ArgumentCaptor<Transaction.Function<Boolean>> body =
+                ArgumentCaptor.forClass(Transaction.Function.class);
+        when(mockDb.runTransaction(body.capture())).thenReturn(null);
+
+        sweeper.acquireLease("client1", now);
+        return body.getValue().apply(mockTransaction);
+    }
+
+    // ------------------------
+    // acquireLease
+    // ------------------------
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void acquireLease_expired_takesLeaseForOneInterval() throws Exception {
+        long now = 1_000_000L;
+        when(mockTransaction.get(mockLease)).thenReturn(mockLeaseSnap);
+        when(mockLeaseSnap.getLong("leaseUntil")).thenReturn(now - 1);
+
+        assertTrue(runLeaseTransaction(now));
+
+        ArgumentCaptor<Map<String, Object>> written = ArgumentCaptor.forClass(Map.class);
+        verify(mockTransaction).set(eq(mockLease), written.capture(), any(SetOptions.class));
+        assertEquals(now + EventExpirySweeper.SWEEP_INTERVAL_MILLIS, written.getValue().get("leaseUntil"));
+        assertEquals("client1", written.getValue().get("holder"));
+    }
+
+    @Test
+    public void acquireLease_heldByAnotherClient_leavesItAlone() throws Exception {
+        long now = 1_000_000L;
+        when(mockTransaction.get(mockLease)).thenReturn(mockLeaseSnap);
+        when(mockLeaseSnap.getLong("leaseUntil")).thenReturn(now + 1);
+
+        assertFalse(runLeaseTransaction(now));
+
+        verify(mockTransaction, never()).set(any(DocumentReference.class), any(), any(SetOptions.class));
+    }
+
+    // ------------------------
+    // geohash backfill
+    // ------------------------
+
+    @Test
+    public void addGeohashes_writesOnlyMissingGeohashes() {
+        WriteBatch batch = mock(WriteBatch.class);
+        DocumentReference oldRef = mock(DocumentReference.class);
+
+        DocumentSnapshot old = mock(DocumentSnapshot.class);
+        when(old.getReference()).thenReturn(oldRef);
+        when(old.getDouble("latitude")).thenReturn(32.0);
+        when(old.getDouble("longitude")).thenReturn(34.8);
+
+        DocumentSnapshot current = mock(DocumentSnapshot.class);
+        when(current.getDouble("latitude")).thenReturn(32.0);
+        when(current.getDouble("longitude")).thenReturn(34.8);
+        when(current.getString("geohash")).thenReturn("sv8wrq");
+
+        assertEquals(1, EventExpirySweeper.addGeohashes(batch, List.of(old, current)));
+
+        verify(batch).update(oldRef, "geohash", GeoHashUtils.encode(32.0, 34.8));
+        verifyNoMoreInteractions(batch);
+    }
+
+    // ------------------------
+    // genre backfill
+    // ------------------------
+
+    @Test
+    public void addCanonicalGenres_renamesOnlyNonCanonicalGenres() {
+        WriteBatch batch = mock(WriteBatch.class);
+        DocumentReference oldRef = mock(DocumentReference.class);
+
+        DocumentSnapshot old = mock(DocumentSnapshot.class);
+        when(old.getReference()).thenReturn(oldRef);
+        when(old.get("musicTypes")).thenReturn(List.of("hip hop", "Rock"));
+
+        DocumentSnapshot current = mock(DocumentSnapshot.class);
+        when(current.get("musicTypes")).thenReturn(List.of(MusicGenre.ROCK.getDisplayName()));
+
+        assertEquals(1, EventExpirySweeper.addCanonicalGenres(batch, List.of(old, current)));
+
+        verify(batch).update(eq(oldRef),
+                eq("musicTypes"), eq(List.of(MusicGenre.HIP_HOP.getDisplayName(), MusicGenre.ROCK.getDisplayName())),
+                eq("updatedAt"), any());
+        verifyNoMoreInteractions(batch);
+    }
+}
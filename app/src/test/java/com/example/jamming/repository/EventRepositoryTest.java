@@ -5,16 +5,22 @@ import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 import com.example.jamming.model.Event;
+import com.example.jamming.model.EventFilter;
+import com.example.jamming.model.MusicGenre;
+import com.example.jamming.utils.GeoHashUtils;
 import com.google.android.gms.tasks.Task;
 import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
 import com.google.firebase.firestore.*;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +33,7 @@ public class EventRepositoryTest {
     @Mock DocumentReference mockAutoDoc;
     @Mock DocumentReference mockEventDoc;
     @Mock Query mockQuery;
+    @Mock WriteBatch mockBatch;
 
     private EventRepository repo;
 
@@ -58,16 +65,23 @@ public class EventRepositoryTest {
         );
 
         when(mockAutoDoc.getId()).thenReturn("event-id-1");
-        when(mockAutoDoc.set(any(Event.class)))
-                .thenReturn(Tasks.forResult(null));
+        CollectionReference shards = mock(CollectionReference.class);
+        when(mockAutoDoc.collection("seatShards")).thenReturn(shards);
+        when(shards.document(anyString())).thenReturn(mock(DocumentReference.class));
+        when(mockDb.batch()).thenReturn(mockBatch);
+        when(mockBatch.commit()).thenReturn(Tasks.forResult(null));
 
         Task<Void> task = repo.createEvent(event);
 
         assertTrue(task.isSuccessful());
         assertEquals("event-id-1", event.getId());
+        assertEquals(GeoHashUtils.encode(32.0, 34.8), event.getGeohash());
 
         verify(mockEventsCollection).document();
-        verify(mockAutoDoc).set(event);
+        verify(mockBatch).set(mockAutoDoc, event);
+        verify(mockBatch).update(eq(mockAutoDoc), eq("updatedAt"), any(FieldValue.class));
+        verify(mockBatch, times(SeatShardCounter.SHARDS)).set(any(DocumentReference.class), isA(Map.class));
+        verify(mockBatch).commit();
     }
 
     // ------------------------
@@ -109,6 +123,72 @@ public class EventRepositoryTest {
         verify(mockQuery).get();
     }
 
+    @Test
+    public void batchGetEvents_allCached_servedWithoutQuery() {
+        cacheEvent("e1", "First");
+        cacheEvent("e2", "Second");
+
+        Task<EventRepository.EventBatch> task = repo.batchGetEvents(List.of("e2", "e1", "e2"));
+
+        assertTrue(task.isSuccessful());
+        List<Event> events = task.getResult().getEvents();
+        assertEquals(2, events.size());
+        assertEquals("e2", events.get(0).getId());
+        assertEquals("Second", events.get(0).getName());
+        assertEquals("e1", events.get(1).getId());
+        assertTrue(task.getResult().isComplete());
+        verify(mockEventsCollection, never()).whereIn(any(FieldPath.class), anyList());
+    }
+
+    @Test
+    public void batchGetEvents_everyChunkFails_failsTask() {
+        Exception error = new RuntimeException("unavailable");
+        when(mockEventsCollection.whereIn(any(FieldPath.class), anyList())).thenReturn(mockQuery);
+        when(mockQuery.get()).thenReturn(Tasks.forException(error));
+
+        Task<EventRepository.EventBatch> task = repo.batchGetEvents(List.of("e1", "e2"));
+
+        assertFalse(task.isSuccessful());
+        assertSame(error, task.getException());
+    }
+
+    @Test
+    public void getEventById_cached_servedWithoutRead() {
+        DocumentSnapshot snap = mock(DocumentSnapshot.class);
+        when(mockEventDoc.get()).thenReturn(Tasks.forResult(snap));
+
+        repo.getEventById("e1");
+        Task<DocumentSnapshot> task = repo.getEventById("e1");
+
+        assertSame(snap, task.getResult());
+        verify(mockEventDoc, times(1)).get();
+    }
+
+    @Test
+    public void updateEvent_dropsEventFromCache() {
+        DocumentReadCoalescer reads = DocumentReadCoalescer.of(mockDb);
+        reads.put("events/e1", mock(DocumentSnapshot.class), reads.version("events/e1"));
+        when(mockEventDoc.update(anyMap())).thenReturn(Tasks.forResult(null));
+
+        repo.updateEvent("e1", new HashMap<>());
+
+        assertNull(reads.peek("events/e1", System.currentTimeMillis()));
+    }
+
+    /**
+     * Puts an event document into the read cache, as if just read.
+     */
+    private void cacheEvent(String id, String name) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("name", name);
+        DocumentSnapshot doc = mock(DocumentSnapshot.class);
+        when(doc.getId()).thenReturn(id);
+        when(doc.getData()).thenReturn(data);
+
+        DocumentReadCoalescer reads = DocumentReadCoalescer.of(mockDb);
+        reads.put("events/" + id, doc, reads.version("events/" + id));
+    }
+
     // ------------------------
     // getEventsByOwner
     // ------------------------
@@ -127,6 +207,174 @@ public class EventRepositoryTest {
         verify(mockQuery).get();
     }
 
+    // ------------------------
+    // getOwnerEventsPage
+    // ------------------------
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void getOwnerEventsPage_pastEvents_queriesNewestFirstWithLimit() {
+        Task<QuerySnapshot> pending = mock(Task.class);
+
+        when(mockEventsCollection.whereEqualTo("ownerId", "owner1")).thenReturn(mockQuery);
+        when(mockQuery.whereLessThan("dateTime", 1000L)).thenReturn(mockQuery);
+        when(mockQuery.orderBy("dateTime", Query.Direction.DESCENDING)).thenReturn(mockQuery);
+        when(mockQuery.limit(20)).thenReturn(mockQuery);
+        when(mockQuery.get()).thenReturn(pending);
+
+        repo.getOwnerEventsPage("owner1", false, 1000L, null, 20);
+
+        verify(mockQuery).orderBy("dateTime", Query.Direction.DESCENDING);
+        verify(mockQuery).limit(20);
+        verify(mockQuery, never()).startAfter(any(DocumentSnapshot.class));
+        verify(pending).continueWith(any());
+    }
+
+    // ------------------------
+    // listenToEventChanges
+    // ------------------------
+
+    @Test
+    public void listenToEventChanges_listensToChangesAndTombstonesUntilStopped() {
+        long now = System.currentTimeMillis();
+        ListenerRegistration changesRegistration = mock(ListenerRegistration.class);
+        ListenerRegistration tombstonesRegistration = mock(ListenerRegistration.class);
+        CollectionReference tombstones = mock(CollectionReference.class);
+        Query tombstoneQuery = mock(Query.class);
+
+        when(mockEventsCollection.whereGreaterThan(eq("updatedAt"), any())).thenReturn(mockQuery);
+        when(mockQuery.whereGreaterThanOrEqualTo("dateTime", now)).thenReturn(mockQuery);
+        when(mockQuery.orderBy("dateTime")).thenReturn(mockQuery);
+        when(mockQuery.addSnapshotListener(any())).thenReturn(changesRegistration);
+        when(mockDb.collection("eventTombstones")).thenReturn(tombstones);
+        when(tombstones.whereGreaterThan(eq("deletedAt"), any())).thenReturn(tombstoneQuery);
+        when(tombstoneQuery.addSnapshotListener(any())).thenReturn(tombstonesRegistration);
+
+        EventFeed feed = repo.listenToEventChanges(
+                EventQueryPlanner.plan(null, now), now - 1000, mock(EventFeed.Listener.class));
+        feed.stop();
+
+        // Only changes are followed: no listener on the plan's full query
+        verify(mockEventsCollection, never()).whereEqualTo("active", true);
+        verify(mockQuery, times(1)).addSnapshotListener(any());
+        verify(tombstoneQuery, times(1)).addSnapshotListener(any());
+        verify(changesRegistration).remove();
+        verify(tombstonesRegistration).remove();
+    }
+
+    @Test
+    public void getEventChangesSince_nothingWritten_advancesWatermarkToReadTime() {
+        long now = System.currentTimeMillis();
+        long since = now - EventRepository.MAX_SYNC_AGE_MILLIS / 2;
+        CollectionReference tombstones = mock(CollectionReference.class);
+        Query tombstoneQuery = mock(Query.class);
+        QuerySnapshot empty = mock(QuerySnapshot.class);
+        when(empty.iterator()).thenReturn(List.<QueryDocumentSnapshot>of().iterator())
+                .thenReturn(List.<QueryDocumentSnapshot>of().iterator());
+
+        when(mockEventsCollection.whereGreaterThan(eq("updatedAt"), any())).thenReturn(mockQuery);
+        when(mockQuery.whereGreaterThanOrEqualTo("dateTime", now)).thenReturn(mockQuery);
+        when(mockQuery.orderBy("dateTime")).thenReturn(mockQuery);
+        when(mockQuery.get()).thenReturn(Tasks.forResult(empty));
+        when(mockDb.collection("eventTombstones")).thenReturn(tombstones);
+        when(tombstones.whereGreaterThan(eq("deletedAt"), any())).thenReturn(tombstoneQuery);
+        when(tombstoneQuery.get()).thenReturn(Tasks.forResult(empty));
+
+        Task<EventRepository.EventChanges> task = repo.getEventChangesSince(EventQueryPlanner.plan(null, now), since);
+
+        assertTrue(task.isSuccessful());
+        assertTrue(task.getResult().getEvents().isEmpty());
+        assertTrue(task.getResult().getWatermark() >= now - EventRepository.CLOCK_MARGIN_MILLIS);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void eventFeed_tombstoneOlderThanSeenWrite_doesNotRemoveEvent() {
+        long now = System.currentTimeMillis();
+        Query changes = mock(Query.class);
+        Query tombstones = mock(Query.class);
+        EventFeed.Listener listener = mock(EventFeed.Listener.class);
+        EventFeed feed = new EventFeed(EventQueryPlanner.plan(null, now), listener, now - 1000);
+        feed.start(List.of(changes), tombstones);
+
+        ArgumentCaptor<EventListener<QuerySnapshot>> changesListener =
+                ArgumentCaptor.forClass(EventListener.class);
+        ArgumentCaptor<EventListener<QuerySnapshot>> tombstonesListener =
+                ArgumentCaptor.forClass(EventListener.class);
+        verify(changes).addSnapshotListener(changesListener.capture());
+        verify(tombstones).addSnapshotListener(tombstonesListener.capture());
+
+        // Edited event still in the plan: written with its tombstone, in one commit
+        Map<String, Object> data = new HashMap<>();
+        data.put("active", true);
+        data.put("dateTime", now + 100000);
+        changesListener.getValue().onEvent(snapshotOf(change("e1", "updatedAt", now, data)), null);
+        tombstonesListener.getValue().onEvent(snapshotOf(change("e1", "deletedAt", now, null)), null);
+        // Deleted event
+        tombstonesListener.getValue().onEvent(snapshotOf(change("e2", "deletedAt", now, null)), null);
+
+        ArgumentCaptor<EventFeed.Changes> reported =
+                ArgumentCaptor.forClass(EventFeed.Changes.class);
+        verify(listener, times(2)).onChanges(reported.capture());
+        assertEquals("e1", reported.getAllValues().get(0).getEvents().get(0).getId());
+        assertEquals(List.of("e2"), reported.getAllValues().get(1).getRemovedIds());
+        assertTrue(reported.getAllValues().get(1).getWatermark()
+                >= now - EventRepository.CLOCK_MARGIN_MILLIS);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void eventFeed_watermark_advancesOnlyOnceEveryListenerReadTheServer() {
+        long now = System.currentTimeMillis();
+        long since = now - EventRepository.MAX_SYNC_AGE_MILLIS / 2;
+        Query changes = mock(Query.class);
+        Query tombstones = mock(Query.class);
+        EventFeed feed = new EventFeed(EventQueryPlanner.plan(null, now), mock(EventFeed.Listener.class), since);
+        feed.start(List.of(changes), tombstones);
+
+        ArgumentCaptor<EventListener<QuerySnapshot>> changesListener =
+                ArgumentCaptor.forClass(EventListener.class);
+        ArgumentCaptor<EventListener<QuerySnapshot>> tombstonesListener =
+                ArgumentCaptor.forClass(EventListener.class);
+        verify(changes).addSnapshotListener(changesListener.capture());
+        verify(tombstones).addSnapshotListener(tombstonesListener.capture());
+
+        // Nothing written since: the listeners report empty snapshots
+        changesListener.getValue().onEvent(emptySnapshot(false), null);
+        assertEquals(since, feed.getWatermark());
+        tombstonesListener.getValue().onEvent(emptySnapshot(true), null);
+        assertEquals(since, feed.getWatermark());
+
+        tombstonesListener.getValue().onEvent(emptySnapshot(false), null);
+        assertTrue(feed.getWatermark() >= now - EventRepository.CLOCK_MARGIN_MILLIS);
+    }
+
+    private static DocumentChange change(String id, String timeField, long millis, Map<String, Object> data) {
+        QueryDocumentSnapshot doc = mock(QueryDocumentSnapshot.class);
+        when(doc.getId()).thenReturn(id);
+        when(doc.getTimestamp(timeField)).thenReturn(new Timestamp(new Date(millis)));
+        if (data != null) when(doc.getData()).thenReturn(data);
+        DocumentChange change = mock(DocumentChange.class);
+        when(change.getType()).thenReturn(DocumentChange.Type.ADDED);
+        when(change.getDocument()).thenReturn(doc);
+        return change;
+    }
+
+    private static QuerySnapshot snapshotOf(DocumentChange change) {
+        QuerySnapshot snapshot = emptySnapshot(false);
+        when(snapshot.getDocumentChanges()).thenReturn(List.of(change));
+        return snapshot;
+    }
+
+    private static QuerySnapshot emptySnapshot(boolean fromCache) {
+        SnapshotMetadata metadata = mock(SnapshotMetadata.class);
+        when(metadata.isFromCache()).thenReturn(fromCache);
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        lenient().when(snapshot.getDocumentChanges()).thenReturn(List.of());
+        when(snapshot.getMetadata()).thenReturn(metadata);
+        return snapshot;
+    }
+
     // ------------------------
     // updateEvent
     // ------------------------
@@ -136,13 +384,41 @@ public class EventRepositoryTest {
         Map<String, Object> updates = new HashMap<>();
         updates.put("name", "New Name");
 
-        when(mockEventDoc.update(updates))
+        when(mockEventDoc.update(anyMap()))
                 .thenReturn(Tasks.forResult(null));
 
         Task<Void> task = repo.updateEvent("e1", updates);
 
         assertTrue(task.isSuccessful());
-        verify(mockEventDoc).update(updates);
+        verify(mockEventDoc).update(argThat((Map<String, Object> written) ->
+                written.size() == 2
+                        && "New Name".equals(written.get("name"))
+                        && written.get("updatedAt") instanceof FieldValue));
+    }
+
+    @Test
+    public void updateEvent_withLocation_alsoUpdatesGeohashAndWritesTombstone() {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("latitude", 32.0);
+        updates.put("longitude", 34.8);
+
+        CollectionReference tombstones = mock(CollectionReference.class);
+        DocumentReference tombstone = mock(DocumentReference.class);
+        when(mockDb.collection("eventTombstones")).thenReturn(tombstones);
+        when(tombstones.document("e1")).thenReturn(tombstone);
+        when(mockDb.batch()).thenReturn(mockBatch);
+        when(mockBatch.commit()).thenReturn(Tasks.forResult(null));
+
+        Task<Void> task = repo.updateEvent("e1", updates);
+
+        assertTrue(task.isSuccessful());
+        verify(mockBatch).update(eq(mockEventDoc), argThat((Map<String, Object> written) ->
+                GeoHashUtils.encode(32.0, 34.8).equals(written.get("geohash"))
+                        && written.get("updatedAt") instanceof FieldValue));
+        // The event may leave the selection of clients syncing with a distance filter
+        verify(mockBatch).set(eq(tombstone), argThat((Map<String, Object> written) ->
+                written.get("deletedAt") instanceof FieldValue));
+        verify(mockEventDoc, never()).update(anyMap());
     }
 
     // ------------------------
@@ -150,30 +426,122 @@ public class EventRepositoryTest {
     // ------------------------
 
     @Test
-    public void deleteEvent_success() {
-        when(mockEventDoc.delete())
-                .thenReturn(Tasks.forResult(null));
+    public void deleteEvent_deletesAndWritesTombstone() {
+        CollectionReference tombstones = mock(CollectionReference.class);
+        DocumentReference tombstone = mock(DocumentReference.class);
+        when(mockDb.collection("eventTombstones")).thenReturn(tombstones);
+        when(tombstones.document("e1")).thenReturn(tombstone);
+        CollectionReference shards = mock(CollectionReference.class);
+        when(mockEventDoc.collection("seatShards")).thenReturn(shards);
+        when(shards.document(anyString())).thenReturn(mock(DocumentReference.class));
+        when(mockDb.batch()).thenReturn(mockBatch);
+        when(mockBatch.commit()).thenReturn(Tasks.forResult(null));
 
         Task<Void> task = repo.deleteEvent("e1");
 
         assertTrue(task.isSuccessful());
-        verify(mockEventDoc).delete();
+        verify(mockBatch).delete(mockEventDoc);
+        verify(mockBatch, times(1 + SeatShardCounter.SHARDS)).delete(any(DocumentReference.class));
+        verify(mockBatch).set(eq(tombstone), argThat((Map<String, Object> written) ->
+                written.get("deletedAt") instanceof FieldValue));
+        verify(mockBatch).commit();
     }
 
     // ------------------------
-    // decrementReserved
+    // EventQueryPlanner
     // ------------------------
 
     @Test
-    public void decrementReserved_usesIncrementMinusOne() {
-        when(mockEventDoc.update(eq("reserved"), any(FieldValue.class)))
-                .thenReturn(Tasks.forResult(null));
+    public void queryPlan_pushesGenresAndDateRangeIntoQuery() {
+        long now = 1_000_000L;
+        EventFilter filter = new EventFilter();
+        filter.setMusicTypes(List.of(MusicGenre.ROCK));
+        filter.setDateRange(now - 5000, now + 5000);
+
+        when(mockEventsCollection.whereEqualTo("active", true)).thenReturn(mockQuery);
+        when(mockQuery.whereGreaterThanOrEqualTo("dateTime", now)).thenReturn(mockQuery);
+        when(mockQuery.whereLessThanOrEqualTo("dateTime", now + 5000)).thenReturn(mockQuery);
+        when(mockQuery.whereArrayContainsAny(eq("musicTypes"), anyList())).thenReturn(mockQuery);
+
+        EventQueryPlanner.Plan plan = EventQueryPlanner.plan(filter, now);
+        assertSame(mockQuery, plan.apply(mockEventsCollection));
+        assertTrue(plan.isRestricted());
+
+        verify(mockQuery).whereArrayContainsAny(
+                "musicTypes", List.of(MusicGenre.ROCK.getDisplayName()));
+
+        // Everything pushed down is removed from the locally applied filter
+        EventFilter residual = plan.residual(filter, now);
+        assertEquals(0, residual.genreMask());
+        assertNull(residual.getStartDateMillis());
+        assertNull(residual.getEndDateMillis());
+    }
 
-        Task<Void> task = repo.decrementReserved("e1");
+    @Test
+    public void queryPlan_changeQueries_pushCriteriaButNotActive() {
+        long now = 1_000_000L;
+        EventFilter filter = new EventFilter();
+        filter.setMusicTypes(List.of(MusicGenre.JAZZ));
+        filter.setDateRange(now, now + 5000);
+        Timestamp since = new Timestamp(new Date(now - 60_000));
+
+        when(mockEventsCollection.whereGreaterThan("updatedAt", since)).thenReturn(mockQuery);
+        when(mockQuery.whereGreaterThanOrEqualTo("dateTime", now)).thenReturn(mockQuery);
+        when(mockQuery.whereLessThanOrEqualTo("dateTime", now + 5000)).thenReturn(mockQuery);
+        when(mockQuery.whereArrayContainsAny(eq("musicTypes"), anyList())).thenReturn(mockQuery);
+        when(mockQuery.orderBy("dateTime")).thenReturn(mockQuery);
+
+        List<Query> queries = EventQueryPlanner.plan(filter, now).changeQueries(mockEventsCollection, since);
+
+        assertEquals(List.of(mockQuery), queries);
+        // Deactivated events must still reach syncing clients
+        verify(mockEventsCollection, never()).whereEqualTo(eq("active"), any());
+        verify(mockQuery, never()).whereEqualTo(eq("active"), any());
+    }
 
-        assertTrue(task.isSuccessful());
+    @Test
+    public void queryPlan_coversNarrowerFiltersOnly() {
+        long now = 1_000_000L;
+        MusicGenre first = MusicGenre.ROCK;
+        MusicGenre second = MusicGenre.JAZZ;
+
+        EventFilter wide = new EventFilter();
+        wide.setMusicTypes(List.of(first, second));
+        EventQueryPlanner.Plan plan = EventQueryPlanner.plan(wide, now);
+
+        EventFilter narrower = new EventFilter();
+        narrower.setMusicTypes(List.of(second));
+        narrower.setDateRange(now, now + 1000);
+        assertTrue(plan.covers(narrower, now + 10));
+        assertEquals(second.getMask(), plan.residual(narrower, now + 10).genreMask());
+
+        assertFalse(plan.covers(new EventFilter(), now + 10));
+        assertTrue(EventQueryPlanner.plan(null, now).covers(wide, now + 10));
+    }
 
-        verify(mockEventDoc)
-                .update(eq("reserved"), any(FieldValue.class));
+    @Test
+    public void queryPlan_withDistance_queriesOneGeohashRangePerQuery() {
+        EventFilter filter = new EventFilter();
+        filter.setLocation(32.08, 34.78, 10);
+
+        when(mockEventsCollection.whereEqualTo("active", true)).thenReturn(mockQuery);
+        when(mockQuery.whereGreaterThanOrEqualTo(eq("dateTime"), any())).thenReturn(mockQuery);
+        when(mockQuery.orderBy("geohash")).thenReturn(mockQuery);
+        when(mockQuery.startAt(any())).thenReturn(mockQuery);
+        when(mockQuery.endAt(any())).thenReturn(mockQuery);
+
+        EventQueryPlanner.Plan plan = EventQueryPlanner.plan(filter, 0);
+        List<GeoHashUtils.Range> ranges = GeoHashUtils.queryRanges(32.08, 34.78, 10);
+
+        assertEquals(ranges.size(), plan.queries(mockEventsCollection).size());
+        for (GeoHashUtils.Range range : ranges) {
+            verify(mockQuery).startAt(range.getStart());
+            verify(mockQuery).endAt(range.getEnd());
+        }
+
+        // Ranges cover the bounding box; the exact check drops its corners
+        assertTrue(plan.acceptsLocation(32.08, 34.78));
+        assertFalse(plan.acceptsLocation(32.08 + 0.085, 34.78 + 0.1));
+        assertNull(plan.residual(filter, 0).getRadiusKm());
     }
 }
@@ -0,0 +1,292 @@
+package com.example.jamming.repository;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SeatShardCounterTest {
+
+    @Mock FirebaseFirestore mockDb;
+    @Mock DocumentReference mockEventRef;
+    @Mock DocumentReference mockUserRef;
+    @Mock CollectionReference mockShards;
+    @Mock Transaction mockTransaction;
+
+    private final Map<String, DocumentReference> shardRefs = new HashMap<>();
+    private SeatShardCounter counter;
+
+    @Before
+    public void setUp() {
+        counter = new SeatShardCounter(mockDb, new Random(1));
+
+        for (int i = 0; i < SeatShardCounter.SHARDS; i++) {
+            shardRefs.put(String.valueOf(i), mock(DocumentReference.class));
+        }
+        lenient().when(mockEventRef.collection("seatShards")).thenReturn(mockShards);
+        lenient().when(mockShards.document(anyString())).thenAnswer(inv -> shardRefs.get(inv.<String>getArgument(0)));
+    }
+
+    private DocumentReference shard(int index) {
+        return shardRefs.get(String.valueOf(index));
+    }
+
+    /**
+     * Stubs a shard document with the given counts.
+     */
+    private void givenShard(int index, long capacity, long reserved) throws Exception {
+        DocumentSnapshot snap = mock(DocumentSnapshot.class);
+        lenient().when(snap.exists()).thenReturn(true);
+        lenient().when(snap.getReference()).thenReturn(shard(index));
+        lenient().when(snap.getLong("capacity")).thenReturn(capacity);
+        when(snap.getLong("reserved")).thenReturn(reserved);
+        when(mockTransaction.get(shard(index))).thenReturn(snap);
+    }
+
+    /**
+     * Runs a transaction body of the counter against the mocked transaction.
+     *
+     * @return The body's result
+     */
+    @SuppressWarnings("unchecked")
+    private Object runTransaction(Runnable start) throws Exception {
+        ArgumentCaptor<Transaction.Function<Object>> body =
+                ArgumentCaptor.forClass(Transaction.Function.class);
+        when(mockDb.runTransaction(body.capture())).thenReturn(null);
+
+        start.run();
+        return body.getValue().apply(mockTransaction);
+    }
+
+    /**
+     * Stubs the event and user documents.
+     */
+    private void givenDocuments() {
+        CollectionReference events = mock(CollectionReference.class);
+        CollectionReference users = mock(CollectionReference.class);
+        when(mockDb.collection("events")).thenReturn(events);
+        when(mockDb.collection("users")).thenReturn(users);
+        when(events.document("e1")).thenReturn(mockEventRef);
+        when(users.document("u1")).thenReturn(mockUserRef);
+    }
+
+    // ------------------------
+    // split
+    // ------------------------
+
+    @Test
+    public void split_spreadsRemainderOverFirstShards() {
+        int[] parts = SeatShardCounter.split(23);
+
+        int total = 0;
+        for (int i = 0; i < parts.length; i++) {
+            assertEquals(i < 3 ? 3 : 2, parts[i]);
+            total += parts[i];
+        }
+        assertEquals(23, total);
+    }
+
+    // ------------------------
+    // takeSeat
+    // ------------------------
+
+    @Test
+    public void takeSeat_seatFreeInShard_takesItWithoutReadingOtherShards() throws Exception {
+        givenShard(3, 2, 1);
+
+        runTransaction(() -> counter.takeSeat(mockEventRef, mockUserRef, "e1", 3));
+
+        verify(mockTransaction).update(eq(shard(3)), eq("reserved"), any(FieldValue.class));
+        verify(mockTransaction).update(eq(mockUserRef), eq("registeredEventIds"), any(FieldValue.class));
+        verify(mockTransaction, times(1)).get(any(DocumentReference.class));
+        verify(mockTransaction, never()).update(eq(mockEventRef), anyString(), any(), any());
+    }
+
+    @Test
+    public void takeSeat_shardFull_failsWithShardFull() throws Exception {
+        givenShard(3, 2, 2);
+
+        try {
+            runTransaction(() -> counter.takeSeat(mockEventRef, mockUserRef, "e1", 3));
+            fail("Expected SHARD_FULL");
+        } catch (RuntimeException e) {
+            assertEquals(SeatShardCounter.SHARD_FULL, e.getMessage());
+        }
+        verify(mockTransaction, times(1)).get(any(DocumentReference.class));
+        verify(mockTransaction, never()).update(any(DocumentReference.class), anyString(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void takeSeat_unshardedEvent_splitsCountsAndTakesSeat() throws Exception {
+        DocumentSnapshot missing = mock(DocumentSnapshot.class);
+        when(missing.exists()).thenReturn(false);
+        when(mockTransaction.get(shard(5))).thenReturn(missing);
+
+        DocumentSnapshot event = mock(DocumentSnapshot.class);
+        when(event.exists()).thenReturn(true);
+        when(event.getLong("reserved")).thenReturn(3L);
+        when(event.getLong("maxCapacity")).thenReturn(25L);
+        when(mockTransaction.get(mockEventRef)).thenReturn(event);
+
+        runTransaction(() -> counter.takeSeat(mockEventRef, mockUserRef, "e1", 5));
+
+        ArgumentCaptor<Map<String, Object>> written = ArgumentCaptor.forClass(Map.class);
+        int capacity = 0;
+        int reserved = 0;
+        for (int i = 0; i < SeatShardCounter.SHARDS; i++) {
+            verify(mockTransaction).set(eq(shard(i)), written.capture());
+            Map<String, Object> data = written.getValue();
+            assertTrue((int) data.get("reserved") <= (int) data.get("capacity"));
+            capacity += (int) data.get("capacity");
+            reserved += (int) data.get("reserved");
+        }
+        assertEquals(25, capacity);
+        assertEquals(4, reserved);
+        verify(mockTransaction).update(eq(mockUserRef), eq("registeredEventIds"), any(FieldValue.class));
+    }
+
+    // ------------------------
+    // freeSeat
+    // ------------------------
+
+    @Test
+    public void freeSeat_seatTakenInShard_freesIt() throws Exception {
+        givenShard(9, 2, 2);
+
+        runTransaction(() -> counter.freeSeat(mockEventRef, mockUserRef, "e1", 9, false));
+
+        verify(mockTransaction).update(eq(shard(9)), eq("reserved"), any(FieldValue.class));
+        verify(mockTransaction).update(eq(mockUserRef), eq("registeredEventIds"), any(FieldValue.class));
+    }
+
+    @Test
+    public void freeSeat_noSeatTakenInShard_failsWithShardFull() throws Exception {
+        givenShard(9, 2, 0);
+
+        try {
+            runTransaction(() -> counter.freeSeat(mockEventRef, mockUserRef, "e1", 9, false));
+            fail("Expected SHARD_FULL");
+        } catch (RuntimeException e) {
+            assertEquals(SeatShardCounter.SHARD_FULL, e.getMessage());
+        }
+        verify(mockTransaction, never()).update(any(DocumentReference.class), anyString(), any());
+    }
+
+    @Test
+    public void freeSeat_noSeatTakenInLastShard_stillRemovesRegistration() throws Exception {
+        givenShard(9, 2, 0);
+
+        runTransaction(() -> counter.freeSeat(mockEventRef, mockUserRef, "e1", 9, true));
+
+        verify(mockTransaction, never()).update(eq(shard(9)), anyString(), any());
+        verify(mockTransaction).update(eq(mockUserRef), eq("registeredEventIds"), any(FieldValue.class));
+    }
+
+    @Test
+    public void freeSeat_unshardedEvent_decrementsEventCounts() throws Exception {
+        DocumentSnapshot missing = mock(DocumentSnapshot.class);
+        when(missing.exists()).thenReturn(false);
+        when(mockTransaction.get(shard(4))).thenReturn(missing);
+
+        runTransaction(() -> counter.freeSeat(mockEventRef, mockUserRef, "e1", 4, false));
+
+        verify(mockTransaction).update(eq(mockEventRef), eq("reserved"), any(FieldValue.class),
+                eq("availableSpots"), any(FieldValue.class), eq("updatedAt"), any(FieldValue.class));
+        verify(mockTransaction).update(eq(mockUserRef), eq("registeredEventIds"), any(FieldValue.class));
+    }
+
+    // ------------------------
+    // writeAggregate
+    // ------------------------
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void writeAggregate_writesSumOfShards() throws Exception {
+        for (int i = 0; i < SeatShardCounter.SHARDS; i++) {
+            givenShard(i, 3, i < 4 ? 3 : 1);
+        }
+
+        runTransaction(() -> counter.writeAggregate(mockEventRef));
+
+        ArgumentCaptor<Map<String, Object>> written = ArgumentCaptor.forClass(Map.class);
+        verify(mockTransaction).update(eq(mockEventRef), written.capture());
+        assertEquals(18, written.getValue().get("reserved"));
+        assertEquals(12, written.getValue().get("availableSpots"));
+        assertTrue(written.getValue().containsKey("updatedAt"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void writeAggregate_unshardedEvent_writesNothing() throws Exception {
+        DocumentSnapshot missing = mock(DocumentSnapshot.class);
+        when(missing.exists()).thenReturn(false);
+        when(mockTransaction.get(shard(0))).thenReturn(missing);
+
+        runTransaction(() -> counter.writeAggregate(mockEventRef));
+
+        verify(mockTransaction, never()).update(any(DocumentReference.class), anyMap());
+    }
+
+    // ------------------------
+    // reserve / release
+    // ------------------------
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void reserve_firstShardFull_takesSeatInAnotherThenWritesAggregate() {
+        givenDocuments();
+        when(mockDb.runTransaction(any(Transaction.Function.class)))
+                .thenReturn(Tasks.forException(new RuntimeException(SeatShardCounter.SHARD_FULL)))
+                .thenReturn(Tasks.forResult(null));
+
+        Task<Void> task = counter.reserve("e1", "u1");
+
+        assertTrue(task.isSuccessful());
+        // Two seat transactions, then the aggregate
+        verify(mockDb, times(3)).runTransaction(any(Transaction.Function.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void reserve_everyShardFull_failsWithEventFull() {
+        givenDocuments();
+        when(mockDb.runTransaction(any(Transaction.Function.class)))
+                .thenReturn(Tasks.forException(new RuntimeException(SeatShardCounter.SHARD_FULL)));
+
+        Task<Void> task = counter.reserve("e1", "u1");
+
+        assertFalse(task.isSuccessful());
+        assertEquals("EVENT_FULL", task.getException().getMessage());
+        verify(mockDb, times(SeatShardCounter.SHARDS)).runTransaction(any(Transaction.Function.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void release_aggregateWriteFails_stillSucceeds() {
+        givenDocuments();
+        when(mockDb.runTransaction(any(Transaction.Function.class)))
+                .thenReturn(Tasks.forResult(null))
+                .thenReturn(Tasks.forException(new RuntimeException("unavailable")));
+
+        Task<Void> task = counter.release("e1", "u1");
+
+        assertTrue(task.isSuccessful());
+        verify(mockDb, times(2)).runTransaction(any(Transaction.Function.class));
+    }
+}
@@ -5,6 +5,7 @@ import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import com.example.jamming.model.EventFilter;
 import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
 import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.firestore.CollectionReference;
 import com.google.firebase.firestore.DocumentReference;
@@ -59,6 +60,31 @@ public class UserRepositoryTest {
         verify(mockUserDoc).get();
     }
 
+    @Test
+    public void getUserById_concurrentCalls_shareOneRead() {
+        TaskCompletionSource<DocumentSnapshot> read = new TaskCompletionSource<>();
+        when(mockUserDoc.get()).thenReturn(read.getTask());
+
+        Task<DocumentSnapshot> first = repo.getUserById("uid1");
+        Task<DocumentSnapshot> second = repo.getUserById("uid1");
+
+        assertSame(first, second);
+        verify(mockUserDoc, times(1)).get();
+    }
+
+    @Test
+    public void getUserById_afterWrite_readsAgain() {
+        when(mockUserDoc.get()).thenReturn(Tasks.forResult(mock(DocumentSnapshot.class)));
+        when(mockUserDoc.update("field", "value")).thenReturn(Tasks.forResult(null));
+
+        repo.getUserById("uid1");
+        repo.getUserById("uid1");
+        repo.updateUserField("uid1", "field", "value");
+        repo.getUserById("uid1");
+
+        verify(mockUserDoc, times(2)).get();
+    }
+
     // ------------------------
     // updateUserField
     // ------------------------
@@ -0,0 +1,55 @@
+package com.example.jamming.utils;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+public class DateUtilsTest {
+
+    // 2024-01-15 10:30 UTC
+    private static final long INSTANT = 1_705_314_600_000L;
+
+    private TimeZone originalZone;
+
+    @Before
+    public void setUp() {
+        originalZone = TimeZone.getDefault();
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(originalZone);
+    }
+
+    /**
+     * Sets the default time zone and waits until DateUtils checks it again.
+     */
+    private static void setDefaultZone(String id) throws InterruptedException {
+        TimeZone.setDefault(TimeZone.getTimeZone(id));
+        Thread.sleep(DateUtils.ZONE_CHECK_MILLIS + 1);
+    }
+
+    @Test
+    public void formatOnlyTime_afterDefaultZoneChange_usesNewZone() throws InterruptedException {
+        setDefaultZone("UTC");
+        assertEquals("10:30", DateUtils.formatOnlyTime(INSTANT));
+        assertEquals(630, DateUtils.minutesFromMidnight(INSTANT));
+
+        setDefaultZone("Asia/Jerusalem");
+        assertEquals("12:30", DateUtils.formatOnlyTime(INSTANT));
+        assertEquals(750, DateUtils.minutesFromMidnight(INSTANT));
+    }
+
+    @Test
+    public void formatOnlyDate_afterDefaultZoneChange_usesNewZone() throws InterruptedException {
+        setDefaultZone("UTC");
+        assertEquals("15.01.2024", DateUtils.formatOnlyDate(INSTANT));
+
+        setDefaultZone("Pacific/Kiritimati");
+        assertEquals("16.01.2024", DateUtils.formatOnlyDate(INSTANT));
+    }
+}
@@ -0,0 +1,42 @@
+// JVM-only JMH benchmarks for the app's pure-Java hot paths
+// (event filtering, geo and date utilities). Run with: ./gradlew :benchmark:jmh
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// Compile the benchmarked classes straight from the app sources.
+// Only classes without Android or Firebase dependencies are included.
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            include("com/example/jamming/model/**")
+            include("com/example/jamming/utils/DateUtils.java")
+            include("com/example/jamming/utils/GeoUtils.java")
+        }
+    }
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+dependencies {
+    jmh(libs.jmh.core)
+    jmh(libs.jmh.generator.annprocess)
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh.get())
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    // Narrow a run, e.g. ./gradlew :benchmark:jmh -Pjmh.includes=EventFilterBenchmark
+    providers.gradleProperty("jmh.includes").orNull?.let { includes.set(listOf(it)) }
+}
@@ -0,0 +1,73 @@
+package com.example.jamming.benchmark;
+
+import com.example.jamming.model.Event;
+import com.example.jamming.model.MusicGenre;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic, reproducible datasets for the benchmarks.
+ * Events are spread over Israel, over the next 60 days, with one or two
+ * genres each and capacities between 10 and 500.
+ */
+final class BenchmarkData {
+
+    static final long DAY = 24L * 60 * 60 * 1000;
+
+    /** Center used by distance benchmarks (Tel Aviv) */
+    static final double CENTER_LAT = 32.08;
+    static final double CENTER_LNG = 34.78;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Creates synthetic events.
+     *
+     * @param count Number of events
+     * @param now Reference time; events start within 60 days after it
+     * @return Events in random order
+     */
+    static List<Event> events(int count, long now) {
+        Random random = new Random(42);
+        MusicGenre[] genres = MusicGenre.values();
+        List<Event> events = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            List<String> types = new ArrayList<>(2);
+            types.add(genres[random.nextInt(genres.length)].getDisplayName());
+            if (random.nextInt(4) == 0) {
+                types.add(genres[random.nextInt(genres.length)].getDisplayName());
+            }
+
+            int capacity = 10 + random.nextInt(491);
+            Event event = new Event(
+                    "owner" + random.nextInt(1000),
+                    "Event " + i,
+                    "Synthetic event",
+                    types,
+                    "Address " + i,
+                    now + (long) (random.nextDouble() * 60 * DAY),
+                    capacity,
+                    29.5 + random.nextDouble() * 3.8,
+                    34.2 + random.nextDouble() * 1.6
+            );
+            event.setReserved(random.nextInt(capacity + 1));
+            events.add(event);
+        }
+        return events;
+    }
+
+    /**
+     * Creates random timestamps within the next 60 days.
+     */
+    static long[] timestamps(int count, long now) {
+        Random random = new Random(7);
+        long[] timestamps = new long[count];
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = now + (long) (random.nextDouble() * 60 * DAY);
+        }
+        return timestamps;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.jamming.benchmark;
+
+import com.example.jamming.utils.DateUtils;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Per-event date helpers (time-of-day for filtering, formatting for
+ * event cards) over 1k–1M timestamps.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DateBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private long[] timestamps;
+
+    @Setup
+    public void setUp() {
+        timestamps = BenchmarkData.timestamps(size, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public int minutesFromMidnight() {
+        int sum = 0;
+        for (long timestamp : timestamps) {
+            sum += DateUtils.minutesFromMidnight(timestamp);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public void formatOnlyDate(Blackhole blackhole) {
+        for (long timestamp : timestamps) {
+            blackhole.consume(DateUtils.formatOnlyDate(timestamp));
+        }
+    }
+
+    @Benchmark
+    public void formatOnlyTime(Blackhole blackhole) {
+        for (long timestamp : timestamps) {
+            blackhole.consume(DateUtils.formatOnlyTime(timestamp));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.jamming.benchmark;
+
+import com.example.jamming.model.Event;
+import com.example.jamming.model.EventFilter;
+import com.example.jamming.model.EventFilterEngine;
+import com.example.jamming.model.EventStore;
+import com.example.jamming.model.MusicGenre;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Filtering cost per criterion, alone and combined, over 1k–1M events.
+ *
+ * {@code filterList} measures the public list API (which builds an
+ * EventStore per call); {@code filterStore} measures filtering a store
+ * that is reused, as the explore screen does between filter changes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EventFilterBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"NONE", "GENRE", "DATE", "TIME", "DISTANCE", "SPOTS", "CAPACITY", "COMBINED"})
+    public String criterion;
+
+    private List<Event> events;
+    private EventStore store;
+    private EventFilter filter;
+
+    @Setup
+    public void setUp() {
+        long now = System.currentTimeMillis();
+        events = BenchmarkData.events(size, now);
+        store = new EventStore(events);
+        filter = filterFor(criterion, now);
+    }
+
+    @Benchmark
+    public List<Event> filterList() {
+        return EventFilterEngine.filter(events, filter);
+    }
+
+    @Benchmark
+    public List<Event> filterStore() {
+        return EventFilterEngine.filter(store, filter);
+    }
+
+    private static EventFilter filterFor(String criterion, long now) {
+        EventFilter filter = new EventFilter();
+        switch (criterion) {
+            case "GENRE":
+                filter.setMusicTypes(List.of(MusicGenre.JAZZ, MusicGenre.ROCK));
+                break;
+            case "DATE":
+                // "This weekend": a two-day window a few days ahead
+                filter.setDateRange(now + 5 * BenchmarkData.DAY, now + 7 * BenchmarkData.DAY);
+                break;
+            case "TIME":
+                // Evenings
+                filter.setTimeRange(18 * 60, 23 * 60);
+                break;
+            case "DISTANCE":
+                filter.setLocation(BenchmarkData.CENTER_LAT, BenchmarkData.CENTER_LNG, 10);
+                break;
+            case "SPOTS":
+                filter.setAvailableSpotsRange(5, null);
+                break;
+            case "CAPACITY":
+                filter.setCapacityRange(null, 100);
+                break;
+            case "COMBINED":
+                filter.setMusicTypes(List.of(MusicGenre.JAZZ, MusicGenre.ROCK));
+                filter.setDateRange(now + 5 * BenchmarkData.DAY, now + 7 * BenchmarkData.DAY);
+                filter.setTimeRange(18 * 60, 23 * 60);
+                filter.setLocation(BenchmarkData.CENTER_LAT, BenchmarkData.CENTER_LNG, 25);
+                filter.setAvailableSpotsRange(5, null);
+                break;
+            default:
+                break;
+        }
+        return filter;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.jamming.benchmark;
+
+import com.example.jamming.utils.GeoUtils;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Distance checks over 1k–1M points: exact Haversine versus the
+ * bounding-box/equirectangular radius kernel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GeoBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"5", "50"})
+    public int radiusKm;
+
+    private double[] lats;
+    private double[] lngs;
+    private GeoUtils.RadiusMatcher matcher;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(11);
+        lats = new double[size];
+        lngs = new double[size];
+        for (int i = 0; i < size; i++) {
+            lats[i] = 29.5 + random.nextDouble() * 3.8;
+            lngs[i] = 34.2 + random.nextDouble() * 1.6;
+        }
+        matcher = GeoUtils.radiusMatcher(BenchmarkData.CENTER_LAT, BenchmarkData.CENTER_LNG, radiusKm);
+    }
+
+    @Benchmark
+    public int haversine() {
+        int within = 0;
+        for (int i = 0; i < size; i++) {
+            if (GeoUtils.calculateDistanceKm(
+                    BenchmarkData.CENTER_LAT, BenchmarkData.CENTER_LNG, lats[i], lngs[i]) <= radiusKm) {
+                within++;
+            }
+        }
+        return within;
+    }
+
+    @Benchmark
+    public int radiusMatcher() {
+        int within = 0;
+        for (int i = 0; i < size; i++) {
+            if (matcher.matches(lats[i], lngs[i])) within++;
+        }
+        return within;
+    }
+}
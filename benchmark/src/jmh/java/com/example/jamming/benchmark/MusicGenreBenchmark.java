@@ -0,0 +1,58 @@
+package com.example.jamming.benchmark;
+
+import com.example.jamming.model.MusicGenre;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Genre name lookups as done when mapping stored display names
+ * back to MusicGenre values, over 1k–1M names.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MusicGenreBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private String[] names;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(3);
+        MusicGenre[] genres = MusicGenre.values();
+        names = new String[size];
+        for (int i = 0; i < size; i++) {
+            String name = genres[random.nextInt(genres.length)].getDisplayName();
+            // Some stored names differ only in case
+            names[i] = random.nextInt(8) == 0 ? name.toLowerCase() : name;
+        }
+    }
+
+    @Benchmark
+    public void fromDisplayName(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(MusicGenre.fromDisplayName(name));
+        }
+    }
+
+    @Benchmark
+    public int maskOfDisplayNames() {
+        int mask = 0;
+        for (int i = 0; i + 1 < names.length; i += 2) {
+            mask ^= MusicGenre.maskOfDisplayNames(Arrays.asList(names[i], names[i + 1]));
+        }
+        return mask;
+    }
+}
@@ -21,3 +21,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "Jamming"
 include(":app")
+include(":benchmark")